@@ -1,5 +1,6 @@
 package com.marko.anime.configuration;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -30,8 +31,20 @@ public class SecurityConfig {
         httpSecurity
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        //the request was authorized before it went async, e.g. review status events
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/v1/anime", "/api/v1/auth/**").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/search").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/suggest").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/facets").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/trending").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/cache-stats").hasRole("ADMIN")
+                        .requestMatchers(GET, "/api/v1/anime/export", "/api/v1/anime-reviews/export").hasRole("ADMIN")
+                        .requestMatchers(GET, "/api/v1/anime-reviews/moderation-stats").hasRole("ADMIN")
+                        .requestMatchers(POST, "/api/v1/anime-reviews/profanity-words/reload").hasRole("ADMIN")
                         .requestMatchers(GET,"/api/v1/anime/*").authenticated()
+                        .requestMatchers(GET, "/api/v1/anime/*/similar", "/api/v1/anime/*/full").authenticated()
+                        .requestMatchers(POST, "/api/v1/anime/batch").authenticated()
                         .requestMatchers("/api/v1/anime/**").hasRole("ADMIN")
                         .requestMatchers( "/api/v1/anime-reviews/**").authenticated()
                         .requestMatchers("/api/v1/users", "/api/v1/users/**").hasRole("ADMIN")
@@ -1,34 +1,182 @@
 package com.marko.anime.controllers;
 
-
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marko.anime.dtos.AnimeBatchItemDTO;
+import com.marko.anime.dtos.AnimeBatchRequest;
+import com.marko.anime.dtos.AnimeDetailDTO;
+import com.marko.anime.dtos.AnimeFullDTO;
+import com.marko.anime.dtos.AnimeSuggestionDTO;
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.AnimeVersion;
+import com.marko.anime.dtos.CacheStatsDTO;
+import com.marko.anime.dtos.CatalogFilter;
+import com.marko.anime.dtos.CatalogSort;
+import com.marko.anime.dtos.CursorPageDTO;
+import com.marko.anime.dtos.GenreFacetsDTO;
+import com.marko.anime.dtos.ImportReportDTO;
+import com.marko.anime.dtos.SimilarAnimeDTO;
+import com.marko.anime.dtos.TrendingAnimeDTO;
 import com.marko.anime.models.Anime;
+import com.marko.anime.services.AnimeImportService;
+import com.marko.anime.services.AnimeSearchIndex;
 import com.marko.anime.services.AnimeService;
+import com.marko.anime.services.ExportService;
+import com.marko.anime.services.SimilarAnimeIndex;
+import com.marko.anime.services.TitleSuggester;
+import com.marko.anime.services.TrendingService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.bson.types.ObjectId;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/anime")
 public class AnimeController {
 
     private final AnimeService animeService;
+    private final AnimeSearchIndex searchIndex;
+    private final TitleSuggester titleSuggester;
+    private final AnimeImportService importService;
+    private final ExportService exportService;
+    private final TrendingService trendingService;
+    private final SimilarAnimeIndex similarAnimeIndex;
+    private final SerializedResponseCache serializedResponses;
 
-    public AnimeController(AnimeService animeService) {
+    public AnimeController(AnimeService animeService, AnimeSearchIndex searchIndex,
+                           TitleSuggester titleSuggester, AnimeImportService importService,
+                           ExportService exportService, TrendingService trendingService,
+                           SimilarAnimeIndex similarAnimeIndex, ObjectMapper objectMapper) {
         this.animeService = animeService;
+        this.searchIndex = searchIndex;
+        this.titleSuggester = titleSuggester;
+        this.importService = importService;
+        this.exportService = exportService;
+        this.trendingService = trendingService;
+        this.similarAnimeIndex = similarAnimeIndex;
+        this.serializedResponses = new SerializedResponseCache(objectMapper);
     }
 
+    /**
+     * @deprecated full-catalog listing, kept for old clients. Use the paginated variant ({@code ?size=}).
+     */
+    @Deprecated
     @GetMapping
-    public ResponseEntity<List<Anime>> getAllAnime() {
-        return ResponseEntity.ok(animeService.findAllAnime());
+    public ResponseEntity<byte[]> getAllAnime(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Deprecation", "true");
+        return serializedResponses.respond(animeService.findAllAnime(), ifNoneMatch, acceptEncoding, headers);
+    }
+
+    @GetMapping(params = "size")
+    public ResponseEntity<CursorPageDTO<AnimeSummaryDTO>> getAnimePage(@RequestParam int size,
+                                                                       @RequestParam(required = false) String cursor,
+                                                                       @RequestParam(required = false) List<String> genre,
+                                                                       @RequestParam(required = false) String releasedFrom,
+                                                                       @RequestParam(required = false) String releasedTo,
+                                                                       @RequestParam(required = false) String titlePrefix,
+                                                                       @RequestParam(defaultValue = "title") String sort,
+                                                                       @RequestParam(required = false) String order) {
+        CatalogFilter filter = CatalogFilter.builder()
+                .genres(genre)
+                .releasedFrom(releasedFrom)
+                .releasedTo(releasedTo)
+                .titlePrefix(titlePrefix)
+                .sort(CatalogSort.fromParam(sort))
+                .descending(descending(order))
+                .build();
+        return ResponseEntity.ok(animeService.findAnimePage(filter, cursor, size));
+    }
+
+    private static Boolean descending(String order) {
+        if (order == null) {
+            return null;
+        }
+        if (order.equalsIgnoreCase("asc") || order.equalsIgnoreCase("desc")) {
+            return order.equalsIgnoreCase("desc");
+        }
+        throw new IllegalArgumentException("Order must be asc or desc.");
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<AnimeSummaryDTO>> searchAnime(@RequestParam(required = false) String q,
+                                                             @RequestParam(required = false) List<String> genre,
+                                                             @RequestParam(defaultValue = "all") String match,
+                                                             @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(searchIndex.search(q, genre, "any".equalsIgnoreCase(match), limit));
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<GenreFacetsDTO> getGenreFacets(@RequestParam(required = false) List<String> genre,
+                                                         @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(searchIndex.facets(genre, limit));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<AnimeSuggestionDTO>> suggestTitles(@RequestParam String prefix,
+                                                                  @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(titleSuggester.suggest(prefix, limit));
+    }
+
+    @GetMapping("/trending")
+    public ResponseEntity<List<TrendingAnimeDTO>> getTrendingAnime(@RequestParam(defaultValue = "10") int limit) {
+        List<TrendingService.TrendingScore> top = trendingService.top(limit);
+        if (top.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        List<AnimeBatchItemDTO> anime = animeService.findAnimeBatch(top.stream().map(TrendingService.TrendingScore::imdbId).toList());
+        List<TrendingAnimeDTO> trending = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            if (anime.get(i).isFound()) {
+                trending.add(new TrendingAnimeDTO(anime.get(i).getAnime(), top.get(i).score()));
+            }
+        }
+        return ResponseEntity.ok(trending);
+    }
+
+    @GetMapping("/{id}/full")
+    public ResponseEntity<AnimeFullDTO> getAnimeFull(@PathVariable String id) {
+        return ResponseEntity.ok(animeService.findAnimeFull(id));
+    }
+
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<SimilarAnimeDTO>> getSimilarAnime(@PathVariable String id) {
+        return ResponseEntity.ok(similarAnimeIndex.findSimilar(id));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Optional<Anime>> getAnimeById(@PathVariable String id) {
-        return ResponseEntity.ok(animeService.findAnimeByImdbId(id));
+    public ResponseEntity<byte[]> getAnimeById(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        AnimeDetailDTO anime = animeService.findAnimeDetail(id);
+        ResponseEntity<byte[]> response = serializedResponses.respondTagged(anime, versionTag(anime), ifNoneMatch, acceptEncoding);
+        //a 304 only confirms what the client already shows, views are counted when the anime is sent
+        if (response.getStatusCode() == HttpStatus.OK) {
+            trendingService.recordView(id);
+        }
+        return response;
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<AnimeBatchItemDTO>> getAnimeBatch(@RequestBody AnimeBatchRequest request) {
+        return ResponseEntity.ok(animeService.findAnimeBatch(request.getImdbIds()));
+    }
+
+    @GetMapping("/cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CacheStatsDTO> getCacheStats() {
+        return ResponseEntity.ok(animeService.getCacheStats());
     }
 
     @PostMapping("/create-anime")
@@ -37,17 +185,81 @@ public class AnimeController {
         return ResponseEntity.status(HttpStatus.CREATED).body(animeService.createNewAnime(anime));
     }
 
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportReportDTO> importAnime(InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importAnime(body));
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportAnime(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                            HttpServletResponse response) throws IOException {
+        NdjsonExport.write(response, acceptEncoding, "anime.ndjson", exportService::exportAnime);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Anime> updateAnime(@PathVariable String id, @RequestBody Anime anime) {
-        Anime updatedAnime = animeService.updateAnime(id, anime);
-        return ResponseEntity.ok(updatedAnime);
+    public ResponseEntity<AnimeDetailDTO> updateAnime(
+            @PathVariable String id,
+            @RequestBody Anime anime,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        AnimeDetailDTO updatedAnime = animeService.updateAnime(id, anime, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(versionTag(updatedAnime)).body(updatedAnime);
+    }
+
+    @PatchMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AnimeDetailDTO> patchAnime(
+            @PathVariable String id,
+            @RequestBody Map<String, Object> fields,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        AnimeDetailDTO patched = animeService.patchAnime(id, fields, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(versionTag(patched)).body(patched);
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Void> deleteAnime(@PathVariable String id) {
-        animeService.deleteAnime(id);
+    public ResponseEntity<Void> deleteAnime(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        animeService.deleteAnime(id, expectedVersion(ifMatch));
         return ResponseEntity.noContent().build();
     }
+
+    //"<_id>-<version>", the gzip body of GET adds SerializedResponseCache's "-gz" suffix
+    static String versionTag(AnimeDetailDTO anime) {
+        long version = anime.getVersion() == null ? 0 : anime.getVersion();
+        return "\"" + anime.getId().toHexString() + "-" + version + "\"";
+    }
+
+    /**
+     * Version named by an If-Match header, null when absent or "*". Anything that cannot be one
+     * of our version tags (weak tags, lists, other formats) names a version no document has, so
+     * the service still answers 404 for a missing anime and 412 for an existing one.
+     */
+    static AnimeVersion expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String value = tag.substring(1, tag.length() - 1);
+            if (value.endsWith("-gz")) {
+                value = value.substring(0, value.length() - 3); //same version, tag of the gzip body
+            }
+            int dash = value.indexOf('-');
+            if (dash > 0 && ObjectId.isValid(value.substring(0, dash))) {
+                try {
+                    long version = Long.parseLong(value.substring(dash + 1));
+                    if (version >= 0) {
+                        return new AnimeVersion(new ObjectId(value.substring(0, dash)), version);
+                    }
+                } catch (NumberFormatException ignored) {
+                    //falls through to the mismatch below
+                }
+            }
+        }
+        return new AnimeVersion(null, -1);
+    }
 }
@@ -0,0 +1,43 @@
+package com.marko.anime.controllers;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes an export straight to the servlet output stream, gzipped when the client accepts it.
+ */
+final class NdjsonExport {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    private NdjsonExport() {
+    }
+
+    interface Exporter {
+        long export(OutputStream out) throws IOException;
+    }
+
+    static void write(HttpServletResponse response, String acceptEncoding, String filename,
+                      Exporter exporter) throws IOException {
+        boolean gzip = SerializedResponseCache.acceptsGzip(acceptEncoding);
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString());
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            try (GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 8192)) {
+                exporter.export(out);
+            }
+        } else {
+            exporter.export(response.getOutputStream());
+            response.flushBuffer();
+        }
+    }
+}
@@ -1,41 +1,60 @@
 package com.marko.anime.controllers;
 
+import com.marko.anime.dtos.CursorPageDTO;
+import com.marko.anime.dtos.ModerationStatsDTO;
+import com.marko.anime.dtos.ProfanityWordListDTO;
 import com.marko.anime.dtos.ReviewStatus;
+import com.marko.anime.dtos.ReviewStatusDTO;
 import com.marko.anime.dtos.ReviewSubmissionResult;
-import com.marko.anime.models.Anime;
 import com.marko.anime.models.Review;
-import com.marko.anime.repositories.AnimeRepository;
-import com.marko.anime.repositories.ReviewRepository;
+import com.marko.anime.services.AnimeService;
+import com.marko.anime.services.ExportService;
+import com.marko.anime.services.ProfanityMatcher;
+import com.marko.anime.services.ReviewModerationService;
 import com.marko.anime.services.ReviewService;
-import org.springframework.http.HttpStatus;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/anime-reviews")
 public class ReviewController {
 
     private final ReviewService reviewService;
-    private final AnimeRepository animeRepository;
-    private final ReviewRepository reviewRepository;
+    private final AnimeService animeService;
+    private final ExportService exportService;
+    private final ReviewModerationService moderationService;
+    private final ProfanityMatcher profanityMatcher;
 
     public ReviewController(ReviewService reviewService,
-                            AnimeRepository animeRepository,
-                            ReviewRepository reviewRepository) {
+                            AnimeService animeService,
+                            ExportService exportService,
+                            ReviewModerationService moderationService,
+                            ProfanityMatcher profanityMatcher) {
         this.reviewService = reviewService;
-        this.animeRepository = animeRepository;
-        this.reviewRepository = reviewRepository;
+        this.animeService = animeService;
+        this.exportService = exportService;
+        this.moderationService = moderationService;
+        this.profanityMatcher = profanityMatcher;
     }
     @PostMapping
     public ResponseEntity<String> createReview(@RequestBody Map<String, String> payload) {
         ReviewSubmissionResult result = reviewService.submitReview(payload.get("reviewBody"), payload.get("imdbId"), payload.get("userId"));
 
-        if (result.getStatus().equals(ReviewStatus.APPROVED)) {
+        if (result.getStatus().equals(ReviewStatus.PENDING)) {
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/anime-reviews/status/" + result.getReviewId()))
+                    .body(result.getMessage());
+        } else if (result.getStatus().equals(ReviewStatus.APPROVED)) {
             return ResponseEntity.accepted().body(result.getMessage());
         } else if (result.getStatus().equals(ReviewStatus.REJECTED)) {
             return ResponseEntity.badRequest().body(result.getMessage());
@@ -43,17 +62,44 @@ public class ReviewController {
             return ResponseEntity.internalServerError().body(result.getMessage());
         }
     }
+   @GetMapping("/status/{reviewId}")
+    public ResponseEntity<ReviewStatusDTO> getReviewStatus(@PathVariable String reviewId) {
+            return ResponseEntity.ok(reviewService.findReviewStatus(reviewId));
+   }
+   @GetMapping(value = "/status/{reviewId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter watchReviewStatus(@PathVariable String reviewId) {
+            return reviewService.watchReviewStatus(reviewId);
+   }
+   @GetMapping("/moderation-stats")
+   @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ModerationStatsDTO> getModerationStats() {
+            return ResponseEntity.ok(moderationService.stats());
+   }
+   @PostMapping("/profanity-words/reload")
+   @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProfanityWordListDTO> reloadProfanityWords() {
+            return ResponseEntity.ok(profanityMatcher.reload());
+   }
+   @GetMapping("/export")
+   @PreAuthorize("hasRole('ADMIN')")
+   public void exportReviews(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                             HttpServletResponse response) throws IOException {
+       NdjsonExport.write(response, acceptEncoding, "reviews.ndjson", exportService::exportReviews);
+   }
+   /**
+    * @deprecated returns every review of the anime, kept for old clients. Use the paginated variant ({@code ?size=}).
+    */
+   @Deprecated
    @GetMapping("/{imdbId}")
     public ResponseEntity<List<Review>> getAnimeReviews(@PathVariable String imdbId) {
-            Optional<Anime> animeOpt = animeRepository.findAnimeByImdbId(imdbId);
-            if(animeOpt.isPresent()) {
-                List<Review> reviews = animeOpt.get().getReviewIds().stream()
-                        .map(id -> reviewRepository.getById(id.getId()).orElse(null))
-                       .filter(Objects::nonNull)
-                       .toList();
-                return new ResponseEntity<>(reviews, HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-            }
+            return ResponseEntity.ok()
+                    .header("Deprecation", "true")
+                    .body(animeService.findAnimeWithReviews(imdbId).getReviews());
+   }
+   @GetMapping(value = "/{imdbId}", params = "size")
+    public ResponseEntity<CursorPageDTO<Review>> getAnimeReviewPage(@PathVariable String imdbId,
+                                                                    @RequestParam int size,
+                                                                    @RequestParam(required = false) String cursor) {
+            return ResponseEntity.ok(reviewService.findReviewPage(imdbId, cursor, size));
    }
 }
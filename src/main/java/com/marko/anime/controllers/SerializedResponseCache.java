@@ -0,0 +1,156 @@
+package com.marko.anime.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the JSON bytes (identity and gzip) and a strong ETag for every catalog read model
+ * handed out by AnimeService. Entries are keyed by the identity of the cached model, so a
+ * body is rendered once per catalog version and dropped together with the model it was made from.
+ */
+class SerializedResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Object, SerializedBody> bodies = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    SerializedResponseCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    ResponseEntity<byte[]> respond(Object model, String ifNoneMatch, String acceptEncoding) {
+        return respond(model, ifNoneMatch, acceptEncoding, HttpHeaders.EMPTY);
+    }
+
+    ResponseEntity<byte[]> respond(Object model, String ifNoneMatch, String acceptEncoding, HttpHeaders headers) {
+        SerializedBody body = bodies.get(model, this::serialize);
+        return respond(body, body.etag, ifNoneMatch, acceptEncoding, headers);
+    }
+
+    /**
+     * Same as {@link #respond(Object, String, String)}, but with a caller supplied ETag (e.g. a
+     * document version) instead of the content hash. The tag is known up front, so a 304 is
+     * answered without serializing the model. Until the model has been serialized it is not
+     * known whether gzip pays off, the 304 then names the gzip tag whenever gzip is accepted.
+     */
+    ResponseEntity<byte[]> respondTagged(Object model, String etag, String ifNoneMatch, String acceptEncoding) {
+        if (matches(ifNoneMatch, etag)) {
+            SerializedBody serialized = bodies.getIfPresent(model);
+            boolean gzip = (serialized == null || serialized.gzip != null) && acceptsGzip(acceptEncoding);
+            return notModified(gzip ? gzipTag(etag) : etag, HttpHeaders.EMPTY);
+        }
+        return respond(bodies.get(model, this::serialize), etag, null, acceptEncoding, HttpHeaders.EMPTY);
+    }
+
+    private ResponseEntity<byte[]> respond(SerializedBody body, String etag, String ifNoneMatch, String acceptEncoding,
+                                           HttpHeaders headers) {
+        boolean gzip = body.gzip != null && acceptsGzip(acceptEncoding);
+        String tag = gzip ? gzipTag(etag) : etag;
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(tag, headers);
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .headers(headers)
+                .eTag(tag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip);
+        }
+        return builder.body(body.identity);
+    }
+
+    private static ResponseEntity<byte[]> notModified(String tag, HttpHeaders headers) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .headers(headers)
+                .eTag(tag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+
+    private SerializedBody serialize(Object model) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(model);
+            byte[] gzip = gzip(identity);
+            return new SerializedBody(identity, gzip.length < identity.length ? gzip : null, etag(identity));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize catalog response.", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The gzip body is a different representation and carries its own strong tag, the identity
+     * tag with a "-gz" suffix.
+     */
+    static String gzipTag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    //true when If-None-Match names the identity or the gzip tag of etag
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String gzipTag = gzipTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2); //If-None-Match uses weak comparison
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private record SerializedBody(byte[] identity, byte[] gzip, String etag) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.marko.anime.dtos;
+
+import com.marko.anime.models.Review;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeFullDTO {
+    private AnimeDetailDTO anime;
+    private List<Review> reviews; //newest first, first page only
+    private ReviewStatsDTO reviewStats;
+}
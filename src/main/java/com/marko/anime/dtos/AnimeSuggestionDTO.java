@@ -0,0 +1,15 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeSuggestionDTO {
+    private String imdbId;
+    private String title;
+}
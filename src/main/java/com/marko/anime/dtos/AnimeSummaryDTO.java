@@ -0,0 +1,26 @@
+package com.marko.anime.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeSummaryDTO {
+    private ObjectId id;
+    private String imdbId;
+    private String title;
+    private String releaseDate;
+    private String trailer;
+    private String poster;
+    private List<String> genres;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer reviewCount; //only filled by the catalog listing
+}
@@ -0,0 +1,16 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+/**
+ * One revision of one anime document, as named by an ETag. The document id tells a recreated
+ * anime apart from the one that was deleted, since both start counting versions from 0.
+ */
+@Data
+@AllArgsConstructor
+public class AnimeVersion {
+    private ObjectId id; //null never matches a document
+    private long version;
+}
@@ -0,0 +1,26 @@
+package com.marko.anime.dtos;
+
+import com.marko.anime.models.Review;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeWithReviewsDTO {
+    private ObjectId id;
+    private String imdbId;
+    private String title;
+    private String releaseDate;
+    private String trailer;
+    private String poster;
+    private List<String> genres;
+    private List<String> backdrops;
+    private List<Review> reviews;
+}
@@ -0,0 +1,19 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsDTO {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long entries;
+    private long weightBytes;
+    private long maxWeightBytes;
+}
@@ -0,0 +1,22 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CatalogFilter {
+    private List<String> genres; //anime must carry all of them, exact names
+    private String releasedFrom; //inclusive, yyyy-MM-dd
+    private String releasedTo; //inclusive, yyyy-MM-dd
+    private String titlePrefix; //case-sensitive
+    @Builder.Default
+    private CatalogSort sort = CatalogSort.TITLE;
+    private Boolean descending; //null means the sort's default order
+}
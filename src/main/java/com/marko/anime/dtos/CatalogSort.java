@@ -0,0 +1,39 @@
+package com.marko.anime.dtos;
+
+import java.util.Locale;
+
+/**
+ * Orders supported by the catalog listing. Each is backed by a compound index on Anime.
+ */
+public enum CatalogSort {
+    TITLE("title", false),
+    RELEASE_DATE("releaseDate", true),
+    REVIEW_COUNT("reviewCount", true);
+
+    private final String field;
+    private final boolean descendingByDefault;
+
+    CatalogSort(String field, boolean descendingByDefault) {
+        this.field = field;
+        this.descendingByDefault = descendingByDefault;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public boolean isDescendingByDefault() {
+        return descendingByDefault;
+    }
+
+    public static CatalogSort fromParam(String param) {
+        if (param != null) {
+            for (CatalogSort sort : values()) {
+                if (sort.field.toLowerCase(Locale.ROOT).equals(param.trim().toLowerCase(Locale.ROOT))) {
+                    return sort;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Sort must be one of title, releaseDate, reviewCount.");
+    }
+}
@@ -0,0 +1,19 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class GenreFacetsDTO {
+    private List<AnimeSummaryDTO> results;
+    private int total;
+    private Map<String, Integer> facets;
+}
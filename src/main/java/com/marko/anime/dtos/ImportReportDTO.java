@@ -0,0 +1,21 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportReportDTO {
+    private long processed;
+    private long inserted;
+    private long updated;
+    private long failed;
+    private boolean completed; //false when the input could not be read to the end
+    private List<ImportErrorDTO> errors; //capped, failed holds the full count
+}
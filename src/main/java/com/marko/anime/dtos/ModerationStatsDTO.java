@@ -0,0 +1,22 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ModerationStatsDTO {
+    private int queueDepth;
+    private int queueCapacity;
+    private int workers;
+    private long approved;
+    private long rejected;
+    private long failed;
+    private long dropped; //queue was full, the review waits for the next requeue
+    private double averageQueueMillis;
+    private long maxQueueMillis;
+}
@@ -0,0 +1,18 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewStatsDTO {
+    private long count;
+    private LocalDateTime firstReviewAt;
+    private LocalDateTime lastReviewAt;
+}
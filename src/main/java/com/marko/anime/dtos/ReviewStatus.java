@@ -2,6 +2,7 @@ package com.marko.anime.dtos;
 
 
 public enum ReviewStatus {
+    PENDING,
     APPROVED,
     REJECTED,
     ERROR
@@ -0,0 +1,16 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewStatusDTO {
+    private String reviewId;
+    private ReviewStatus status;
+    private String message;
+}
@@ -10,4 +10,9 @@ import lombok.Data;
 public class ReviewSubmissionResult {
     private ReviewStatus status;
     private String message;
+    private String reviewId; //set once the review is stored and waiting for moderation
+
+    public ReviewSubmissionResult(ReviewStatus status, String message) {
+        this(status, message, null);
+    }
 }
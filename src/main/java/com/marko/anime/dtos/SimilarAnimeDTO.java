@@ -0,0 +1,16 @@
+package com.marko.anime.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimilarAnimeDTO {
+    private String imdbId;
+    private String title;
+    private double score; //0..1, genre overlap weighted with release date proximity
+}
@@ -0,0 +1,19 @@
+package com.marko.anime.events;
+
+import com.marko.anime.models.Anime;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by AnimeService after a successful write to the anime collection.
+ */
+@Getter
+@AllArgsConstructor
+public class AnimeChangedEvent {
+    private final String imdbId; //id the write was addressed by, the old one if it was changed
+    private final Anime anime; //state after the write, null when the anime was deleted
+
+    public boolean isDeletion() {
+        return anime == null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.marko.anime.events;
+
+/**
+ * Published by AnimeService after a bulk write that may have touched any part of the anime
+ * collection. Listeners should reload instead of applying incremental changes.
+ */
+public class CatalogReloadedEvent {
+}
@@ -2,6 +2,9 @@ package com.marko.anime.exceptions;
 
 public class AnimeNotFoundException extends RuntimeException{
 
+    //thrown for ids rejected before any lookup, shared and without a stack trace since it is cheap and frequent
+    private static final AnimeNotFoundException UNKNOWN_ID = new AnimeNotFoundException("Anime not found.", false);
+
     public AnimeNotFoundException() {
         super("Anime not found.");
     }
@@ -9,4 +12,12 @@ public class AnimeNotFoundException extends RuntimeException{
     public AnimeNotFoundException(String message){
         super(message);
     };
+
+    private AnimeNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    public static AnimeNotFoundException unknownId() {
+        return UNKNOWN_ID;
+    }
 }
@@ -0,0 +1,12 @@
+package com.marko.anime.exceptions;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException() {
+        super("Anime was modified by someone else, reload it and try again.");
+    }
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.marko.anime.exceptions;
+
+public class ReviewNotFoundException extends RuntimeException {
+
+    public ReviewNotFoundException() {
+        super("Review not found.");
+    }
+}
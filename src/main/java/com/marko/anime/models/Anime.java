@@ -6,12 +6,24 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.mapping.DocumentReference;
 
 import java.util.List;
 
 @Document(collection = "anime")
+//one index per catalog sort, alone and behind the genre filter, see CatalogQueryPlanCheck
+@CompoundIndexes({
+        @CompoundIndex(name = "title_id", def = "{'title': 1, '_id': 1}"),
+        @CompoundIndex(name = "releaseDate_id", def = "{'releaseDate': 1, '_id': 1}"),
+        @CompoundIndex(name = "reviewCount_id", def = "{'reviewCount': 1, '_id': 1}"),
+        @CompoundIndex(name = "genres_title_id", def = "{'genres': 1, 'title': 1, '_id': 1}"),
+        @CompoundIndex(name = "genres_releaseDate_id", def = "{'genres': 1, 'releaseDate': 1, '_id': 1}"),
+        @CompoundIndex(name = "genres_reviewCount_id", def = "{'genres': 1, 'reviewCount': 1, '_id': 1}")
+})
 @Data
 @Builder
 @AllArgsConstructor
@@ -19,6 +31,7 @@ import java.util.List;
 public class Anime {
     @Id
     private ObjectId id;
+    @Indexed
     private String imdbId;
     private String title;
     private String releaseDate;
@@ -26,7 +39,9 @@ public class Anime {
     private String poster;
     private List<String> genres;
     private List<String> backdrops;
-    @DocumentReference
-    private List<Review> reviewIds;
+    @Version
+    private Long version; //missing on documents written before versioning, treated as 0
+    private int reviewCount; //number of reviews with this imdbId, see ReviewCountBackfill
+    //the reviews last added to reviewCount, written only by ReviewModerationService, is not mapped here
 
 }
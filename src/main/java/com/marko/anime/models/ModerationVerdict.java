@@ -0,0 +1,28 @@
+package com.marko.anime.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A cached Perspective API verdict, shared by all nodes. The id is the content hash built by
+ * ModerationVerdictCache, so it already covers the thresholds the verdict was made with.
+ */
+@Document(collection = "moderation_verdicts")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ModerationVerdict {
+    @Id
+    private String id;
+    private boolean profane;
+    @Indexed(expireAfter = "0s") //removed once expiresAt has passed
+    private Instant expiresAt;
+}
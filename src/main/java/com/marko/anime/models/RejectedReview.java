@@ -0,0 +1,36 @@
+package com.marko.anime.models;
+
+import com.marko.anime.dtos.ReviewStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A review turned down by moderation. It is moved out of the reviews collection so it neither
+ * shows up in listings nor blocks the user from submitting another one, and is kept for a
+ * while so its author can still look up the outcome.
+ */
+@Document(collection = "rejected_reviews")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RejectedReview {
+    @Id
+    private ObjectId id; //same id the review had while pending
+    private String body;
+    private String userId;
+    private String imdbId;
+    private ReviewStatus status; //ERROR when moderation kept failing, missing means REJECTED
+    private String reason;
+    private LocalDateTime createdAt;
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime rejectedAt;
+}
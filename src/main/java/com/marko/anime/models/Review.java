@@ -1,15 +1,26 @@
 package com.marko.anime.models;
 
+import com.marko.anime.dtos.ReviewStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "reviews")
+@CompoundIndexes({
+        @CompoundIndex(name = "imdbId_createdAt_id", def = "{'imdbId': 1, 'createdAt': -1, '_id': -1}"),
+        //only reviews waiting for moderation, see ReviewModerationService.requeuePending
+        @CompoundIndex(name = "pending_createdAt", def = "{'createdAt': 1}", partialFilter = "{'status': 'PENDING'}"),
+        //only approved reviews whose anime count may not include them yet, see ReviewModerationService.countApproved
+        @CompoundIndex(name = "uncounted", def = "{'uncounted': 1}", partialFilter = "{'uncounted': true}")
+})
+//the unique (imdbId, userId) index is built by ReviewDuplicateMigration once existing duplicates are gone
 @Data
 @Builder
 @AllArgsConstructor
@@ -18,7 +29,12 @@ public class Review {
     private ObjectId id;
     private String body;
     private String userId; //"username"
+    private String imdbId; //anime the review belongs to
+    private ReviewStatus status; //missing on reviews from before moderation, those count as approved
     private LocalDateTime createdAt;
+    private Integer moderationAttempts; //failed moderation attempts, see ReviewModerationService
+    private LocalDateTime nextAttemptAt; //earliest requeue after a failed attempt
+    private Boolean uncounted; //approved, but the anime's reviewCount may not include it yet
 
     public Review(String body, String userId) {
         this.body = body;
@@ -26,5 +42,10 @@ public class Review {
         this.createdAt = LocalDateTime.now();
     }
 
+    public Review(String body, String userId, String imdbId) {
+        this(body, userId);
+        this.imdbId = imdbId;
+    }
+
 
 }
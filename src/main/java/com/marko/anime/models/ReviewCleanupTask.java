@@ -0,0 +1,34 @@
+package com.marko.anime.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reviews of a deleted anime that still have to be removed: those with its imdbId created up to
+ * createdAt, plus legacy references copied from the anime if it had not been migrated yet. Ids are
+ * pulled from the list as batches are deleted, so after a restart the job continues where it stopped.
+ * With moveToImdbId set the anime was renamed instead, and the same reviews are moved to the new id.
+ */
+@Document(collection = "review_cleanup_tasks")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReviewCleanupTask {
+    @Id
+    private ObjectId id;
+    private String imdbId;
+    private String moveToImdbId;
+    private List<ObjectId> pendingReviewIds;
+    private long deletedReviews;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
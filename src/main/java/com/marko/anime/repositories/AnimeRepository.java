@@ -5,10 +5,13 @@ import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AnimeRepository extends MongoRepository<Anime, ObjectId> {
     Optional<Anime> findAnimeByImdbId(String imdbId);
+    <T> Optional<T> findAnimeByImdbId(String imdbId, Class<T> type);
+    <T> List<T> findAllBy(Class<T> type);
     Optional<Anime> deleteAnimeByImdbId(String imdbId);
 }
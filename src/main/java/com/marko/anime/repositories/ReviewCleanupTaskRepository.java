@@ -0,0 +1,14 @@
+package com.marko.anime.repositories;
+
+import com.marko.anime.models.ReviewCleanupTask;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReviewCleanupTaskRepository extends MongoRepository<ReviewCleanupTask, ObjectId> {
+    List<ReviewCleanupTask> findAllByOrderByCreatedAtAsc();
+
+    boolean existsByImdbIdInOrMoveToImdbIdIn(Collection<String> imdbIds, Collection<String> moveToImdbIds);
+}
@@ -0,0 +1,134 @@
+package com.marko.anime.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marko.anime.dtos.AnimeDetailDTO;
+import com.marko.anime.dtos.CacheStatsDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory copy of the catalog read models. Detail entries are keyed by imdbId,
+ * the full listing is kept under a reserved key. Both share one byte budget.
+ */
+@Component
+public class AnimeCatalogCache {
+
+    private static final String CATALOG_KEY = "\u0000catalog"; //can never collide with an imdbId
+
+    private final Cache<String, Object> cache;
+    private final long maxWeightBytes;
+
+    public AnimeCatalogCache(@Value("${anime.cache.max-bytes:16777216}") long maxWeightBytes,
+                             @Value("${anime.cache.ttl:10m}") Duration ttl) {
+        this.maxWeightBytes = maxWeightBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher(AnimeCatalogCache::weigh)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached detail or loads it. A loader returning null is not cached.
+     */
+    public AnimeDetailDTO getDetail(String imdbId, Supplier<AnimeDetailDTO> loader) {
+        return (AnimeDetailDTO) cache.get(imdbId, key -> loader.get());
+    }
+
+    /**
+     * Returns the cached details for the given imdbIds, handing all misses to the loader at once.
+     * Ids the loader does not return are absent from the result and not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, AnimeDetailDTO> getDetails(Collection<String> imdbIds,
+                                                  Function<Set<String>, Map<String, AnimeDetailDTO>> loader) {
+        Map<String, Object> found = cache.getAll(imdbIds, missing -> loader.apply((Set<String>) missing));
+        Map<String, AnimeDetailDTO> details = new HashMap<>(found.size());
+        found.forEach((imdbId, detail) -> details.put(imdbId, (AnimeDetailDTO) detail));
+        return details;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<AnimeDetailDTO> getCatalog(Supplier<List<AnimeDetailDTO>> loader) {
+        return (List<AnimeDetailDTO>) cache.get(CATALOG_KEY, key -> List.copyOf(loader.get()));
+    }
+
+    public void invalidate(String imdbId) {
+        if (imdbId != null) {
+            cache.invalidate(imdbId);
+        }
+    }
+
+    public void invalidateCatalog() {
+        cache.invalidate(CATALOG_KEY);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStatsDTO stats() {
+        cache.cleanUp(); //apply pending evictions so the numbers are current
+        CacheStats stats = cache.stats();
+        long weight = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+        return CacheStatsDTO.builder()
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .evictions(stats.evictionCount())
+                .entries(cache.estimatedSize())
+                .weightBytes(weight)
+                .maxWeightBytes(maxWeightBytes)
+                .build();
+    }
+
+    private static int weigh(String key, Object value) {
+        long bytes = 2L * key.length();
+        if (value instanceof AnimeDetailDTO detail) {
+            bytes += estimateBytes(detail);
+        } else if (value instanceof List<?> list) {
+            for (Object item : list) {
+                bytes += estimateBytes((AnimeDetailDTO) item);
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    //rough retained size: object headers plus UTF-16 string payloads
+    static long estimateBytes(AnimeDetailDTO anime) {
+        long bytes = 96;
+        bytes += stringBytes(anime.getImdbId()) + stringBytes(anime.getTitle())
+                + stringBytes(anime.getReleaseDate()) + stringBytes(anime.getTrailer())
+                + stringBytes(anime.getPoster());
+        bytes += listBytes(anime.getGenres()) + listBytes(anime.getBackdrops());
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    private static long listBytes(List<String> values) {
+        if (values == null) {
+            return 0;
+        }
+        long bytes = 24 + 8L * values.size();
+        for (String value : values) {
+            bytes += stringBytes(value);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,40 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.ImportReportDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports a catalog file on startup, e.g. {@code --anime.import.file=data/anime.json}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("anime.import.file")
+public class AnimeImportRunner implements ApplicationRunner {
+
+    private final AnimeImportService importService;
+    private final Path file;
+
+    public AnimeImportRunner(AnimeImportService importService, @Value("${anime.import.file}") Path file) {
+        this.importService = importService;
+        this.file = file;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Importing anime from {}", file);
+        try (InputStream in = Files.newInputStream(file)) {
+            ImportReportDTO report = importService.importAnime(in);
+            report.getErrors().forEach(error ->
+                    log.warn("Record {} ({}) not imported: {}", error.getRecord(), error.getImdbId(), error.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.marko.anime.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.marko.anime.dtos.AnimeDetailDTO;
+import com.marko.anime.dtos.ImportErrorDTO;
+import com.marko.anime.dtos.ImportReportDTO;
+import com.marko.anime.models.Anime;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a catalog (a JSON array or newline-delimited objects) into the anime collection. Only
+ * one record is held as a tree at a time; records are upserted by imdbId in unordered bulk
+ * batches, and existing review references are left untouched.
+ */
+@Slf4j
+@Service
+public class AnimeImportService {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final AnimeService animeService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader recordReader;
+    private final int batchSize;
+
+    public AnimeImportService(MongoTemplate mongoTemplate, AnimeService animeService, ObjectMapper objectMapper,
+                              @Value("${anime.import.batch-size:1000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("anime.import.batch-size must be positive.");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.animeService = animeService;
+        this.objectMapper = objectMapper;
+        this.recordReader = objectMapper.readerFor(AnimeDetailDTO.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.batchSize = batchSize;
+    }
+
+    public ImportReportDTO importAnime(InputStream in) throws IOException {
+        Progress progress = new Progress();
+        //keyed by imdbId, so a repeated id within a batch keeps only its last record
+        Map<String, Pending> batch = new LinkedHashMap<>();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken first = parser.nextToken();
+            boolean array = first == JsonToken.START_ARRAY;
+            JsonToken token = array ? parser.nextToken() : first;
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode node = parser.readValueAsTree();
+                long record = ++progress.processed;
+                try {
+                    AnimeDetailDTO anime = toRecord(node);
+                    batch.put(anime.getImdbId(), new Pending(record, anime));
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    progress.fail(record, node.path("imdbId").asText(null), e.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    flush(batch, progress);
+                }
+                token = parser.nextToken();
+            }
+            flush(batch, progress);
+            progress.completed = true;
+        } catch (JsonProcessingException e) {
+            //malformed JSON cannot be resynchronised, keep what was already written
+            flush(batch, progress);
+            progress.fail(progress.processed + 1, null, "Unreadable input, import stopped: " + e.getOriginalMessage());
+        } finally {
+            if (progress.inserted + progress.updated > 0) {
+                animeService.catalogReloaded();
+            }
+        }
+        log.info("Anime import {}: {} processed, {} inserted, {} updated, {} failed",
+                progress.completed ? "finished" : "aborted",
+                progress.processed, progress.inserted, progress.updated, progress.failed);
+        return progress.toReport();
+    }
+
+    private AnimeDetailDTO toRecord(JsonNode node) throws IOException {
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Record is not a JSON object.");
+        }
+        AnimeDetailDTO anime = recordReader.readValue(node);
+        if (anime.getImdbId() == null || anime.getImdbId().isBlank()) {
+            throw new IllegalArgumentException("Missing imdbId.");
+        }
+        if (anime.getTitle() == null || anime.getTitle().isBlank()) {
+            throw new IllegalArgumentException("Missing title.");
+        }
+        return anime;
+    }
+
+    private void flush(Map<String, Pending> batch, Progress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Pending> pending = new ArrayList<>(batch.values());
+        batch.clear();
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Anime.class);
+        for (Pending p : pending) {
+            AnimeDetailDTO a = p.anime();
+            Update update = new Update()
+                    .set("title", a.getTitle())
+                    .set("releaseDate", a.getReleaseDate())
+                    .set("trailer", a.getTrailer())
+                    .set("poster", a.getPoster())
+                    .set("genres", a.getGenres())
+                    .set("backdrops", a.getBackdrops())
+                    .setOnInsert("reviewCount", 0)
+                    .inc("version", 1);
+            ops.upsert(Query.query(Criteria.where("imdbId").is(a.getImdbId())), update);
+        }
+        try {
+            progress.written(ops.execute());
+        } catch (BulkOperationException e) {
+            progress.written(e.getResult());
+            for (BulkWriteError error : e.getErrors()) {
+                Pending failed = pending.get(error.getIndex());
+                progress.fail(failed.record(), failed.anime().getImdbId(), error.getMessage());
+            }
+        }
+        log.info("Anime import progress: {} processed, {} inserted, {} updated, {} failed",
+                progress.processed, progress.inserted, progress.updated, progress.failed);
+    }
+
+    private record Pending(long record, AnimeDetailDTO anime) {
+    }
+
+    private static final class Progress {
+        private long processed;
+        private long inserted;
+        private long updated;
+        private long failed;
+        private boolean completed;
+        private final List<ImportErrorDTO> errors = new ArrayList<>();
+
+        void written(BulkWriteResult result) {
+            inserted += result.getUpserts().size();
+            updated += result.getMatchedCount();
+        }
+
+        void fail(long record, String imdbId, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportErrorDTO(record, imdbId, message));
+            }
+        }
+
+        ImportReportDTO toReport() {
+            return ImportReportDTO.builder()
+                    .processed(processed)
+                    .inserted(inserted)
+                    .updated(updated)
+                    .failed(failed)
+                    .completed(completed)
+                    .errors(errors)
+                    .build();
+        }
+    }
+}
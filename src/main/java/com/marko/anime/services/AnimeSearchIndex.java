@@ -0,0 +1,397 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.GenreFacetsDTO;
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.events.CatalogReloadedEvent;
+import com.marko.anime.models.Anime;
+import com.marko.anime.repositories.AnimeRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the catalog. Every anime gets a dense ordinal; title tokens map to
+ * sorted int arrays of ordinals and genres to bitmaps over the ordinals, so a search or a facet
+ * count is a handful of intersections. Built once at startup and kept current from
+ * AnimeChangedEvents. A rebuild loads the catalog into a new index without holding the lock,
+ * queues the change events that arrive meanwhile, and replays them on the new index before
+ * swapping it in, so searches keep running on the old one during the load.
+ */
+@Service
+public class AnimeSearchIndex {
+
+    static final int MAX_RESULTS = 100;
+    private static final int[] EMPTY = new int[0];
+
+    private final AnimeRepository animeRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuilding = new Object();
+
+    private Index index = new Index(0);
+    private List<AnimeChangedEvent> queuedChanges; //non-null while a rebuild is loading
+
+    public AnimeSearchIndex(AnimeRepository animeRepository) {
+        this.animeRepository = animeRepository;
+    }
+
+    @EventListener({ApplicationReadyEvent.class, CatalogReloadedEvent.class})
+    public void rebuild() {
+        synchronized (rebuilding) {
+            lock.writeLock().lock();
+            try {
+                queuedChanges = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Index rebuilt = null;
+            try {
+                List<AnimeSummaryDTO> all = animeRepository.findAllBy(AnimeSummaryDTO.class);
+                rebuilt = new Index(all.size());
+                all.forEach(rebuilt::add);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (rebuilt != null) {
+                        queuedChanges.forEach(rebuilt::apply);
+                        index = rebuilt;
+                    }
+                    queuedChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    @EventListener
+    public void onAnimeChanged(AnimeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            index.apply(event);
+            if (queuedChanges != null) {
+                queuedChanges.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Title tokens are AND-ed, the last one also matches as a prefix. Genres are AND-ed,
+     * or OR-ed when matchAnyGenre is set. Results are ordered by title.
+     */
+    public List<AnimeSummaryDTO> search(String query, List<String> genres, boolean matchAnyGenre, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        List<String> genreKeys = genres == null ? List.of() : genres.stream()
+                .filter(genre -> genre != null && !genre.isBlank())
+                .map(AnimeSearchIndex::genreKey)
+                .distinct()
+                .toList();
+        if (tokens.isEmpty() && genreKeys.isEmpty()) {
+            throw new IllegalArgumentException("Provide a search term or at least one genre.");
+        }
+        if (limit < 1 || limit > MAX_RESULTS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_RESULTS + ".");
+        }
+
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            int[] matches = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean last = i == tokens.size() - 1;
+                int[] postings = last ? current.prefixPostings(tokens.get(i))
+                        : current.titlePostings.getOrDefault(tokens.get(i), EMPTY);
+                matches = matches == null ? postings : intersect(matches, postings);
+            }
+            List<AnimeSummaryDTO> results = new ArrayList<>();
+            if (genreKeys.isEmpty()) {
+                for (int ordinal : matches) {
+                    results.add(current.docs[ordinal]);
+                }
+            } else {
+                BitSet genreMatches = current.genreFilter(genreKeys, matchAnyGenre);
+                if (matches == null) {
+                    genreMatches.stream().forEach(ordinal -> results.add(current.docs[ordinal]));
+                } else {
+                    for (int ordinal : matches) {
+                        if (genreMatches.get(ordinal)) {
+                            results.add(current.docs[ordinal]);
+                        }
+                    }
+                }
+            }
+            return firstByTitle(results, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Anime carrying all the given genres (the whole catalog when none are given), plus for every
+     * other genre the number of those anime that also carry it, highest count first.
+     */
+    public GenreFacetsDTO facets(List<String> genres, int limit) {
+        if (limit < 1 || limit > MAX_RESULTS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_RESULTS + ".");
+        }
+        List<String> genreKeys = genres == null ? List.of() : genres.stream()
+                .filter(genre -> genre != null && !genre.isBlank())
+                .map(AnimeSearchIndex::genreKey)
+                .distinct()
+                .toList();
+
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            BitSet matches = genreKeys.isEmpty() ? (BitSet) current.live.clone() : current.genreFilter(genreKeys, false);
+
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+            BitSet scratch = new BitSet();
+            for (Map.Entry<String, BitSet> entry : current.genreBitmaps.entrySet()) {
+                if (genreKeys.contains(entry.getKey())) {
+                    continue;
+                }
+                scratch.clear();
+                scratch.or(matches);
+                scratch.and(entry.getValue());
+                int count = scratch.cardinality();
+                if (count > 0) {
+                    counts.add(Map.entry(current.genreLabels.get(entry.getKey()), count));
+                }
+            }
+            counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            Map<String, Integer> facets = new LinkedHashMap<>();
+            counts.forEach(entry -> facets.put(entry.getKey(), entry.getValue()));
+
+            List<AnimeSummaryDTO> results = new ArrayList<>(matches.cardinality());
+            matches.stream().forEach(ordinal -> results.add(current.docs[ordinal]));
+            return GenreFacetsDTO.builder()
+                    .total(results.size())
+                    .results(firstByTitle(results, limit))
+                    .facets(facets)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<AnimeSummaryDTO> firstByTitle(List<AnimeSummaryDTO> results, int limit) {
+        results.sort(Comparator.comparing(AnimeSummaryDTO::getTitle, Comparator.nullsLast(String::compareTo)));
+        return results.size() > limit ? List.copyOf(results.subList(0, limit)) : results;
+    }
+
+    private static void removePosting(Map<String, int[]> postings, String key, int ordinal) {
+        int[] current = postings.get(key);
+        if (current == null) {
+            return;
+        }
+        int index = Arrays.binarySearch(current, ordinal);
+        if (index < 0) {
+            return;
+        }
+        if (current.length == 1) {
+            postings.remove(key);
+            return;
+        }
+        int[] shrunk = new int[current.length - 1];
+        System.arraycopy(current, 0, shrunk, 0, index);
+        System.arraycopy(current, index + 1, shrunk, index, current.length - index - 1);
+        postings.put(key, shrunk);
+    }
+
+    private static List<String> genreKeys(AnimeSummaryDTO anime) {
+        if (anime.getGenres() == null) {
+            return List.of();
+        }
+        return anime.getGenres().stream()
+                .filter(genre -> genre != null && !genre.isBlank())
+                .map(AnimeSearchIndex::genreKey)
+                .distinct()
+                .toList();
+    }
+
+    static String genreKey(String genre) {
+        return genre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    static AnimeSummaryDTO toSummary(Anime anime) {
+        return AnimeSummaryDTO.builder()
+                .id(anime.getId())
+                .imdbId(anime.getImdbId())
+                .title(anime.getTitle())
+                .releaseDate(anime.getReleaseDate())
+                .trailer(anime.getTrailer())
+                .poster(anime.getPoster())
+                .genres(anime.getGenres())
+                .build();
+    }
+
+    //the index state, replaced as a whole by a rebuild and otherwise only changed under the write lock
+    private static final class Index {
+
+        private AnimeSummaryDTO[] docs;
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<Integer> freeOrdinals = new ArrayList<>();
+        private int nextOrdinal;
+        private final NavigableMap<String, int[]> titlePostings = new TreeMap<>();
+        private final Map<String, BitSet> genreBitmaps = new HashMap<>();
+        private final Map<String, String> genreLabels = new HashMap<>();
+        private final BitSet live = new BitSet();
+
+        Index(int expectedSize) {
+            docs = new AnimeSummaryDTO[Math.max(64, expectedSize * 2)];
+        }
+
+        void apply(AnimeChangedEvent event) {
+            remove(event.getImdbId());
+            if (!event.isDeletion()) {
+                remove(event.getAnime().getImdbId());
+                add(toSummary(event.getAnime()));
+            }
+        }
+
+        //every posting under the prefix OR-ed into one bitmap, one pass over each posting list
+        int[] prefixPostings(String prefix) {
+            NavigableMap<String, int[]> matching = titlePostings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            if (matching.isEmpty()) {
+                return EMPTY;
+            }
+            if (matching.size() == 1) {
+                return matching.firstEntry().getValue();
+            }
+            BitSet union = new BitSet(nextOrdinal);
+            for (int[] postings : matching.values()) {
+                for (int ordinal : postings) {
+                    union.set(ordinal);
+                }
+            }
+            return union.stream().toArray();
+        }
+
+        BitSet genreFilter(List<String> genreKeys, boolean matchAny) {
+            BitSet result = null;
+            for (String genre : genreKeys) {
+                BitSet bitmap = genreBitmaps.get(genre);
+                if (result == null) {
+                    result = bitmap == null ? new BitSet() : (BitSet) bitmap.clone();
+                } else if (matchAny) {
+                    if (bitmap != null) {
+                        result.or(bitmap);
+                    }
+                } else if (bitmap == null) {
+                    result.clear();
+                } else {
+                    result.and(bitmap);
+                }
+            }
+            return result;
+        }
+
+        void add(AnimeSummaryDTO anime) {
+            if (anime.getImdbId() == null) {
+                return;
+            }
+            int ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.remove(freeOrdinals.size() - 1);
+            if (ordinal >= docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+            }
+            docs[ordinal] = anime;
+            ordinals.put(anime.getImdbId(), ordinal);
+            live.set(ordinal);
+            for (String token : TextNormalizer.tokenize(anime.getTitle())) {
+                titlePostings.merge(token, new int[]{ordinal}, AnimeSearchIndex::union);
+            }
+            for (String genre : anime.getGenres() == null ? List.<String>of() : anime.getGenres()) {
+                if (genre != null && !genre.isBlank()) {
+                    String key = genreKey(genre);
+                    genreLabels.putIfAbsent(key, genre.trim());
+                    genreBitmaps.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+                }
+            }
+        }
+
+        void remove(String imdbId) {
+            Integer ordinal = imdbId == null ? null : ordinals.remove(imdbId);
+            if (ordinal == null) {
+                return;
+            }
+            AnimeSummaryDTO anime = docs[ordinal];
+            for (String token : TextNormalizer.tokenize(anime.getTitle())) {
+                removePosting(titlePostings, token, ordinal);
+            }
+            for (String genre : genreKeys(anime)) {
+                BitSet bitmap = genreBitmaps.get(genre);
+                if (bitmap != null) {
+                    bitmap.clear(ordinal);
+                    if (bitmap.isEmpty()) {
+                        genreBitmaps.remove(genre);
+                        genreLabels.remove(genre);
+                    }
+                }
+            }
+            live.clear(ordinal);
+            docs[ordinal] = null;
+            freeOrdinals.add(ordinal);
+        }
+    }
+}
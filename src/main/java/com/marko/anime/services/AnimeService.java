@@ -1,63 +1,470 @@
 package com.marko.anime.services;
 
+import com.marko.anime.dtos.AnimeBatchItemDTO;
+import com.marko.anime.dtos.AnimeDetailDTO;
+import com.marko.anime.dtos.AnimeFullDTO;
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.AnimeVersion;
+import com.marko.anime.dtos.AnimeWithReviewsDTO;
+import com.marko.anime.dtos.CacheStatsDTO;
+import com.marko.anime.dtos.CatalogFilter;
+import com.marko.anime.dtos.CatalogSort;
+import com.marko.anime.dtos.CursorPageDTO;
+import com.marko.anime.dtos.ReviewStatsDTO;
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.events.CatalogReloadedEvent;
 import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.exceptions.PreconditionFailedException;
 import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
 import com.marko.anime.repositories.AnimeRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationPipeline;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.aggregation.UnsetOperation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class AnimeService {
 
+    static final int MAX_PAGE_SIZE = 100;
+    static final int MAX_BATCH_SIZE = 100;
+    static final int FULL_REVIEW_PAGE_SIZE = 10;
+    static final Set<String> PATCHABLE_FIELDS =
+            Set.of("imdbId", "title", "releaseDate", "trailer", "poster", "genres", "backdrops");
+
     private final AnimeRepository animeRepository;
+    private final MongoTemplate mongoTemplate;
+    private final AnimeCatalogCache catalogCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TrendingService trendingService;
+    private final KnownAnimeIds knownAnimeIds;
+    private final ReviewCleanupService reviewCleanupService;
 
-    public AnimeService(AnimeRepository animeRepository) {
+    public AnimeService(AnimeRepository animeRepository, MongoTemplate mongoTemplate,
+                        AnimeCatalogCache catalogCache, ApplicationEventPublisher eventPublisher,
+                        TrendingService trendingService, KnownAnimeIds knownAnimeIds,
+                        ReviewCleanupService reviewCleanupService) {
         this.animeRepository = animeRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.catalogCache = catalogCache;
+        this.eventPublisher = eventPublisher;
+        this.trendingService = trendingService;
+        this.knownAnimeIds = knownAnimeIds;
+        this.reviewCleanupService = reviewCleanupService;
+    }
+
+
+    public List<AnimeDetailDTO> findAllAnime() {
+            return catalogCache.getCatalog(() -> animeRepository.findAllBy(AnimeDetailDTO.class));
+    }
+
+    public CursorPageDTO<AnimeSummaryDTO> findAnimePage(String cursor, int size) {
+        return findAnimePage(new CatalogFilter(), cursor, size);
+    }
+
+    /**
+     * Keyset-paginated listing with optional filters. Every filter and sort combination
+     * is served by one of the compound indexes declared on Anime.
+     */
+    public CursorPageDTO<AnimeSummaryDTO> findAnimePage(CatalogFilter filter, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        List<AnimeSummaryDTO> rows = mongoTemplate.find(pageQuery(filter, after, size + 1), AnimeSummaryDTO.class, "anime");
+
+        if (rows.size() <= size) {
+            return new CursorPageDTO<>(rows, null);
+        }
+        List<AnimeSummaryDTO> content = rows.subList(0, size);
+        AnimeSummaryDTO last = content.get(size - 1);
+        return new CursorPageDTO<>(content, new KeysetCursor(last.getId(), sortValue(sortOf(filter), last)).encode());
     }
 
+    static Query pageQuery(CatalogFilter filter, KeysetCursor after, int limit) {
+        CatalogSort sort = sortOf(filter);
+        boolean descending = filter.getDescending() != null ? filter.getDescending() : sort.isDescendingByDefault();
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter.getGenres() != null && !filter.getGenres().isEmpty()) {
+            criteria.add(Criteria.where("genres").all(filter.getGenres()));
+        }
+        if (filter.getTitlePrefix() != null && !filter.getTitlePrefix().isEmpty()) {
+            criteria.add(Criteria.where("title").gte(filter.getTitlePrefix()).lt(filter.getTitlePrefix() + Character.MAX_VALUE));
+        }
+        String from = isoDate("releasedFrom", filter.getReleasedFrom());
+        String to = isoDate("releasedTo", filter.getReleasedTo());
+        if (sort == CatalogSort.RELEASE_DATE || from != null || to != null) {
+            //string comparison only matches strings, so anime without a release date drop out here
+            Criteria released = Criteria.where("releaseDate").gte(from == null ? "" : from);
+            criteria.add(to == null ? released : released.lte(to));
+        }
+        if (after != null) {
+            criteria.add(after.after(sort.getField(), cursorValue(sort, after), descending));
+        }
+        Query query = new Query();
+        if (criteria.size() == 1) {
+            query.addCriteria(criteria.get(0));
+        } else if (!criteria.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(criteria));
+        }
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        query.with(Sort.by(direction, sort.getField(), "_id")).limit(limit);
+        query.fields().exclude("reviewIds", "countedReviewIds", "backdrops");
+        return query;
+    }
+
+    private static CatalogSort sortOf(CatalogFilter filter) {
+        return filter.getSort() == null ? CatalogSort.TITLE : filter.getSort();
+    }
+
+    private static String isoDate(String param, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim()).toString();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(param + " must be a date like 2020-01-31.");
+        }
+    }
+
+    private static Object cursorValue(CatalogSort sort, KeysetCursor after) {
+        if (sort != CatalogSort.REVIEW_COUNT || after.getValue() == null) {
+            return after.getValue();
+        }
+        try {
+            return Integer.parseInt(after.getValue());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+
+    private static String sortValue(CatalogSort sort, AnimeSummaryDTO row) {
+        return switch (sort) {
+            case TITLE -> row.getTitle();
+            case RELEASE_DATE -> row.getReleaseDate();
+            case REVIEW_COUNT -> row.getReviewCount() == null ? null : String.valueOf(row.getReviewCount());
+        };
+    }
+
+    public AnimeDetailDTO findAnimeByImdbId(String id) {
+        AnimeDetailDTO anime = findAnimeDetail(id);
+        trendingService.recordView(id);
+        return anime;
+    }
+
+    /**
+     * Same as {@link #findAnimeByImdbId(String)} but without counting a view, for callers that
+     * may not hand the anime out, like a conditional GET answered with 304.
+     */
+    public AnimeDetailDTO findAnimeDetail(String id) {
+        if (knownAnimeIds.isUnknown(id)) {
+            throw AnimeNotFoundException.unknownId();
+        }
+        AnimeDetailDTO anime = catalogCache.getDetail(id,
+                () -> animeRepository.findAnimeByImdbId(id, AnimeDetailDTO.class).orElse(null));
+        if (anime == null) {
+            throw new AnimeNotFoundException();
+        }
+        return anime;
+    }
+
+    /**
+     * Resolves many imdbIds at once: cached details are served directly, the rest are loaded
+     * with one $in query. Items follow the request order, unknown ids are marked as not found.
+     */
+    public List<AnimeBatchItemDTO> findAnimeBatch(List<String> imdbIds) {
+        if (imdbIds == null || imdbIds.isEmpty() || imdbIds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Provide between 1 and " + MAX_BATCH_SIZE + " imdbIds.");
+        }
+        if (imdbIds.stream().anyMatch(id -> id == null || id.isBlank())) {
+            throw new IllegalArgumentException("imdbIds must not be blank.");
+        }
+        Set<String> candidates = new LinkedHashSet<>(imdbIds);
+        candidates.removeIf(knownAnimeIds::isUnknown);
+        Map<String, AnimeDetailDTO> found = candidates.isEmpty() ? Map.of() : catalogCache.getDetails(candidates, missing -> {
+            Query query = Query.query(Criteria.where("imdbId").in(missing));
+            query.fields().exclude("reviewIds", "countedReviewIds");
+            Map<String, AnimeDetailDTO> loaded = new HashMap<>();
+            for (AnimeDetailDTO anime : mongoTemplate.find(query, AnimeDetailDTO.class, "anime")) {
+                loaded.putIfAbsent(anime.getImdbId(), anime);
+            }
+            return loaded;
+        });
+        List<AnimeBatchItemDTO> items = new ArrayList<>(imdbIds.size());
+        for (String imdbId : imdbIds) {
+            AnimeDetailDTO anime = found.get(imdbId);
+            items.add(new AnimeBatchItemDTO(imdbId, anime != null, anime));
+        }
+        return items;
+    }
 
-    public List<Anime> findAllAnime() {
-            return animeRepository.findAll();
+    public AnimeWithReviewsDTO findAnimeWithReviews(String id) {
+        if (knownAnimeIds.isUnknown(id)) {
+            throw AnimeNotFoundException.unknownId();
+        }
+        Anime anime = animeRepository.findAnimeByImdbId(id)
+                .orElseThrow(AnimeNotFoundException::new);
+        List<Review> reviews = mongoTemplate.find(Query.query(Criteria.where("imdbId").is(anime.getImdbId())
+                        .and("status").in(ReviewService.LISTED_STATUSES))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt", "_id")), Review.class);
+        return AnimeWithReviewsDTO.builder()
+                .id(anime.getId())
+                .imdbId(anime.getImdbId())
+                .title(anime.getTitle())
+                .releaseDate(anime.getReleaseDate())
+                .trailer(anime.getTrailer())
+                .poster(anime.getPoster())
+                .genres(anime.getGenres())
+                .backdrops(anime.getBackdrops())
+                .reviews(reviews)
+                .build();
     }
 
-    public Optional<Anime> findAnimeByImdbId(String id) {
-        Optional<Anime> animeOptional = animeRepository.findAnimeByImdbId(id);
-        if (animeOptional.isEmpty()) {
+    /**
+     * Anime, its newest reviews and review statistics from one aggregation: the approved reviews
+     * are joined with a $lookup whose pipeline $facets into the first page and the totals.
+     */
+    public AnimeFullDTO findAnimeFull(String id) {
+        if (knownAnimeIds.isUnknown(id)) {
+            throw AnimeNotFoundException.unknownId();
+        }
+        Document result = mongoTemplate.aggregate(fullAggregation(id), "anime", Document.class).getUniqueMappedResult();
+        if (result == null) {
             throw new AnimeNotFoundException();
         }
-        return animeOptional;
+        MongoConverter converter = mongoTemplate.getConverter();
+        List<Document> reviewData = result.getList("reviewData", Document.class, List.of());
+        Document facets = reviewData.isEmpty() ? new Document() : reviewData.get(0);
+        List<Review> reviews = facets.getList("page", Document.class, List.of()).stream()
+                .map(review -> converter.read(Review.class, review))
+                .toList();
+        List<Document> stats = facets.getList("stats", Document.class, List.of());
+        trendingService.recordView(id);
+        return AnimeFullDTO.builder()
+                .anime(converter.read(AnimeDetailDTO.class, result))
+                .reviews(reviews)
+                .reviewStats(stats.isEmpty() ? new ReviewStatsDTO() : converter.read(ReviewStatsDTO.class, stats.get(0)))
+                .build();
+    }
+
+    static Aggregation fullAggregation(String id) {
+        FacetOperation reviewFacets = Aggregation.facet(
+                        Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "_id")),
+                        Aggregation.limit(FULL_REVIEW_PAGE_SIZE))
+                .as("page")
+                .and(Aggregation.group()
+                        .count().as("count")
+                        .min("createdAt").as("firstReviewAt")
+                        .max("createdAt").as("lastReviewAt"))
+                .as("stats");
+        return Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("imdbId").is(id)),
+                Aggregation.limit(1),
+                Aggregation.lookup().from("reviews").localField("imdbId").foreignField("imdbId")
+                        .pipeline(AggregationPipeline.of(
+                                Aggregation.match(Criteria.where("status").in(ReviewService.LISTED_STATUSES)),
+                                reviewFacets))
+                        .as("reviewData"),
+                UnsetOperation.unset("reviewIds", "countedReviewIds")); //reviewIds is the legacy array until ReviewImdbIdMigration has run
     }
 
     public Anime createNewAnime(Anime anime) {
-            return animeRepository.save(anime);
+            anime.setVersion(null); //always an insert, starting at version 0
+            anime.setReviewCount(0);
+            Anime saved = animeRepository.save(anime);
+            catalogCache.invalidateCatalog();
+            eventPublisher.publishEvent(new AnimeChangedEvent(saved.getImdbId(), saved));
+            return saved;
     }
 
-    public Anime updateAnime(String id, Anime anime) {
-            Optional<Anime> existingAnimeOptional = animeRepository.findAnimeByImdbId(id);
+    public AnimeDetailDTO updateAnime(String id, Anime anime) {
+        return updateAnime(id, anime, null);
+    }
 
-            if (existingAnimeOptional.isPresent()) {
-                Anime existingAnime = existingAnimeOptional.get();
+    /**
+     * @param expectedVersion version the caller last saw, null to overwrite unconditionally
+     * @throws PreconditionFailedException if the anime exists but is not that version
+     * @throws IllegalArgumentException if the title or imdbId is missing or blank
+     */
+    public AnimeDetailDTO updateAnime(String id, Anime anime, AnimeVersion expectedVersion) {
+            Update update = new Update()
+                    .set("title", patchValue("title", anime.getTitle()))
+                    .set("imdbId", patchValue("imdbId", anime.getImdbId()))
+                    .set("releaseDate", anime.getReleaseDate())
+                    .set("trailer", anime.getTrailer())
+                    .set("poster", anime.getPoster())
+                    .set("genres", anime.getGenres())
+                    .set("backdrops", anime.getBackdrops());
+            return modify(id, update, expectedVersion);
+    }
+
+    /**
+     * Sets only the supplied fields, in a single findAndModify. The review counter is never
+     * part of the update, so concurrent review submissions are not lost.
+     */
+    public AnimeDetailDTO patchAnime(String id, Map<String, Object> fields) {
+        return patchAnime(id, fields, null);
+    }
 
-                existingAnime.setTitle(anime.getTitle());
-                existingAnime.setImdbId(anime.getImdbId());
-                existingAnime.setReleaseDate(anime.getReleaseDate());
-                existingAnime.setTrailer(anime.getTrailer());
-                existingAnime.setPoster(anime.getPoster());
-                existingAnime.setGenres(anime.getGenres());
-                existingAnime.setBackdrops(anime.getBackdrops());
+    public AnimeDetailDTO patchAnime(String id, Map<String, Object> fields, AnimeVersion expectedVersion) {
+        if (fields == null || fields.isEmpty()) {
+            throw new IllegalArgumentException("No fields to update.");
+        }
+        Update update = new Update();
+        fields.forEach((field, value) -> update.set(field, patchValue(field, value)));
+        return modify(id, update, expectedVersion);
+    }
 
-                return animeRepository.save(existingAnime);
-            } else {
-                throw new AnimeNotFoundException();
+    private static Object patchValue(String field, Object value) {
+        if (!PATCHABLE_FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Field '" + field + "' cannot be updated.");
+        }
+        boolean list = field.equals("genres") || field.equals("backdrops");
+        if (value == null) {
+            if (field.equals("imdbId") || field.equals("title")) {
+                throw new IllegalArgumentException("Field '" + field + "' cannot be null.");
+            }
+            return null;
+        }
+        if (list) {
+            if (value instanceof List<?> items && items.stream().allMatch(String.class::isInstance)) {
+                return items;
             }
+            throw new IllegalArgumentException("Field '" + field + "' must be a list of strings.");
+        }
+        if (!(value instanceof String text)) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a string.");
+        }
+        if ((field.equals("imdbId") || field.equals("title")) && text.isBlank()) {
+            throw new IllegalArgumentException("Field '" + field + "' cannot be blank.");
+        }
+        return text;
+    }
+
+    private AnimeDetailDTO modify(String id, Update update, AnimeVersion expectedVersion) {
+        Document set = update.getUpdateObject().get("$set", Document.class);
+        Object newImdbId = set.get("imdbId");
+        if (newImdbId == null && set.containsKey("imdbId")) {
+            //the anime would lose its key and its reviews would be moved to no anime at all
+            throw new IllegalArgumentException("Field 'imdbId' cannot be null.");
+        }
+        if (newImdbId != null && !id.equals(newImdbId)) {
+            checkRename(id, (String) newImdbId);
+        }
+        Query query = versionedQuery(id, expectedVersion);
+        query.fields().exclude("reviewIds", "countedReviewIds");
+        AnimeDetailDTO updated = mongoTemplate.findAndModify(query, update.inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true), AnimeDetailDTO.class, "anime");
+        if (updated == null) {
+            throw missingOrConflict(id, expectedVersion);
+        }
+        if (!id.equals(updated.getImdbId())) {
+            reviewCleanupService.scheduleMove(id, updated.getImdbId());
+        }
+        catalogCache.invalidate(id);
+        catalogCache.invalidate(updated.getImdbId());
+        catalogCache.invalidateCatalog();
+        eventPublisher.publishEvent(new AnimeChangedEvent(id, toAnime(updated)));
+        return updated;
+    }
+
+    //renaming onto an existing anime would merge its reviews into this one
+    private void checkRename(String id, String newImdbId) {
+        if (mongoTemplate.exists(Query.query(Criteria.where("imdbId").is(newImdbId)), Anime.class)) {
+            throw new IllegalArgumentException("Anime with imdbId '" + newImdbId + "' already exists.");
+        }
+        if (reviewCleanupService.hasPendingTask(List.of(id, newImdbId))) {
+            throw new IllegalArgumentException("Reviews of this anime are still being moved or removed, try again later.");
+        }
     }
 
     public void deleteAnime(String id) {
-            Optional<Anime> opt = animeRepository.deleteAnimeByImdbId(id);
-            if (opt.isEmpty()) {
-                throw new AnimeNotFoundException();
+        deleteAnime(id, null);
+    }
+
+    /**
+     * Removes the anime in one findAndRemove and hands its reviews to the background cleanup.
+     * The cleanup is scheduled even when reviewCount is 0, which does not count reviews that are
+     * still pending moderation.
+     */
+    public void deleteAnime(String id, AnimeVersion expectedVersion) {
+            Query query = versionedQuery(id, expectedVersion);
+            query.fields().include("reviewIds");
+            Document removed = mongoTemplate.findAndRemove(query, Document.class, "anime");
+            if (removed == null) {
+                throw missingOrConflict(id, expectedVersion);
             }
+            reviewCleanupService.schedule(id, removed.getList("reviewIds", ObjectId.class, List.of()));
+            catalogCache.invalidate(id);
+            catalogCache.invalidateCatalog();
+            eventPublisher.publishEvent(new AnimeChangedEvent(id, null));
+    }
+
+    private static Query versionedQuery(String id, AnimeVersion expectedVersion) {
+        Criteria criteria = Criteria.where("imdbId").is(id);
+        if (expectedVersion != null) {
+            criteria = criteria.and("_id").is(expectedVersion.getId());
+            //documents from before versioning have no version field and count as version 0
+            criteria = expectedVersion.getVersion() == 0
+                    ? criteria.orOperator(Criteria.where("version").is(0L), Criteria.where("version").exists(false))
+                    : criteria.and("version").is(expectedVersion.getVersion());
+        }
+        return Query.query(criteria);
+    }
+
+    //only called after a conditional write matched nothing, so the common path stays one round trip
+    private RuntimeException missingOrConflict(String id, AnimeVersion expectedVersion) {
+        if (expectedVersion != null && mongoTemplate.exists(Query.query(Criteria.where("imdbId").is(id)), Anime.class)) {
+            return new PreconditionFailedException();
+        }
+        return new AnimeNotFoundException();
+    }
+
+    /**
+     * Called after bulk writes that bypass this service, drops every cached entry and lets the
+     * in-memory indexes reload.
+     */
+    public void catalogReloaded() {
+        catalogCache.invalidateAll();
+        eventPublisher.publishEvent(new CatalogReloadedEvent());
+    }
+
+    public CacheStatsDTO getCacheStats() {
+        return catalogCache.stats();
+    }
+
+    private Anime toAnime(AnimeDetailDTO anime) {
+        return Anime.builder()
+                .id(anime.getId())
+                .imdbId(anime.getImdbId())
+                .title(anime.getTitle())
+                .releaseDate(anime.getReleaseDate())
+                .trailer(anime.getTrailer())
+                .poster(anime.getPoster())
+                .genres(anime.getGenres())
+                .backdrops(anime.getBackdrops())
+                .version(anime.getVersion())
+                .build();
     }
 }
@@ -0,0 +1,90 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.CatalogFilter;
+import com.marko.anime.dtos.CatalogSort;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Explains every query shape the catalog listing can produce and fails startup if any of
+ * them would scan the whole anime collection, e.g. because an index was dropped or a new
+ * filter was added without one.
+ */
+@Component
+@ConditionalOnProperty(name = "anime.catalog.verify-query-plans", havingValue = "true", matchIfMissing = true)
+public class CatalogQueryPlanCheck {
+
+    private final MongoTemplate mongoTemplate;
+
+    public CatalogQueryPlanCheck(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        List<String> scans = new ArrayList<>();
+        for (CatalogFilter filter : shapes()) {
+            for (KeysetCursor after : new KeysetCursor[]{null, sampleCursor(filter.getSort())}) {
+                Query query = AnimeService.pageQuery(filter, after, 2);
+                Document plan = mongoTemplate.getCollection("anime")
+                        .find(query.getQueryObject())
+                        .projection(query.getFieldsObject())
+                        .sort(query.getSortObject())
+                        .limit(query.getLimit())
+                        .explain();
+                Object winningPlan = plan.get("queryPlanner", Document.class).get("winningPlan");
+                if (containsStage(winningPlan, "COLLSCAN")) {
+                    scans.add(query.getQueryObject().toJson() + " sort " + query.getSortObject().toJson());
+                }
+            }
+        }
+        if (!scans.isEmpty()) {
+            throw new IllegalStateException("Catalog queries without a usable index: " + String.join("; ", scans));
+        }
+    }
+
+    static List<CatalogFilter> shapes() {
+        List<CatalogFilter> shapes = new ArrayList<>();
+        for (CatalogSort sort : CatalogSort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                for (int filters = 0; filters < 8; filters++) {
+                    shapes.add(CatalogFilter.builder()
+                            .sort(sort)
+                            .descending(descending)
+                            .genres((filters & 1) != 0 ? List.of("Action") : null)
+                            .titlePrefix((filters & 2) != 0 ? "A" : null)
+                            .releasedFrom((filters & 4) != 0 ? "2000-01-01" : null)
+                            .releasedTo((filters & 4) != 0 ? "2020-12-31" : null)
+                            .build());
+                }
+            }
+        }
+        return shapes;
+    }
+
+    private static KeysetCursor sampleCursor(CatalogSort sort) {
+        return new KeysetCursor(new ObjectId(), sort == CatalogSort.REVIEW_COUNT ? "1" : "A");
+    }
+
+    static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+}
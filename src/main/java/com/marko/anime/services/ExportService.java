@@ -0,0 +1,61 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Dumps whole collections as NDJSON (relaxed extended JSON, one document per line, readable by
+ * mongoimport). Documents come off a server cursor as raw BSON and are written one at a time, so
+ * memory use does not grow with the collection.
+ */
+@Service
+public class ExportService {
+
+    static final int CURSOR_BATCH_SIZE = 500;
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+    private final MongoTemplate mongoTemplate;
+
+    public ExportService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public long exportAnime(OutputStream out) throws IOException {
+        return export(mongoTemplate.getCollectionName(Anime.class), out);
+    }
+
+    public long exportReviews(OutputStream out) throws IOException {
+        return export(mongoTemplate.getCollectionName(Review.class), out);
+    }
+
+    private long export(String collection, OutputStream out) throws IOException {
+        Query query = new Query().cursorBatchSize(CURSOR_BATCH_SIZE);
+        long written = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+            Iterator<Document> it = documents.iterator();
+            while (it.hasNext()) {
+                writer.write(it.next().toJson(JSON));
+                writer.write('\n');
+                written++;
+            }
+        }
+        writer.flush();
+        return written;
+    }
+}
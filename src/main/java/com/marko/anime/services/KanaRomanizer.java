@@ -0,0 +1,117 @@
+package com.marko.anime.services;
+
+import java.text.Normalizer;
+
+/**
+ * Spells hiragana and katakana in Hepburn romaji, the way titles are usually typed on a latin
+ * keyboard: "ポケットモンスター" becomes "pokettomonsuta". Long vowels are not doubled, just as
+ * "ō" folds to "o". Kanji need a dictionary to be read and are left as they are, like any
+ * other character that is not kana.
+ */
+final class KanaRomanizer {
+
+    private static final char FIRST_HIRAGANA = 'ぁ';
+    private static final char LAST_HIRAGANA = 'ゖ';
+    private static final char FIRST_KATAKANA = 'ァ';
+    private static final char LAST_KATAKANA = 'ヶ';
+    private static final char SOKUON = 'っ'; //small tsu, doubles the next consonant
+    private static final char LONG_VOWEL = 'ー';
+    private static final char MIDDLE_DOT = '・';
+
+    //romaji per hiragana from U+3041, small kana are marked with a leading '_'
+    private static final String[] ROMAJI = {
+            "_a", "a", "_i", "i", "_u", "u", "_e", "e", "_o", "o",
+            "ka", "ga", "ki", "gi", "ku", "gu", "ke", "ge", "ko", "go",
+            "sa", "za", "shi", "ji", "su", "zu", "se", "ze", "so", "zo",
+            "ta", "da", "chi", "ji", "_tsu", "tsu", "zu", "te", "de", "to", "do",
+            "na", "ni", "nu", "ne", "no",
+            "ha", "ba", "pa", "hi", "bi", "pi", "fu", "bu", "pu", "he", "be", "pe", "ho", "bo", "po",
+            "ma", "mi", "mu", "me", "mo",
+            "_ya", "ya", "_yu", "yu", "_yo", "yo",
+            "ra", "ri", "ru", "re", "ro",
+            "_wa", "wa", "i", "e", "o", "n", "vu", "_ka", "_ke"
+    };
+
+    private KanaRomanizer() {
+    }
+
+    static boolean containsKana(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (hiragana(text.charAt(i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String romanize(String text) {
+        String composed = Normalizer.normalize(text, Normalizer.Form.NFC);
+        StringBuilder out = new StringBuilder(composed.length() * 2);
+        boolean doubleNext = false;
+        for (int i = 0; i < composed.length(); i++) {
+            char c = composed.charAt(i);
+            char kana = hiragana(c);
+            if (kana == 0) {
+                doubleNext = false;
+                if (c == MIDDLE_DOT) {
+                    out.append(' ');
+                } else if (c != LONG_VOWEL) {
+                    out.append(c);
+                }
+                continue;
+            }
+            if (kana == SOKUON) {
+                doubleNext = true;
+                continue;
+            }
+            String romaji = ROMAJI[kana - FIRST_HIRAGANA];
+            if (romaji.charAt(0) == '_') {
+                appendSmall(out, romaji.substring(1));
+                continue;
+            }
+            if (doubleNext && isConsonant(romaji.charAt(0))) {
+                out.append(romaji.startsWith("ch") ? 't' : romaji.charAt(0));
+            }
+            doubleNext = false;
+            out.append(romaji);
+        }
+        return out.toString();
+    }
+
+    //small kana combine with the kana before them: ki + ya = kya, shi + ya = sha, fu + a = fa
+    private static void appendSmall(StringBuilder out, String small) {
+        int length = out.length();
+        char last = length == 0 ? 0 : out.charAt(length - 1);
+        boolean glide = small.startsWith("y") || small.equals("wa");
+        if (glide && last == 'i' && length > 1 && isConsonant(out.charAt(length - 2))) {
+            char consonant = out.charAt(length - 2);
+            boolean palatal = consonant == 'j' || (consonant == 'h' && length > 2 && "sc".indexOf(out.charAt(length - 3)) >= 0);
+            out.setLength(length - 1);
+            out.append(palatal ? small.substring(1) : small);
+        } else if (!glide && small.length() == 1 && (last == 'u' || last == 'e' || last == 'o' || last == 'i')
+                && length > 1 && isConsonant(out.charAt(length - 2))) {
+            out.setLength(length - 1);
+            out.append(small);
+        } else if (!glide && small.length() == 1 && last == 'u') {
+            out.setLength(length - 1);
+            out.append('w').append(small);
+        } else {
+            out.append(small);
+        }
+    }
+
+    private static boolean isConsonant(char c) {
+        return c >= 'a' && c <= 'z' && "aeiou".indexOf(c) < 0;
+    }
+
+    //the hiragana for a hiragana or katakana character, 0 for anything else
+    private static char hiragana(char c) {
+        if (c >= FIRST_HIRAGANA && c <= LAST_HIRAGANA) {
+            return c;
+        }
+        if (c >= FIRST_KATAKANA && c <= LAST_KATAKANA) {
+            return (char) (c - (FIRST_KATAKANA - FIRST_HIRAGANA));
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.marko.anime.services;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination: the sort value of the last
+ * returned row plus its _id as a tie-breaker. A null sort value is encoded as
+ * such, since MongoDB sorts null and missing fields before every other value.
+ */
+public final class KeysetCursor {
+
+    private static final int ID_LENGTH = 24;
+    private static final char VALUE_MARKER = '=';
+
+    private final ObjectId id;
+    private final String value;
+
+    public KeysetCursor(ObjectId id, String value) {
+        this.id = id;
+        this.value = value;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String encode() {
+        String raw = id.toHexString() + (value == null ? "" : VALUE_MARKER + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (raw.length() < ID_LENGTH || raw.length() > ID_LENGTH && raw.charAt(ID_LENGTH) != VALUE_MARKER) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            ObjectId id = new ObjectId(raw.substring(0, ID_LENGTH));
+            return new KeysetCursor(id, raw.length() == ID_LENGTH ? null : raw.substring(ID_LENGTH + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+
+    /**
+     * Rows that come after this cursor when sorted on (field, _id). The value is the cursor
+     * value already converted to the field's type, or null when the last row had none.
+     */
+    public Criteria after(String field, Object value, boolean descending) {
+        Criteria sameValue = Criteria.where(field).is(value).and("_id");
+        sameValue = descending ? sameValue.lt(id) : sameValue.gt(id);
+        if (value == null) {
+            //nulls come first ascending, so every non-null value is still ahead
+            return descending ? sameValue : new Criteria().orOperator(sameValue, Criteria.where(field).ne(null));
+        }
+        return descending
+                ? new Criteria().orOperator(Criteria.where(field).lt(value), sameValue, Criteria.where(field).is(null))
+                : new Criteria().orOperator(Criteria.where(field).gt(value), sameValue);
+    }
+}
@@ -0,0 +1,71 @@
+package com.marko.anime.services;
+
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.events.CatalogReloadedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact in-memory set of every imdbId in the catalog, so lookups for ids that do not exist
+ * can be answered without a database round trip. Until the first load finishes every id is
+ * treated as possibly existing. Writes on this instance are applied as they happen, writes
+ * made elsewhere (other instances, the shell) show up with the next periodic reload.
+ */
+@Component
+public class KnownAnimeIds {
+
+    private final MongoTemplate mongoTemplate;
+    private volatile Set<String> ids; //null until loaded
+
+    public KnownAnimeIds(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * @return true only if the id is certainly not in the catalog
+     */
+    public boolean isUnknown(String imdbId) {
+        Set<String> known = ids;
+        return known != null && (imdbId == null || !known.contains(imdbId));
+    }
+
+    //synchronized with the change listener, so a write during the load is not lost
+    @EventListener({ApplicationReadyEvent.class, CatalogReloadedEvent.class})
+    public synchronized void reload() {
+        Set<String> loaded = ConcurrentHashMap.newKeySet();
+        loaded.addAll(mongoTemplate.findDistinct(new Query(), "imdbId", "anime", String.class));
+        ids = loaded;
+    }
+
+    @Scheduled(fixedDelayString = "${anime.catalog.known-ids.refresh-interval-ms:60000}",
+            initialDelayString = "${anime.catalog.known-ids.refresh-interval-ms:60000}")
+    public void refresh() {
+        reload();
+    }
+
+    @EventListener
+    public synchronized void onAnimeChanged(AnimeChangedEvent event) {
+        Set<String> known = ids;
+        if (known == null) {
+            return;
+        }
+        if (event.isDeletion()) {
+            known.remove(event.getImdbId());
+            return;
+        }
+        String current = event.getAnime().getImdbId();
+        if (event.getImdbId() != null && !event.getImdbId().equals(current)) {
+            known.remove(event.getImdbId());
+        }
+        if (current != null) {
+            known.add(current);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.marko.anime.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.marko.anime.models.ModerationVerdict;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers moderation verdicts of review bodies, so resubmitted and copy-pasted reviews do
+ * not go to the Perspective API again. Verdicts are keyed by a SHA-256 of the normalized body
+ * together with the thresholds they were made with, so tuning the thresholds starts a fresh
+ * set of keys. Entries live in a bounded LRU and, with persist enabled, also in the
+ * moderation_verdicts collection, which survives restarts and is shared across nodes. A
+ * verdict read from the collection keeps the expiry it was stored with.
+ */
+@Slf4j
+@Component
+public class ModerationVerdictCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration ttl;
+    private final boolean persist;
+    private final Cache<String, Verdict> verdicts;
+
+    public ModerationVerdictCache(MongoTemplate mongoTemplate,
+                                  @Value("${anime.reviews.moderation.verdict-cache.max-entries:100000}") long maxEntries,
+                                  @Value("${anime.reviews.moderation.verdict-cache.ttl:7d}") Duration ttl,
+                                  @Value("${anime.reviews.moderation.verdict-cache.persist:false}") boolean persist) {
+        this(mongoTemplate, maxEntries, ttl, persist, Ticker.systemTicker());
+    }
+
+    ModerationVerdictCache(MongoTemplate mongoTemplate, long maxEntries, Duration ttl, boolean persist, Ticker ticker) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttl = ttl;
+        this.persist = persist;
+        this.verdicts = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new VerdictExpiry())
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Returns the cached verdict or starts the check. A failing check is not cached.
+     */
+    public CompletableFuture<Boolean> verdict(String key, Supplier<CompletableFuture<Boolean>> check) {
+        Verdict cached = verdicts.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.profane());
+        }
+        ModerationVerdict stored = persist ? findStored(key) : null;
+        Duration remaining = stored == null ? Duration.ZERO : Duration.between(Instant.now(), stored.getExpiresAt());
+        if (remaining.compareTo(Duration.ZERO) > 0) {
+            verdicts.put(key, new Verdict(stored.isProfane(), remaining));
+            return CompletableFuture.completedFuture(stored.isProfane());
+        }
+        return check.get().thenApply(profane -> {
+            verdicts.put(key, new Verdict(profane, ttl));
+            if (persist) {
+                store(new ModerationVerdict(key, profane, Instant.now().plus(ttl)));
+            }
+            return profane;
+        });
+    }
+
+    public static String key(String text, double profanityLimit, double toxicityLimit) {
+        String normalized = WHITESPACE.matcher(TextNormalizer.normalize(text)).replaceAll(" ").strip();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((profanityLimit + ":" + toxicityLimit + "\n").getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //the collection only saves API calls, moderation goes on without it
+    private ModerationVerdict findStored(String key) {
+        try {
+            return mongoTemplate.findById(key, ModerationVerdict.class);
+        } catch (DataAccessException e) {
+            log.warn("Could not read stored moderation verdict: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(ModerationVerdict verdict) {
+        try {
+            mongoTemplate.save(verdict);
+        } catch (DataAccessException e) {
+            log.warn("Could not store moderation verdict: {}", e.getMessage());
+        }
+    }
+
+    private record Verdict(boolean profane, Duration lifetime) {
+    }
+
+    //an entry lives for its verdict's lifetime from when it was put, reads do not extend it
+    private static final class VerdictExpiry implements Expiry<String, Verdict> {
+
+        @Override
+        public long expireAfterCreate(String key, Verdict verdict, long currentTime) {
+            return verdict.lifetime().toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Verdict verdict, long currentTime, long currentDuration) {
+            return verdict.lifetime().toNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String key, Verdict verdict, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
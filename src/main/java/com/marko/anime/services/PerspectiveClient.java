@@ -0,0 +1,201 @@
+package com.marko.anime.services;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perspective API client that coalesces concurrent calls. Requests are collected into a window
+ * that closes after batch-window or once batch-size requests are waiting. The analyze endpoint
+ * scores one comment per call, so a window is sent as one call per distinct text, identical
+ * texts sharing the call, with at most max-concurrency calls in flight. While the cap is
+ * reached new requests keep collecting into the next window.
+ */
+@Component
+public class PerspectiveClient {
+
+    private static final Map<String, Map<String, Object>> REQUESTED_ATTRIBUTES =
+            Map.of("PROFANITY", Map.of(), "TOXICITY", Map.of());
+    private static final List<String> LANGUAGES = List.of("en");
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final Duration timeout;
+    private final Duration batchWindow;
+    private final int batchSize;
+    private final Semaphore permits;
+    private final ObjectWriter requestWriter;
+    private final ObjectReader responseReader;
+    private final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "perspective-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PerspectiveClient(ObjectMapper objectMapper,
+                             @Value("${API_KEY}") String apiKey,
+                             @Value("${anime.reviews.perspective.url:https://commentanalyzer.googleapis.com/v1alpha1/comments:analyze}") String url,
+                             @Value("${anime.reviews.perspective.timeout:10s}") Duration timeout,
+                             @Value("${anime.reviews.perspective.batch-window:20ms}") Duration batchWindow,
+                             @Value("${anime.reviews.perspective.batch-size:32}") int batchSize,
+                             @Value("${anime.reviews.perspective.max-concurrency:8}") int maxConcurrency) {
+        if (batchSize < 1 || maxConcurrency < 1) {
+            throw new IllegalArgumentException("Perspective batch size and max concurrency must be positive.");
+        }
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.uri = URI.create(url + "?key=" + apiKey);
+        this.timeout = timeout;
+        this.batchWindow = batchWindow;
+        this.batchSize = batchSize;
+        this.permits = new Semaphore(maxConcurrency);
+        this.requestWriter = objectMapper.writerFor(AnalyzeRequest.class);
+        this.responseReader = objectMapper.readerFor(AnalyzeResponse.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        dispatcher.execute(this::dispatch);
+    }
+
+    public CompletableFuture<Scores> analyze(String text) {
+        CompletableFuture<Scores> result = new CompletableFuture<>();
+        calls.add(new Call(text, result));
+        return result;
+    }
+
+    private void dispatch() {
+        List<Call> window = new ArrayList<>(batchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                window.add(calls.take());
+                long deadline = System.nanoTime() + batchWindow.toNanos();
+                while (window.size() < batchSize) {
+                    Call next = calls.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    window.add(next);
+                }
+                send(window);
+                window.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        CancellationException cancelled = new CancellationException("Perspective client was shut down.");
+        window.forEach(call -> call.result().completeExceptionally(cancelled));
+        calls.forEach(call -> call.result().completeExceptionally(cancelled));
+    }
+
+    private void send(List<Call> window) throws InterruptedException {
+        Map<String, List<CompletableFuture<Scores>>> byText = new LinkedHashMap<>();
+        for (Call call : window) {
+            byText.computeIfAbsent(call.text(), text -> new ArrayList<>(1)).add(call.result());
+        }
+        for (Map.Entry<String, List<CompletableFuture<Scores>>> entry : byText.entrySet()) {
+            List<CompletableFuture<Scores>> waiting = entry.getValue();
+            HttpRequest request;
+            try {
+                request = request(entry.getKey());
+            } catch (IOException e) {
+                waiting.forEach(result -> result.completeExceptionally(e));
+                continue;
+            }
+            permits.acquire();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> {
+                        permits.release();
+                        complete(waiting, response, error);
+                    });
+        }
+    }
+
+    private HttpRequest request(String text) throws IOException {
+        byte[] body = requestWriter.writeValueAsBytes(new AnalyzeRequest(new Comment(text), LANGUAGES, REQUESTED_ATTRIBUTES));
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private void complete(List<CompletableFuture<Scores>> waiting, HttpResponse<byte[]> response, Throwable error) {
+        Scores scores = null;
+        if (error == null) {
+            try {
+                scores = scores(response);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+        }
+        for (CompletableFuture<Scores> result : waiting) {
+            if (error == null) {
+                result.complete(scores);
+            } else {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+
+    private Scores scores(HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Perspective API responded with status " + response.statusCode() + ".");
+        }
+        AnalyzeResponse body = responseReader.readValue(response.body());
+        if (body.attributeScores() == null) {
+            return new Scores(0, 0);
+        }
+        return new Scores(score(body.attributeScores().get("PROFANITY")), score(body.attributeScores().get("TOXICITY")));
+    }
+
+    private static double score(AttributeScore attribute) {
+        return attribute == null || attribute.summaryScore() == null ? 0 : attribute.summaryScore().value();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    public record Scores(double profanity, double toxicity) {
+    }
+
+    private record Call(String text, CompletableFuture<Scores> result) {
+    }
+
+    record AnalyzeRequest(Comment comment, List<String> languages, Map<String, Map<String, Object>> requestedAttributes) {
+    }
+
+    record Comment(String text) {
+    }
+
+    record AnalyzeResponse(Map<String, AttributeScore> attributeScores) {
+    }
+
+    record AttributeScore(SummaryScore summaryScore) {
+    }
+
+    record SummaryScore(double value) {
+    }
+}
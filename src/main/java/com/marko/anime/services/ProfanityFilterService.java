@@ -2,63 +2,53 @@ package com.marko.anime.services;
 
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
 public class ProfanityFilterService {
 
-    @Value("${API_KEY}")
-    private String API_KEY;
-    private static final String PERSPECTIVE_API_URL = "https://commentanalyzer.googleapis.com/v1alpha1/comments:analyze?key=";
-    private final RestTemplate restTemplate;
-
-    private static final double PROFANITY_LIMIT = 0.5;
-    private static final double TOXICITY_LIMIT = 0.5;
-
-    public ProfanityFilterService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    private final ProfanityMatcher profanityMatcher;
+    private final PerspectiveClient perspectiveClient;
+    private final ModerationVerdictCache verdictCache;
+
+    private final double profanityLimit;
+    private final double toxicityLimit;
+    private final Duration timeout;
+
+    public ProfanityFilterService(ProfanityMatcher profanityMatcher, PerspectiveClient perspectiveClient,
+                                  ModerationVerdictCache verdictCache,
+                                  @Value("${anime.reviews.moderation.profanity-limit:0.5}") double profanityLimit,
+                                  @Value("${anime.reviews.moderation.toxicity-limit:0.5}") double toxicityLimit,
+                                  @Value("${anime.reviews.moderation.timeout:30s}") Duration timeout) {
+        this.profanityMatcher = profanityMatcher;
+        this.perspectiveClient = perspectiveClient;
+        this.verdictCache = verdictCache;
+        this.profanityLimit = profanityLimit;
+        this.toxicityLimit = toxicityLimit;
+        this.timeout = timeout;
     }
 
-    public boolean hasProfanity(String comment) {
-        String apiUrl = PERSPECTIVE_API_URL + API_KEY;
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("comment", Map.of("text", comment));
-        requestBody.put("languages", List.of("en"));
-        requestBody.put("requestedAttributes", Map.of("PROFANITY", Map.of(), "TOXICITY", Map.of()));
-
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-        ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl, entity, Map.class);
-        Map<String, Object> responseBody = response.getBody();
-
-        if (responseBody != null && responseBody.containsKey("attributeScores")) {
-            Map<String, Object> attributeScores = (Map<String, Object>) responseBody.get("attributeScores");
-
-            Map<String, Object> profanity = (Map<String, Object>) attributeScores.get("PROFANITY");
-            Map<String, Object> toxicity = (Map<String, Object>) attributeScores.get("TOXICITY");
-
-            Map<String, Object> profanityScore = (Map<String, Object>) profanity.get("summaryScore");
-            Map<String, Object> toxicityScore = (Map<String, Object>) toxicity.get("summaryScore");
-
-            double profanitySummaryScore = (double) profanityScore.get("value");
-            double toxicitySummaryScore = (double) toxicityScore.get("value");
-
-            return profanitySummaryScore > PROFANITY_LIMIT || toxicitySummaryScore > TOXICITY_LIMIT;
+    /**
+     * Completes with the verdict for the comment, or exceptionally if the Perspective API call
+     * fails or does not answer within the moderation timeout.
+     */
+    public CompletableFuture<Boolean> hasProfanity(String comment) {
+        if (profanityMatcher.matches(comment)) {
+            return CompletableFuture.completedFuture(true); //listed word, no need to ask the API
         }
-        return false;
+        return verdictCache.verdict(ModerationVerdictCache.key(comment, profanityLimit, toxicityLimit),
+                () -> exceedsLimits(comment));
+    }
+
+    private CompletableFuture<Boolean> exceedsLimits(String comment) {
+        //a call can also wait in the client's queue, which the HTTP timeout does not cover
+        return perspectiveClient.analyze(comment)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(scores -> scores.profanity() > profanityLimit || scores.toxicity() > toxicityLimit);
     }
-}
\ No newline at end of file
+}
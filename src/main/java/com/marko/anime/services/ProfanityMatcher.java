@@ -0,0 +1,264 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.ProfanityWordListDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Local profanity check run before the Perspective API. The configured word list is compiled
+ * into an Aho-Corasick automaton over a folded alphabet: lower case a-z without diacritics,
+ * leetspeak digits and symbols read as the letters they stand for, and any run of other
+ * characters read as one word boundary. Words are stored with a boundary on both sides, so
+ * only whole words and phrases match ("class" does not match "ass"). The automaton is a dense
+ * transition table, a scan is one table lookup per character and allocates nothing.
+ * {@link #reload()} swaps in a new automaton, scans already running finish on the old one.
+ */
+@Slf4j
+@Component
+public class ProfanityMatcher {
+
+    private static final int BOUNDARY = 0;
+    private static final int OTHER = 27;
+    private static final int ALPHABET = 28;
+
+    //folded letter per char: 'a'-'z', or 0 for anything that is not a latin letter
+    private static final char[] LETTERS = new char[0x250];
+    //letter a digit or symbol stands for; digits need a letter next to them, '!' and '|' one after them
+    private static final char[] LEET = new char[128];
+
+    static {
+        for (char c = 0; c < LETTERS.length; c++) {
+            String folded = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "")
+                    .toLowerCase(Locale.ROOT);
+            if (folded.length() == 1 && folded.charAt(0) >= 'a' && folded.charAt(0) <= 'z') {
+                LETTERS[c] = folded.charAt(0);
+            }
+        }
+        LEET['0'] = 'o';
+        LEET['1'] = 'i';
+        LEET['3'] = 'e';
+        LEET['4'] = 'a';
+        LEET['5'] = 's';
+        LEET['7'] = 't';
+        LEET['@'] = 'a';
+        LEET['$'] = 's';
+        LEET['!'] = 'i';
+        LEET['|'] = 'i';
+    }
+
+    private final Resource wordList;
+    private volatile Automaton automaton;
+
+    public ProfanityMatcher(@Value("${anime.reviews.profanity.word-list:classpath:profanity-words.txt}") Resource wordList) {
+        this.wordList = wordList;
+        this.automaton = Automaton.build(readWords(wordList));
+        log.info("Loaded {} profanity words into {} automaton states", automaton.words, automaton.states());
+    }
+
+    public boolean matches(CharSequence text) {
+        if (text == null) {
+            return false;
+        }
+        Automaton current = automaton;
+        int state = current.next(0, BOUNDARY);
+        int symbol = BOUNDARY;
+        boolean atBoundary = true;
+        for (int i = 0; i < text.length(); i++) {
+            symbol = symbol(text, i, symbol);
+            if (symbol == BOUNDARY) {
+                if (atBoundary) {
+                    continue;
+                }
+                atBoundary = true;
+            } else {
+                atBoundary = false;
+            }
+            state = current.next(state, symbol);
+            if (current.accepting[state]) {
+                return true;
+            }
+        }
+        return !atBoundary && current.accepting[current.next(state, BOUNDARY)];
+    }
+
+    /**
+     * Rebuilds the automaton from the word list. If the list cannot be read the current
+     * automaton stays in place.
+     */
+    public ProfanityWordListDTO reload() {
+        Automaton rebuilt = Automaton.build(readWords(wordList));
+        automaton = rebuilt;
+        log.info("Reloaded {} profanity words into {} automaton states", rebuilt.words, rebuilt.states());
+        return wordListInfo();
+    }
+
+    public ProfanityWordListDTO wordListInfo() {
+        Automaton current = automaton;
+        return new ProfanityWordListDTO(current.words, current.states(), current.builtAt);
+    }
+
+    //previous is the symbol of the character before, so "a$$" reads the second '$' as a letter too
+    private static int symbol(CharSequence text, int i, int previous) {
+        char c = text.charAt(i);
+        char letter = letter(c);
+        if (letter != 0) {
+            return letter - 'a' + 1;
+        }
+        if (c < LEET.length && LEET[c] != 0) {
+            boolean letterBefore = previous != BOUNDARY && previous != OTHER;
+            boolean letterAfter = i + 1 < text.length() && letter(text.charAt(i + 1)) != 0;
+            boolean symbol = c == '!' || c == '|';
+            if (letterAfter || (letterBefore && !symbol)) {
+                return LEET[c] - 'a' + 1;
+            }
+        }
+        return Character.isLetterOrDigit(c) ? OTHER : BOUNDARY;
+    }
+
+    private static char letter(char c) {
+        return c < LETTERS.length ? LETTERS[c] : 0;
+    }
+
+    private static List<String> readWords(Resource wordList) {
+        Set<String> words = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(wordList.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    words.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read profanity word list " + wordList.getDescription() + ".", e);
+        }
+        return new ArrayList<>(words);
+    }
+
+    //states are rows of a dense table, a state's row holds its goto transitions with failure links already followed
+    private static final class Automaton {
+
+        private final int[] transitions;
+        private final boolean[] accepting;
+        private final int words;
+        private final LocalDateTime builtAt = LocalDateTime.now();
+
+        private Automaton(int[] transitions, boolean[] accepting, int words) {
+            this.transitions = transitions;
+            this.accepting = accepting;
+            this.words = words;
+        }
+
+        int next(int state, int symbol) {
+            return transitions[state * ALPHABET + symbol];
+        }
+
+        int states() {
+            return accepting.length;
+        }
+
+        static Automaton build(Collection<String> words) {
+            List<int[]> patterns = new ArrayList<>(words.size());
+            int maxStates = 1;
+            for (String word : words) {
+                int[] pattern = pattern(word);
+                if (pattern == null) {
+                    log.warn("Skipping profanity word list entry '{}', it has no latin letters to match", word);
+                    continue;
+                }
+                patterns.add(pattern);
+                maxStates += pattern.length;
+            }
+
+            int[] transitions = new int[maxStates * ALPHABET];
+            Arrays.fill(transitions, -1);
+            boolean[] accepting = new boolean[maxStates];
+            int states = 1;
+            for (int[] pattern : patterns) {
+                int state = 0;
+                for (int symbol : pattern) {
+                    int index = state * ALPHABET + symbol;
+                    if (transitions[index] == -1) {
+                        transitions[index] = states++;
+                    }
+                    state = transitions[index];
+                }
+                accepting[state] = true;
+            }
+
+            int[] failure = new int[states];
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = transitions[symbol];
+                if (child == -1) {
+                    transitions[symbol] = 0;
+                } else {
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                accepting[state] |= accepting[failure[state]];
+                for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                    int index = state * ALPHABET + symbol;
+                    int fallback = transitions[failure[state] * ALPHABET + symbol];
+                    if (transitions[index] == -1) {
+                        transitions[index] = fallback;
+                    } else {
+                        failure[transitions[index]] = fallback;
+                        queue.add(transitions[index]);
+                    }
+                }
+            }
+            return new Automaton(Arrays.copyOf(transitions, states * ALPHABET), Arrays.copyOf(accepting, states),
+                    patterns.size());
+        }
+
+        //the word folded like scanned text, with one boundary on each side and between words
+        private static int[] pattern(String word) {
+            int[] symbols = new int[word.length() + 2];
+            int length = 0;
+            symbols[length++] = BOUNDARY;
+            boolean letters = false;
+            int symbol = BOUNDARY;
+            for (int i = 0; i < word.length(); i++) {
+                symbol = symbol(word, i, symbol);
+                if (symbol == OTHER) {
+                    return null;
+                }
+                if (symbol == BOUNDARY && symbols[length - 1] == BOUNDARY) {
+                    continue;
+                }
+                letters |= symbol != BOUNDARY;
+                symbols[length++] = symbol;
+            }
+            if (!letters) {
+                return null;
+            }
+            if (symbols[length - 1] != BOUNDARY) {
+                symbols[length++] = BOUNDARY;
+            }
+            return Arrays.copyOf(symbols, length);
+        }
+    }
+}
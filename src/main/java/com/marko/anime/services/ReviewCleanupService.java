@@ -0,0 +1,302 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
+import com.marko.anime.models.ReviewCleanupTask;
+import com.marko.anime.repositories.ReviewCleanupTaskRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes the reviews of deleted anime in bounded batches with a pause between them, moves the
+ * reviews of renamed anime to the new imdbId, and periodically sweeps the reviews collection for
+ * reviews no anime references anymore. A run sleeps on its scheduler thread between batches,
+ * spring.task.scheduling.pool.size keeps enough threads for the other scheduled jobs meanwhile.
+ */
+@Slf4j
+@Service
+public class ReviewCleanupService {
+
+    //a review submitted while its anime is being deleted may still be in flight, leave young ones alone
+    static final Duration ORPHAN_GRACE_PERIOD = Duration.ofHours(1);
+
+    private final MongoTemplate mongoTemplate;
+    private final ReviewCleanupTaskRepository taskRepository;
+    private final ReviewImdbIdMigration migration;
+    private final int batchSize;
+    private final Duration pause;
+
+    public ReviewCleanupService(MongoTemplate mongoTemplate, ReviewCleanupTaskRepository taskRepository,
+                                ReviewImdbIdMigration migration,
+                                @Value("${anime.reviews.cleanup.batch-size:500}") int batchSize,
+                                @Value("${anime.reviews.cleanup.pause:200ms}") Duration pause) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("anime.reviews.cleanup.batch-size must be positive.");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.taskRepository = taskRepository;
+        this.migration = migration;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    /**
+     * Records the reviews of a deleted anime for removal by the next run.
+     *
+     * @param legacyReviewIds references still embedded in the anime document, if any
+     */
+    public void schedule(String imdbId, List<ObjectId> legacyReviewIds) {
+        LocalDateTime now = LocalDateTime.now();
+        taskRepository.save(ReviewCleanupTask.builder()
+                .imdbId(imdbId)
+                .pendingReviewIds(legacyReviewIds == null ? new ArrayList<>() : new ArrayList<>(new HashSet<>(legacyReviewIds)))
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+
+    /**
+     * Records that the reviews of a renamed anime have to follow it to the new imdbId and moves
+     * them right away. If the move fails the task stays and the next run retries it.
+     */
+    public void scheduleMove(String fromImdbId, String toImdbId) {
+        LocalDateTime now = LocalDateTime.now();
+        ReviewCleanupTask task = taskRepository.save(ReviewCleanupTask.builder()
+                .imdbId(fromImdbId)
+                .moveToImdbId(toImdbId)
+                .pendingReviewIds(new ArrayList<>())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        try {
+            move(task);
+        } catch (DataAccessException e) {
+            log.warn("Moving reviews of {} to {} failed, retrying later: {}", fromImdbId, toImdbId, e.getMessage());
+        }
+    }
+
+    /**
+     * Whether reviews of any of the given imdbIds are still being removed or moved.
+     */
+    public boolean hasPendingTask(Collection<String> imdbIds) {
+        return taskRepository.existsByImdbIdInOrMoveToImdbIdIn(imdbIds, imdbIds);
+    }
+
+    @Scheduled(fixedDelayString = "${anime.reviews.cleanup.interval-ms:30000}")
+    public void processPendingTasks() {
+        for (ReviewCleanupTask task : taskRepository.findAllByOrderByCreatedAtAsc()) {
+            if (!reap(task)) {
+                return;
+            }
+        }
+    }
+
+    //returns false if interrupted, the task then stays for the next run
+    private boolean reap(ReviewCleanupTask task) {
+        if (task.getMoveToImdbId() != null) {
+            move(task);
+            return true;
+        }
+        List<ObjectId> pending = task.getPendingReviewIds() == null
+                ? new ArrayList<>() : new ArrayList<>(task.getPendingReviewIds());
+        long deleted = task.getDeletedReviews();
+        while (!pending.isEmpty()) {
+            List<ObjectId> batch = List.copyOf(pending.subList(0, Math.min(batchSize, pending.size())));
+            long removed = deleteReviews(batch);
+            //deleting is idempotent, a crash before this update only repeats the batch
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(task.getId())),
+                    new Update().pullAll("pendingReviewIds", batch.toArray())
+                            .inc("deletedReviews", removed)
+                            .set("updatedAt", LocalDateTime.now()),
+                    ReviewCleanupTask.class);
+            pending.subList(0, batch.size()).clear();
+            deleted += removed;
+            if (!pause()) {
+                return false;
+            }
+        }
+        while (true) {
+            //reviews submitted later belong to an anime created again under the same imdbId
+            Query query = Query.query(Criteria.where("imdbId").is(task.getImdbId()).and("createdAt").lte(task.getCreatedAt()))
+                    .limit(batchSize);
+            query.fields().include("_id");
+            List<ObjectId> batch = mongoTemplate.find(query, Document.class, "reviews").stream()
+                    .map(review -> review.getObjectId("_id"))
+                    .toList();
+            if (batch.isEmpty()) {
+                break;
+            }
+            long removed = deleteReviews(batch);
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(task.getId())),
+                    new Update().inc("deletedReviews", removed).set("updatedAt", LocalDateTime.now()),
+                    ReviewCleanupTask.class);
+            deleted += removed;
+            if (batch.size() < batchSize) {
+                break;
+            }
+            if (!pause()) {
+                return false;
+            }
+        }
+        taskRepository.deleteById(task.getId());
+        log.info("Removed {} reviews of deleted anime {}", deleted, task.getImdbId());
+        return true;
+    }
+
+    private void move(ReviewCleanupTask task) {
+        //reviews submitted later belong to an anime created again under the old imdbId
+        Query query = Query.query(Criteria.where("imdbId").is(task.getImdbId()).and("createdAt").lte(task.getCreatedAt()));
+        long moved;
+        try {
+            moved = mongoTemplate.updateMulti(query, new Update().set("imdbId", task.getMoveToImdbId()), Review.class)
+                    .getModifiedCount();
+        } catch (DuplicateKeyException e) {
+            moved = moveOneByOne(task, query);
+        }
+        taskRepository.deleteById(task.getId());
+        log.info("Moved {} reviews of {} to {}", moved, task.getImdbId(), task.getMoveToImdbId());
+    }
+
+    //a user already reviewed the anime under the new imdbId, their moved review is dropped like a duplicate
+    private long moveOneByOne(ReviewCleanupTask task, Query query) {
+        long moved = 0;
+        long dropped = 0;
+        long counted = 0;
+        while (true) {
+            Query page = Query.of(query).limit(batchSize);
+            page.fields().include("_id");
+            List<ObjectId> batch = mongoTemplate.find(page, Document.class, "reviews").stream()
+                    .map(review -> review.getObjectId("_id"))
+                    .toList();
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (ObjectId reviewId : batch) {
+                Query single = Query.query(Criteria.where("_id").is(reviewId));
+                try {
+                    moved += mongoTemplate.updateFirst(single, new Update().set("imdbId", task.getMoveToImdbId()),
+                            Review.class).getModifiedCount();
+                } catch (DuplicateKeyException e) {
+                    //pending reviews were never part of reviewCount, only dropping a listed one lowers it
+                    Query listed = Query.of(single).addCriteria(Criteria.where("status").in(ReviewService.LISTED_STATUSES));
+                    if (mongoTemplate.remove(listed, Review.class).getDeletedCount() > 0) {
+                        counted++;
+                        dropped++;
+                    } else {
+                        dropped += mongoTemplate.remove(single, Review.class).getDeletedCount();
+                    }
+                }
+            }
+        }
+        if (counted > 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("imdbId").is(task.getMoveToImdbId())),
+                    new Update().inc("reviewCount", -counted), Anime.class);
+        }
+        if (dropped > 0) {
+            log.info("Dropped {} reviews of {} whose authors already reviewed {}", dropped, task.getImdbId(),
+                    task.getMoveToImdbId());
+        }
+        return moved;
+    }
+
+    /**
+     * Walks the reviews collection in _id order and deletes reviews whose anime no longer exists.
+     * Each page costs one indexed lookup of its imdbIds in anime. Reviews without an imdbId are
+     * only treated as orphans once ReviewImdbIdMigration has finished assigning them.
+     */
+    @Scheduled(cron = "${anime.reviews.orphan-sweep.cron:0 30 4 * * ?}")
+    public long sweepOrphans() {
+        ObjectId cutoff = minObjectId(Instant.now().minus(ORPHAN_GRACE_PERIOD));
+        boolean migrated = migration.isCompleted();
+        ObjectId after = null;
+        long scanned = 0;
+        long removed = 0;
+        while (true) {
+            Criteria range = Criteria.where("_id").lt(cutoff);
+            if (after != null) {
+                range = range.gt(after);
+            }
+            Query page = Query.query(range).with(Sort.by("_id")).limit(batchSize);
+            page.fields().include("_id", "imdbId");
+            List<Document> reviews = mongoTemplate.find(page, Document.class, "reviews");
+            if (reviews.isEmpty()) {
+                break;
+            }
+            scanned += reviews.size();
+            after = reviews.get(reviews.size() - 1).getObjectId("_id");
+            Set<String> existing = existingImdbIds(reviews);
+            List<ObjectId> orphans = reviews.stream()
+                    .filter(review -> {
+                        String imdbId = review.getString("imdbId");
+                        return imdbId == null ? migrated : !existing.contains(imdbId);
+                    })
+                    .map(review -> review.getObjectId("_id"))
+                    .toList();
+            if (!orphans.isEmpty()) {
+                removed += deleteReviews(orphans);
+            }
+            if (reviews.size() < batchSize || !pause()) {
+                break;
+            }
+        }
+        log.info("Orphaned review sweep scanned {} reviews, removed {}", scanned, removed);
+        return removed;
+    }
+
+    private Set<String> existingImdbIds(List<Document> reviews) {
+        Set<String> imdbIds = new HashSet<>();
+        for (Document review : reviews) {
+            String imdbId = review.getString("imdbId");
+            if (imdbId != null) {
+                imdbIds.add(imdbId);
+            }
+        }
+        if (imdbIds.isEmpty()) {
+            return imdbIds;
+        }
+        return new HashSet<>(mongoTemplate.findDistinct(Query.query(Criteria.where("imdbId").in(imdbIds)),
+                "imdbId", "anime", String.class));
+    }
+
+    private long deleteReviews(List<ObjectId> reviewIds) {
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").in(reviewIds)), Review.class).getDeletedCount();
+    }
+
+    private boolean pause() {
+        if (pause.isZero() || pause.isNegative()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    //smallest ObjectId created at the given second, every id before it is older
+    static ObjectId minObjectId(Instant instant) {
+        return new ObjectId(String.format("%08x%016x", instant.getEpochSecond(), 0L));
+    }
+}
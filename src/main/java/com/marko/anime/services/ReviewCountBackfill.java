@@ -0,0 +1,43 @@
+package com.marko.anime.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sets reviewCount on anime written before the counter existed. Such documents still embed
+ * their review references, so each one is fixed by a pipeline update that counts the array
+ * it reads, and is then left to ReviewImdbIdMigration.
+ */
+@Slf4j
+@Component
+public class ReviewCountBackfill {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ReviewCountBackfill(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public long backfill() {
+        ArrayOperators.Size referenced = ArrayOperators.Size.lengthOfArray(
+                ConditionalOperators.ifNull("reviewIds").then(List.of()));
+        Query outdated = Query.query(Criteria.where("reviewCount").exists(false));
+        long updated = mongoTemplate.updateMulti(outdated,
+                AggregationUpdate.update().set("reviewCount").toValue(referenced), "anime").getModifiedCount();
+        if (updated > 0) {
+            log.info("Backfilled reviewCount on {} anime", updated);
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,113 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Enforces one review per user and anime. Existing duplicates are removed first, keeping each
+ * user's oldest review and lowering reviewCount by the listed ones among them, then the unique (imdbId, userId)
+ * index is built. The index is partial so reviews not yet given an imdbId by
+ * ReviewImdbIdMigration are not indexed.
+ */
+@Slf4j
+@Component
+public class ReviewDuplicateMigration {
+
+    static final String INDEX_NAME = "imdbId_userId_unique";
+
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+
+    public ReviewDuplicateMigration(MongoTemplate mongoTemplate,
+                                    @Value("${anime.reviews.cleanup.batch-size:500}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("anime.reviews.cleanup.batch-size must be positive.");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        IndexOperations indexes = mongoTemplate.indexOps(Review.class);
+        //once the index exists no duplicate can be written, so later startups skip the aggregation
+        if (indexes.getIndexInfo().stream().anyMatch(index -> INDEX_NAME.equals(index.getName()))) {
+            return;
+        }
+        long removed = removeDuplicates();
+        try {
+            indexes.ensureIndex(uniqueIndex());
+        } catch (DataIntegrityViolationException | UncategorizedMongoDbException e) {
+            //a duplicate slipped in between the cleanup and the index build, which the old check allowed
+            removed += removeDuplicates();
+            indexes.ensureIndex(uniqueIndex());
+        }
+        if (removed > 0) {
+            log.info("Removed {} duplicate reviews before building index {}", removed, INDEX_NAME);
+        }
+    }
+
+    static IndexDefinition uniqueIndex() {
+        return new CompoundIndexDefinition(new Document("imdbId", 1).append("userId", 1))
+                .named(INDEX_NAME)
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where("imdbId").exists(true)));
+    }
+
+    long removeDuplicates() {
+        long removed = 0;
+        for (Document group : mongoTemplate.aggregate(duplicatesAggregation(), "reviews", Document.class)) {
+            List<ObjectId> ids = group.getList("reviewIds", ObjectId.class);
+            List<ObjectId> duplicates = ids.subList(1, ids.size());
+            long deleted = 0;
+            long counted = 0;
+            for (int from = 0; from < duplicates.size(); from += batchSize) {
+                List<ObjectId> batch = duplicates.subList(from, Math.min(from + batchSize, duplicates.size()));
+                //listed reviews first, they are the only ones reviewCount includes
+                long listed = mongoTemplate.remove(Query.query(Criteria.where("_id").in(batch)
+                        .and("status").in(ReviewService.LISTED_STATUSES)), Review.class).getDeletedCount();
+                counted += listed;
+                deleted += listed + mongoTemplate.remove(Query.query(Criteria.where("_id").in(batch)), Review.class).getDeletedCount();
+            }
+            if (counted > 0) {
+                String imdbId = group.get("_id", Document.class).getString("imdbId");
+                mongoTemplate.updateFirst(Query.query(Criteria.where("imdbId").is(imdbId)),
+                        new Update().inc("reviewCount", -counted), Anime.class);
+            }
+            removed += deleted;
+        }
+        return removed;
+    }
+
+    //one row per (imdbId, userId) with more than one review, ids oldest first
+    static Aggregation duplicatesAggregation() {
+        return Aggregation.newAggregation(
+                        Aggregation.match(Criteria.where("imdbId").exists(true)),
+                        Aggregation.sort(Sort.by(Sort.Direction.ASC, "createdAt", "_id")),
+                        Aggregation.group("imdbId", "userId").push("_id").as("reviewIds").count().as("count"),
+                        Aggregation.match(Criteria.where("count").gt(1)))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    }
+}
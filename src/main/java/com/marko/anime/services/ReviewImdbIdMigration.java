@@ -0,0 +1,184 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Online migration from the review references embedded in anime documents to Review.imdbId.
+ * Anime are taken in batches: their reviews get the imdbId, then the array is removed from
+ * the anime. Progress lives in the data itself, an interrupted run simply picks up the anime
+ * that still have an array. Once none are left the old index on the array is dropped.
+ */
+@Slf4j
+@Component
+public class ReviewImdbIdMigration {
+
+    static final String LEGACY_FIELD = "reviewIds";
+
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final Duration pause;
+    private volatile boolean completed;
+
+    public ReviewImdbIdMigration(MongoTemplate mongoTemplate,
+                                 @Value("${anime.reviews.migration.batch-size:100}") int batchSize,
+                                 @Value("${anime.reviews.migration.pause:100ms}") Duration pause) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("anime.reviews.migration.batch-size must be positive.");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    /**
+     * True once a run found no anime with embedded review references left.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Scheduled(fixedDelayString = "${anime.reviews.migration.interval-ms:60000}")
+    public void migrate() {
+        if (completed) {
+            return;
+        }
+        long migrated = 0;
+        while (true) {
+            Query query = Query.query(Criteria.where(LEGACY_FIELD).exists(true)).limit(batchSize);
+            query.fields().include("imdbId", LEGACY_FIELD);
+            List<Document> batch = mongoTemplate.find(query, Document.class, "anime");
+            if (batch.isEmpty()) {
+                break;
+            }
+            long before = migrated;
+            for (Document anime : batch) {
+                if (migrate(anime)) {
+                    migrated++;
+                }
+            }
+            //every anime of the batch changed under us, leave them to the next run
+            if (migrated == before || !pause()) {
+                return;
+            }
+        }
+        dropLegacyIndex();
+        completed = true;
+        log.info("Review imdbId migration finished, {} anime migrated in this run", migrated);
+    }
+
+    //returns false if the array changed meanwhile, the anime is then picked up by the next batch
+    boolean migrate(Document anime) {
+        String imdbId = anime.getString("imdbId");
+        Object references = anime.get(LEGACY_FIELD);
+        List<?> items = references instanceof List<?> list ? list : List.of();
+        List<ObjectId> reviewIds = items.stream()
+                .filter(ObjectId.class::isInstance)
+                .map(ObjectId.class::cast)
+                .toList();
+        long duplicates = 0;
+        if (imdbId != null) {
+            for (int from = 0; from < reviewIds.size(); from += batchSize) {
+                List<ObjectId> chunk = reviewIds.subList(from, Math.min(from + batchSize, reviewIds.size()));
+                duplicates += assignImdbId(imdbId, chunk);
+            }
+        }
+        //only drop the array if nothing was appended while its reviews were being updated
+        Criteria array = Criteria.where(LEGACY_FIELD);
+        Query unchanged = Query.query(Criteria.where("_id").is(anime.get("_id"))
+                .andOperator(references instanceof List<?> ? array.size(items.size()) : array.is(references)));
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("reviewCount").toValue(ArithmeticOperators.Subtract.valueOf(ConditionalOperators.ifNull("reviewCount")
+                                .thenValueOf(ArrayOperators.Size.lengthOfArray(ConditionalOperators.ifNull(LEGACY_FIELD).then(List.of()))))
+                        .subtract(duplicates))
+                .unset(LEGACY_FIELD);
+        return mongoTemplate.updateFirst(unchanged, update, "anime").getModifiedCount() > 0;
+    }
+
+    //returns the number of reviews removed because the user had already reviewed this anime
+    private long assignImdbId(String imdbId, List<ObjectId> reviewIds) {
+        try {
+            //reviews written after the switch already carry their imdbId and are left as they are
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("_id").in(reviewIds).and("imdbId").exists(false)),
+                    new Update().set("imdbId", imdbId), Review.class);
+            return 0;
+        } catch (DuplicateKeyException e) {
+            //the unique (imdbId, userId) index refused a second review by a user, retry one by one
+            long removed = 0;
+            for (ObjectId reviewId : reviewIds) {
+                Query review = Query.query(Criteria.where("_id").is(reviewId).and("imdbId").exists(false));
+                try {
+                    mongoTemplate.updateFirst(review, new Update().set("imdbId", imdbId), Review.class);
+                } catch (DuplicateKeyException duplicate) {
+                    removed += keepOlder(imdbId, review);
+                }
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * The legacy review predates the switch, so the review it collides with is the user's newer
+     * one. Like ReviewDuplicateMigration the oldest review is kept: the newer one is removed and
+     * the legacy review takes its place.
+     */
+    private long keepOlder(String imdbId, Query legacyReview) {
+        Review legacy = mongoTemplate.findOne(legacyReview, Review.class);
+        if (legacy == null) {
+            return 0;
+        }
+        long removed = mongoTemplate.remove(Query.query(Criteria.where("imdbId").is(imdbId)
+                .and("userId").is(legacy.getUserId())
+                .and("_id").ne(legacy.getId())), Review.class).getDeletedCount();
+        try {
+            mongoTemplate.updateFirst(legacyReview, new Update().set("imdbId", imdbId), Review.class);
+        } catch (DuplicateKeyException e) {
+            //the user wrote yet another review in between, give up on the legacy one instead
+            removed += mongoTemplate.remove(legacyReview, Review.class).getDeletedCount();
+        }
+        return removed;
+    }
+
+    private void dropLegacyIndex() {
+        IndexOperations indexes = mongoTemplate.indexOps("anime");
+        for (IndexInfo index : indexes.getIndexInfo()) {
+            if (index.isIndexForFields(List.of(LEGACY_FIELD))) {
+                indexes.dropIndex(index.getName());
+                log.info("Dropped index {} on anime", index.getName());
+            }
+        }
+    }
+
+    private boolean pause() {
+        if (pause.isZero() || pause.isNegative()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.ModerationStatsDTO;
+import com.marko.anime.dtos.ReviewStatus;
+import com.marko.anime.dtos.ReviewStatusDTO;
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.RejectedReview;
+import com.marko.anime.models.Review;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moderates stored reviews off the request thread. Pending reviews wait in a bounded queue
+ * that a fixed pool of workers drains through the profanity filter. A worker takes up to
+ * batch-size reviews at once and starts all their checks before waiting on any, so their
+ * Perspective calls share one window of the client. Reviews that did not fit
+ * in the queue, or were pending when the application stopped, are picked up again by
+ * {@link #requeuePending()}. A failed attempt is counted on the review and delays its next
+ * requeue exponentially; after max-attempts the review is moved to rejected_reviews with
+ * status ERROR, which also frees the user's (imdbId, userId) slot.
+ * <p>
+ * Settling a review writes two documents, so each step is safe to repeat. A rejected copy is
+ * saved before the pending review is removed, a crash in between leaves the review pending
+ * for the requeue. An approved review stays marked uncounted until its anime's reviewCount
+ * includes it; the increment skips reviews the anime already lists in countedReviewIds, and
+ * {@link #countApproved()} finishes increments a crash interrupted.
+ */
+@Slf4j
+@Service
+public class ReviewModerationService {
+
+    static final String APPROVED_MESSAGE = "Review published!";
+    static final String REJECTED_MESSAGE = "Review rejected due to profanity!";
+    static final String FAILED_MESSAGE = "Review could not be moderated, please submit it again.";
+
+    //recently counted reviews kept on each anime, enough to cover increments repeated by countApproved
+    static final int COUNTED_WINDOW = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProfanityFilterService profanityFilterService;
+    private final TrendingService trendingService;
+    private final ReviewStatusNotifier notifier;
+    private final BlockingQueue<PendingReview> queue;
+    private final int queueCapacity;
+    private final int workers;
+    private final int batchSize;
+    private final Duration requeueAfter;
+    private final int maxAttempts;
+    private final ExecutorService workerPool;
+
+    //queued or being moderated, so the requeue does not add them twice
+    private final Set<ObjectId> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder approved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    public ReviewModerationService(MongoTemplate mongoTemplate, ProfanityFilterService profanityFilterService,
+                                   TrendingService trendingService, ReviewStatusNotifier notifier,
+                                   @Value("${anime.reviews.moderation.queue-capacity:1000}") int queueCapacity,
+                                   @Value("${anime.reviews.moderation.workers:4}") int workers,
+                                   @Value("${anime.reviews.moderation.batch-size:16}") int batchSize,
+                                   @Value("${anime.reviews.moderation.requeue-after:2m}") Duration requeueAfter,
+                                   @Value("${anime.reviews.moderation.max-attempts:5}") int maxAttempts) {
+        if (queueCapacity < 1 || workers < 1 || batchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Moderation queue capacity, workers, batch size and max attempts must be positive.");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.profanityFilterService = profanityFilterService;
+        this.trendingService = trendingService;
+        this.notifier = notifier;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.requeueAfter = requeueAfter;
+        this.maxAttempts = maxAttempts;
+        AtomicInteger threads = new AtomicInteger();
+        this.workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "review-moderation-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+    }
+
+    /**
+     * Queues a stored pending review. Returns false if the queue is full, the review then
+     * stays pending until the next requeue.
+     */
+    public boolean submit(Review review) {
+        if (!inFlight.add(review.getId())) {
+            return true;
+        }
+        if (queue.offer(new PendingReview(review.getId(), review.getBody(), review.getImdbId(), System.nanoTime()))) {
+            return true;
+        }
+        inFlight.remove(review.getId());
+        dropped.increment();
+        return false;
+    }
+
+    private void work() {
+        List<PendingReview> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                moderate(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void moderate(List<PendingReview> batch) {
+        List<CompletableFuture<Boolean>> verdicts = new ArrayList<>(batch.size());
+        for (PendingReview pending : batch) {
+            long waited = System.nanoTime() - pending.enqueuedAt();
+            dequeued.increment();
+            queueNanos.add(waited);
+            maxQueueNanos.accumulateAndGet(waited, Math::max);
+            verdicts.add(check(pending));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingReview pending = batch.get(i);
+            try {
+                if (verdicts.get(i).join()) {
+                    reject(pending);
+                } else {
+                    approve(pending);
+                }
+            } catch (RuntimeException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                failed.increment();
+                log.warn("Moderation of review {} failed: {}", pending.reviewId(), cause.toString());
+                recordFailure(pending);
+            } finally {
+                inFlight.remove(pending.reviewId());
+            }
+        }
+    }
+
+    private CompletableFuture<Boolean> check(PendingReview pending) {
+        try {
+            return profanityFilterService.hasProfanity(pending.body());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void approve(PendingReview pending) {
+        long updated = mongoTemplate.updateFirst(pendingReview(pending.reviewId()),
+                new Update().set("status", ReviewStatus.APPROVED).set("uncounted", true), Review.class).getModifiedCount();
+        if (updated == 0) {
+            return; //moderated by another worker or deleted meanwhile
+        }
+        count(pending.reviewId(), pending.imdbId());
+        trendingService.recordReview(pending.imdbId());
+        approved.increment();
+        notifier.publish(new ReviewStatusDTO(pending.reviewId().toHexString(), ReviewStatus.APPROVED, APPROVED_MESSAGE));
+    }
+
+    //adds an approved review to its anime's count once, however often it is repeated
+    private void count(ObjectId reviewId, String imdbId) {
+        mongoTemplate.update(Anime.class)
+                .matching(Criteria.where("imdbId").is(imdbId).and("countedReviewIds").ne(reviewId))
+                .apply(new Update().inc("reviewCount", 1).push("countedReviewIds").slice(-COUNTED_WINDOW).each(reviewId))
+                .first();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(reviewId)), new Update().unset("uncounted"), Review.class);
+    }
+
+    private void reject(PendingReview pending) {
+        if (!settle(pending, ReviewStatus.REJECTED, REJECTED_MESSAGE)) {
+            return;
+        }
+        rejected.increment();
+        notifier.publish(new ReviewStatusDTO(pending.reviewId().toHexString(), ReviewStatus.REJECTED, REJECTED_MESSAGE));
+    }
+
+    //counts the attempt and backs off the next requeue, or gives up once max-attempts is reached
+    private void recordFailure(PendingReview pending) {
+        try {
+            Review review = mongoTemplate.findAndModify(pendingReview(pending.reviewId()),
+                    new Update().inc("moderationAttempts", 1),
+                    FindAndModifyOptions.options().returnNew(true), Review.class);
+            if (review == null) {
+                return;
+            }
+            int attempts = review.getModerationAttempts();
+            if (attempts >= maxAttempts) {
+                giveUp(pending);
+                return;
+            }
+            Duration backoff = requeueAfter.multipliedBy(1L << Math.min(attempts - 1, 16));
+            mongoTemplate.updateFirst(pendingReview(pending.reviewId()),
+                    new Update().set("nextAttemptAt", LocalDateTime.now().plus(backoff)), Review.class);
+        } catch (RuntimeException e) {
+            //the requeue retries it without counting this attempt
+            log.warn("Could not record failed moderation of review {}: {}", pending.reviewId(), e.getMessage());
+        }
+    }
+
+    private void giveUp(PendingReview pending) {
+        if (!settle(pending, ReviewStatus.ERROR, FAILED_MESSAGE)) {
+            return;
+        }
+        log.warn("Gave up moderating review {} after {} attempts", pending.reviewId(), maxAttempts);
+        notifier.publish(new ReviewStatusDTO(pending.reviewId().toHexString(), ReviewStatus.ERROR, FAILED_MESSAGE));
+    }
+
+    //saves the rejected copy under the review's id before removing the review, so it is never missing from both
+    private boolean settle(PendingReview pending, ReviewStatus status, String reason) {
+        Review review = mongoTemplate.findOne(pendingReview(pending.reviewId()), Review.class);
+        if (review == null) {
+            return false;
+        }
+        RejectedReview copy = mongoTemplate.save(rejectedReview(review, status, reason));
+        if (mongoTemplate.remove(pendingReview(pending.reviewId()), Review.class).getDeletedCount() == 0) {
+            mongoTemplate.remove(copy); //approved or deleted meanwhile
+            return false;
+        }
+        return true;
+    }
+
+    private static RejectedReview rejectedReview(Review review, ReviewStatus status, String reason) {
+        return RejectedReview.builder()
+                .id(review.getId())
+                .body(review.getBody())
+                .userId(review.getUserId())
+                .imdbId(review.getImdbId())
+                .status(status)
+                .reason(reason)
+                .createdAt(review.getCreatedAt())
+                .rejectedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static Query pendingReview(ObjectId reviewId) {
+        return Query.query(Criteria.where("_id").is(reviewId).and("status").is(ReviewStatus.PENDING));
+    }
+
+    /**
+     * Queues pending reviews that have waited longer than requeue-after and whose backoff has
+     * passed, oldest first and only as many as currently fit.
+     */
+    @Scheduled(fixedDelayString = "${anime.reviews.moderation.requeue-interval-ms:30000}")
+    public int requeuePending() {
+        int room = queue.remainingCapacity();
+        if (room == 0) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("status").is(ReviewStatus.PENDING)
+                        .and("createdAt").lte(now.minus(requeueAfter))
+                        .orOperator(Criteria.where("nextAttemptAt").exists(false), Criteria.where("nextAttemptAt").lte(now)))
+                .with(Sort.by("createdAt"))
+                .limit(room);
+        query.fields().include("body", "imdbId");
+        List<Review> stale = mongoTemplate.find(query, Review.class);
+        int requeued = 0;
+        for (Review review : stale) {
+            if (!inFlight.contains(review.getId()) && submit(review)) {
+                requeued++;
+            }
+        }
+        if (requeued > 0) {
+            log.info("Requeued {} pending reviews for moderation", requeued);
+        }
+        return requeued;
+    }
+
+    /**
+     * Finishes the reviewCount increments of approved reviews that are still marked uncounted,
+     * which happens when the process stopped between approving a review and counting it.
+     */
+    @Scheduled(fixedDelayString = "${anime.reviews.moderation.requeue-interval-ms:30000}")
+    public int countApproved() {
+        //counting is idempotent, so reviews a worker is counting right now may be counted here too
+        Query query = Query.query(Criteria.where("uncounted").is(true).and("status").is(ReviewStatus.APPROVED))
+                .limit(queueCapacity);
+        query.fields().include("imdbId");
+        List<Review> uncounted = mongoTemplate.find(query, Review.class);
+        for (Review review : uncounted) {
+            count(review.getId(), review.getImdbId());
+        }
+        if (!uncounted.isEmpty()) {
+            log.info("Counted {} approved reviews left uncounted", uncounted.size());
+        }
+        return uncounted.size();
+    }
+
+    public ModerationStatsDTO stats() {
+        long count = dequeued.sum();
+        return ModerationStatsDTO.builder()
+                .queueDepth(queue.size())
+                .queueCapacity(queueCapacity)
+                .workers(workers)
+                .approved(approved.sum())
+                .rejected(rejected.sum())
+                .failed(failed.sum())
+                .dropped(dropped.sum())
+                .averageQueueMillis(count == 0 ? 0 : queueNanos.sum() / (double) count / 1_000_000)
+                .maxQueueMillis(TimeUnit.NANOSECONDS.toMillis(maxQueueNanos.get()))
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+    record PendingReview(ObjectId reviewId, String body, String imdbId, long enqueuedAt) {
+    }
+}
@@ -1,38 +1,58 @@
 package com.marko.anime.services;
 
 
+import com.marko.anime.dtos.CursorPageDTO;
 import com.marko.anime.dtos.ReviewStatus;
+import com.marko.anime.dtos.ReviewStatusDTO;
 import com.marko.anime.dtos.ReviewSubmissionResult;
+import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.exceptions.ReviewNotFoundException;
 import com.marko.anime.models.Anime;
+import com.marko.anime.models.RejectedReview;
 import com.marko.anime.models.Review;
 import com.marko.anime.models.User;
-import com.marko.anime.repositories.AnimeRepository;
 import com.marko.anime.repositories.ReviewRepository;
 import com.marko.anime.repositories.UserRepository;
 import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Objects;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 
 @Service
 public class ReviewService {
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    //reviews shown in listings; null matches reviews stored before moderation existed
+    static final List<String> LISTED_STATUSES = Arrays.asList(ReviewStatus.APPROVED.name(), null);
+
     private final ReviewRepository reviewRepository;
     private final UserRepository userRepository;
-    private final ProfanityFilterService profanityFilterService;
     private final MongoTemplate mongoTemplate;
-    private final AnimeRepository animeRepository;
+    private final KnownAnimeIds knownAnimeIds;
+    private final ReviewModerationService moderationService;
+    private final ReviewStatusNotifier statusNotifier;
 
-    public ReviewService(ReviewRepository reviewRepository, UserRepository userRepository, ProfanityFilterService profanityFilterService, MongoTemplate mongoTemplate,
-                         AnimeRepository animeRepository) {
+    public ReviewService(ReviewRepository reviewRepository, UserRepository userRepository, MongoTemplate mongoTemplate,
+                         KnownAnimeIds knownAnimeIds, ReviewModerationService moderationService,
+                         ReviewStatusNotifier statusNotifier) {
         this.reviewRepository = reviewRepository;
         this.userRepository = userRepository;
-        this.profanityFilterService = profanityFilterService;
         this.mongoTemplate = mongoTemplate;
-        this.animeRepository = animeRepository;
+        this.knownAnimeIds = knownAnimeIds;
+        this.moderationService = moderationService;
+        this.statusNotifier = statusNotifier;
     }
 
     public ReviewSubmissionResult submitReview(String body, String imdbId, String userId) {
@@ -43,43 +63,126 @@ public class ReviewService {
                 return new ReviewSubmissionResult(ReviewStatus.REJECTED,
                         "Review must have at least 50 characters!");
             }
-            if (reviewByUserExists(imdbId, userId)) {
-                return new ReviewSubmissionResult(ReviewStatus.REJECTED,
-                        "Review for this anime has already been posted by user.");
-            }
-            if (profanityFilterService.hasProfanity(body)) {
-                return new ReviewSubmissionResult(ReviewStatus.REJECTED,
-                        "Review rejected due to profanity!");
-            }
-            return saveReviewAndUpdateAnime(body, imdbId, userId);
+            return saveReviewForModeration(body, imdbId, userId);
+        } catch (AnimeNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             return new ReviewSubmissionResult(ReviewStatus.ERROR, "Error processing review: " + e.getMessage());
         }
     }
 
+    /**
+     * Inserts the review as pending and hands it to moderation. A second review by the same user
+     * for the same anime is refused by the unique (imdbId, userId) index, see ReviewDuplicateMigration.
+     *
+     * @throws AnimeNotFoundException if the anime is not in the catalog
+     */
+    public ReviewSubmissionResult saveReviewForModeration(String body, String imdbId, String userId) {
+            if (imdbId == null || imdbId.isBlank() || knownAnimeIds.isUnknown(imdbId)) {
+                throw AnimeNotFoundException.unknownId();
+            }
+            Review review = new Review(body, userId, imdbId);
+            review.setStatus(ReviewStatus.PENDING);
+            Review saved;
+            try {
+                saved = reviewRepository.insert(review);
+            } catch (DuplicateKeyException e) {
+                return new ReviewSubmissionResult(ReviewStatus.REJECTED,
+                        "Review for this anime has already been posted by user.");
+            }
+            moderationService.submit(saved);
+            return new ReviewSubmissionResult(ReviewStatus.PENDING,
+                    "Review submitted for moderation.", saved.getId().toHexString());
+    }
 
-    boolean reviewByUserExists(String imdbId, String userId) {
-        return animeRepository.findAnimeByImdbId(imdbId)
-                .map(anime -> anime.getReviewIds().stream()
-                        .map(id -> reviewRepository.getById(id.getId()).orElse(null))
-                        .filter(Objects::nonNull)
-                        .anyMatch(review -> review.getUserId().equals(userId)))
-                .orElse(false);
+    public ReviewStatusDTO findReviewStatus(String reviewId) {
+        ObjectId id = reviewObjectId(reviewId);
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().include("status");
+        Review review = mongoTemplate.findOne(query, Review.class);
+        if (review != null) {
+            ReviewStatus status = review.getStatus() == null ? ReviewStatus.APPROVED : review.getStatus();
+            return new ReviewStatusDTO(reviewId, status, status == ReviewStatus.PENDING
+                    ? "Review is waiting for moderation." : ReviewModerationService.APPROVED_MESSAGE);
+        }
+        RejectedReview rejected = mongoTemplate.findById(id, RejectedReview.class);
+        if (rejected != null) {
+            ReviewStatus status = rejected.getStatus() == null ? ReviewStatus.REJECTED : rejected.getStatus();
+            return new ReviewStatusDTO(reviewId, status, rejected.getReason());
+        }
+        throw new ReviewNotFoundException();
     }
-    private void updateAnimeWithReviewId(String imdbId, ObjectId reviewId){
-        mongoTemplate.update(Anime.class)
-                .matching(Criteria.where("imdbId").is(imdbId))
-                .apply(new Update().push("ReviewIds").value(reviewId))
-                .first();
+
+    /**
+     * Streams the moderation outcome of a review as a single server-sent event.
+     */
+    public SseEmitter watchReviewStatus(String reviewId) {
+        ReviewStatusDTO status = findReviewStatus(reviewId);
+        if (status.getStatus() != ReviewStatus.PENDING) {
+            return statusNotifier.completed(status);
+        }
+        SseEmitter emitter = statusNotifier.subscribe(reviewId);
+        //moderation may have finished between the lookup and the subscription
+        ReviewStatusDTO current = findReviewStatus(reviewId);
+        if (current.getStatus() != ReviewStatus.PENDING) {
+            statusNotifier.publish(current);
+        }
+        return emitter;
     }
 
-    public ReviewSubmissionResult saveReviewAndUpdateAnime(String body, String imdbId, String userId) {
-            Review review = new Review(body, userId);
-            Review savedReview = reviewRepository.save(review);
-            updateAnimeWithReviewId(imdbId, savedReview.getId());
-            return new ReviewSubmissionResult(ReviewStatus.APPROVED,
-                    "Review published!");
+    private static ObjectId reviewObjectId(String reviewId) {
+        if (reviewId == null || !ObjectId.isValid(reviewId)) {
+            throw new IllegalArgumentException("Invalid review id.");
+        }
+        return new ObjectId(reviewId);
+    }
+
+    /**
+     * Reviews of an anime, newest first, keyset-paginated on (createdAt, _id). Each page is one
+     * range scan of the (imdbId, createdAt, _id) index on reviews.
+     */
+    public CursorPageDTO<Review> findReviewPage(String imdbId, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        if (knownAnimeIds.isUnknown(imdbId)) {
+            throw AnimeNotFoundException.unknownId();
+        }
+        List<Review> rows = mongoTemplate.find(reviewPageQuery(imdbId, after, size + 1), Review.class);
+        if (rows.isEmpty() && !mongoTemplate.exists(Query.query(Criteria.where("imdbId").is(imdbId)), Anime.class)) {
+            throw new AnimeNotFoundException();
+        }
+        if (rows.size() <= size) {
+            return new CursorPageDTO<>(rows, null);
+        }
+        List<Review> content = rows.subList(0, size);
+        Review last = content.get(size - 1);
+        LocalDateTime createdAt = last.getCreatedAt();
+        return new CursorPageDTO<>(content, new KeysetCursor(last.getId(), createdAt == null ? null
+                //same zone the converter uses when it stores LocalDateTime as a BSON date
+                : String.valueOf(createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())).encode());
     }
-}
 
+    static Query reviewPageQuery(String imdbId, KeysetCursor after, int limit) {
+        Criteria criteria = Criteria.where("imdbId").is(imdbId).and("status").in(LISTED_STATUSES);
+        Query query = Query.query(criteria);
+        if (after != null) {
+            query.addCriteria(after.after("createdAt", cursorDate(after), true));
+        }
+        return query
+                .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+                .limit(limit);
+    }
 
+    private static Date cursorDate(KeysetCursor cursor) {
+        if (cursor.getValue() == null) {
+            return null;
+        }
+        try {
+            return new Date(Long.parseLong(cursor.getValue()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+}
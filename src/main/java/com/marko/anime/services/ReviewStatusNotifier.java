@@ -0,0 +1,72 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.ReviewStatusDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Server-sent event subscriptions for the moderation outcome of pending reviews. Each
+ * subscriber gets a single "status" event and the stream is then completed.
+ */
+@Component
+public class ReviewStatusNotifier {
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Duration timeout;
+
+    public ReviewStatusNotifier(@Value("${anime.reviews.moderation.sse-timeout:30s}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public SseEmitter subscribe(String reviewId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribers.computeIfAbsent(reviewId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable unsubscribe = () -> subscribers.computeIfPresent(reviewId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    /**
+     * An emitter that delivers an already known outcome right away.
+     */
+    public SseEmitter completed(ReviewStatusDTO status) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        send(emitter, status);
+        return emitter;
+    }
+
+    public void publish(ReviewStatusDTO status) {
+        List<SseEmitter> emitters = subscribers.remove(status.getReviewId());
+        if (emitters != null) {
+            emitters.forEach(emitter -> send(emitter, status));
+        }
+    }
+
+    int subscriberCount(String reviewId) {
+        List<SseEmitter> emitters = subscribers.get(reviewId);
+        return emitters == null ? 0 : emitters.size();
+    }
+
+    private static void send(SseEmitter emitter, ReviewStatusDTO status) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(status));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            //client went away or the emitter already timed out
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.SimilarAnimeDTO;
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.events.CatalogReloadedEvent;
+import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.repositories.AnimeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Precomputed nearest neighbours per anime. Similarity is the Jaccard index of the genre sets,
+ * blended with how close the release dates are; only anime sharing a genre are compared, found
+ * through per-genre bitmaps. An anime is compared with at most max-candidates others, taken
+ * from its rarest genres first, so a rebuild costs O(n * max-candidates) even when one genre
+ * covers most of the catalog; beyond that size the lists are approximate. The full table is
+ * computed with fork-join across cores. After that a write recomputes only the lists that held
+ * the old version and offers the new version to the lists it shares a genre with. All
+ * mutations run on one background thread; requests only read finished, immutable lists.
+ */
+@Slf4j
+@Service
+public class SimilarAnimeIndex {
+
+    static final int NEIGHBOURS = 10;
+    static final double GENRE_WEIGHT = 0.8;
+    static final double DATE_WEIGHT = 0.2;
+    private static final double DATE_SCALE_DAYS = 5 * 365.0;
+    private static final int SPLIT_THRESHOLD = 64;
+    private static final DateTimeFormatter DOTTED_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final AnimeRepository animeRepository;
+    private final int maxCandidates;
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool();
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similar-anime-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //owned by the update thread
+    private final List<Item> items = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<Integer> freeOrdinals = new ArrayList<>();
+    private final Map<String, Integer> genreIds = new HashMap<>();
+    private final List<BitSet> genreMembers = new ArrayList<>();
+    private final Map<Integer, List<Neighbour>> neighbours = new HashMap<>();
+
+    //read by request threads
+    private final Map<String, List<SimilarAnimeDTO>> table = new ConcurrentHashMap<>();
+
+    public SimilarAnimeIndex(AnimeRepository animeRepository,
+                             @Value("${anime.similar.max-candidates:2000}") int maxCandidates) {
+        if (maxCandidates < NEIGHBOURS) {
+            throw new IllegalArgumentException("anime.similar.max-candidates must be at least " + NEIGHBOURS + ".");
+        }
+        this.animeRepository = animeRepository;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public List<SimilarAnimeDTO> findSimilar(String imdbId) {
+        List<SimilarAnimeDTO> similar = table.get(imdbId);
+        if (similar == null) {
+            throw new AnimeNotFoundException();
+        }
+        return similar;
+    }
+
+    @EventListener({ApplicationReadyEvent.class, CatalogReloadedEvent.class})
+    public void scheduleRebuild() {
+        updateExecutor.execute(() -> runLogged(this::rebuild));
+    }
+
+    @EventListener
+    public void onAnimeChanged(AnimeChangedEvent event) {
+        AnimeSummaryDTO anime = event.isDeletion() ? null : AnimeSearchIndex.toSummary(event.getAnime());
+        updateExecutor.execute(() -> runLogged(() -> apply(event.getImdbId(), anime)));
+    }
+
+    private static void runLogged(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Similar anime index update failed", e);
+        }
+    }
+
+    void rebuild() {
+        items.clear();
+        ordinals.clear();
+        freeOrdinals.clear();
+        genreIds.clear();
+        genreMembers.clear();
+        neighbours.clear();
+        for (AnimeSummaryDTO anime : animeRepository.findAllBy(AnimeSummaryDTO.class)) {
+            add(anime);
+        }
+        forkJoinPool.invoke(new NeighbourTask(0, items.size()));
+        Map<String, List<SimilarAnimeDTO>> fresh = new HashMap<>();
+        for (Map.Entry<Integer, List<Neighbour>> entry : neighbours.entrySet()) {
+            fresh.put(items.get(entry.getKey()).imdbId, toDtos(entry.getValue()));
+        }
+        table.keySet().retainAll(fresh.keySet());
+        table.putAll(fresh);
+    }
+
+    /**
+     * Replaces (or with a null anime removes) the anime written under imdbId. Lists that held
+     * its old version lost a neighbour and are recomputed; every other list sharing a genre
+     * with the new version only needs to compare it with its current worst neighbour.
+     */
+    void apply(String imdbId, AnimeSummaryDTO anime) {
+        BitSet stale = new BitSet();
+        Integer old = ordinals.get(imdbId);
+        if (old != null) {
+            stale.or(listing(old));
+            remove(old);
+        }
+        Integer added = null;
+        if (anime != null && anime.getImdbId() != null) {
+            Integer replaced = ordinals.get(anime.getImdbId());
+            if (replaced != null) {
+                stale.or(listing(replaced));
+                remove(replaced);
+            }
+            added = add(anime);
+            stale.set(added);
+        }
+        int[] todo = stale.stream().filter(i -> items.get(i) != null).toArray();
+        forkJoinPool.invoke(new NeighbourTask(todo, 0, todo.length));
+        for (int i : todo) {
+            table.put(items.get(i).imdbId, toDtos(neighbours.get(i)));
+        }
+        if (added != null) {
+            offer(added);
+        }
+    }
+
+    //anime whose neighbour list contains the ordinal, they all share a genre with it
+    private BitSet listing(int ordinal) {
+        BitSet listing = new BitSet();
+        BitSet sharing = sharingGenre(items.get(ordinal));
+        for (int other = sharing.nextSetBit(0); other >= 0; other = sharing.nextSetBit(other + 1)) {
+            List<Neighbour> list = neighbours.get(other);
+            if (list != null && list.stream().anyMatch(neighbour -> neighbour.ordinal == ordinal)) {
+                listing.set(other);
+            }
+        }
+        return listing;
+    }
+
+    //puts the anime into every list it now beats the worst entry of
+    private void offer(int ordinal) {
+        Item item = items.get(ordinal);
+        BitSet sharing = sharingGenre(item);
+        for (int other = sharing.nextSetBit(0); other >= 0; other = sharing.nextSetBit(other + 1)) {
+            List<Neighbour> list = neighbours.get(other);
+            if (other == ordinal || list == null || list.stream().anyMatch(neighbour -> neighbour.ordinal == ordinal)) {
+                continue;
+            }
+            Neighbour entry = new Neighbour(ordinal, item.imdbId, similarity(items.get(other), item));
+            if (list.size() >= NEIGHBOURS && Neighbour.WORST_FIRST.compare(entry, list.get(list.size() - 1)) <= 0) {
+                continue;
+            }
+            List<Neighbour> updated = new ArrayList<>(list.size() + 1);
+            updated.addAll(list);
+            updated.add(entry);
+            updated.sort(Neighbour.WORST_FIRST.reversed());
+            if (updated.size() > NEIGHBOURS) {
+                updated.remove(updated.size() - 1);
+            }
+            neighbours.put(other, updated);
+            table.put(items.get(other).imdbId, toDtos(updated));
+        }
+    }
+
+    private int add(AnimeSummaryDTO anime) {
+        BitSet genres = new BitSet();
+        if (anime.getGenres() != null) {
+            for (String genre : anime.getGenres()) {
+                if (genre != null && !genre.isBlank()) {
+                    int id = genreIds.computeIfAbsent(AnimeSearchIndex.genreKey(genre), key -> {
+                        genreMembers.add(new BitSet());
+                        return genreMembers.size() - 1;
+                    });
+                    genres.set(id);
+                }
+            }
+        }
+        Item item = new Item(anime.getImdbId(), anime.getTitle(), genres, releaseDay(anime.getReleaseDate()));
+        int ordinal;
+        if (freeOrdinals.isEmpty()) {
+            ordinal = items.size();
+            items.add(item);
+        } else {
+            ordinal = freeOrdinals.remove(freeOrdinals.size() - 1);
+            items.set(ordinal, item);
+        }
+        ordinals.put(item.imdbId, ordinal);
+        genres.stream().forEach(id -> genreMembers.get(id).set(ordinal));
+        return ordinal;
+    }
+
+    private void remove(int ordinal) {
+        Item item = items.get(ordinal);
+        item.genres.stream().forEach(id -> genreMembers.get(id).clear(ordinal));
+        ordinals.remove(item.imdbId);
+        items.set(ordinal, null);
+        neighbours.remove(ordinal);
+        table.remove(item.imdbId);
+        freeOrdinals.add(ordinal);
+    }
+
+    private BitSet sharingGenre(Item item) {
+        BitSet sharing = new BitSet();
+        item.genres.stream().forEach(id -> sharing.or(genreMembers.get(id)));
+        return sharing;
+    }
+
+    //members of the rarest genres first, a genre that does not fit contributes its lowest ordinals
+    private BitSet candidates(int ordinal) {
+        int[] rarestFirst = items.get(ordinal).genres.stream().boxed()
+                .sorted(Comparator.comparingInt(id -> genreMembers.get(id).cardinality()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        BitSet candidates = new BitSet();
+        int count = 0;
+        for (int id : rarestFirst) {
+            BitSet members = genreMembers.get(id);
+            for (int other = members.nextSetBit(0); other >= 0 && count < maxCandidates; other = members.nextSetBit(other + 1)) {
+                if (other != ordinal && !candidates.get(other)) {
+                    candidates.set(other);
+                    count++;
+                }
+            }
+            if (count >= maxCandidates) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    private List<Neighbour> computeNeighbours(int ordinal) {
+        Item item = items.get(ordinal);
+        BitSet candidates = candidates(ordinal);
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(NEIGHBOURS + 1, Neighbour.WORST_FIRST);
+        for (int other = candidates.nextSetBit(0); other >= 0; other = candidates.nextSetBit(other + 1)) {
+            Item candidate = items.get(other);
+            best.add(new Neighbour(other, candidate.imdbId, similarity(item, candidate)));
+            if (best.size() > NEIGHBOURS) {
+                best.poll();
+            }
+        }
+        List<Neighbour> sorted = new ArrayList<>(best);
+        sorted.sort(Neighbour.WORST_FIRST.reversed());
+        return sorted;
+    }
+
+    static double similarity(Item a, Item b) {
+        BitSet common = (BitSet) a.genres.clone();
+        common.and(b.genres);
+        int intersection = common.cardinality();
+        int union = a.genres.cardinality() + b.genres.cardinality() - intersection;
+        double jaccard = union == 0 ? 0 : (double) intersection / union;
+        double proximity = a.releaseDay == null || b.releaseDay == null ? 0
+                : Math.exp(-Math.abs(a.releaseDay - b.releaseDay) / DATE_SCALE_DAYS);
+        return GENRE_WEIGHT * jaccard + DATE_WEIGHT * proximity;
+    }
+
+    static Long releaseDay(String releaseDate) {
+        if (releaseDate == null || releaseDate.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(releaseDate.trim()).toEpochDay();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(releaseDate.trim(), DOTTED_DATE).toEpochDay();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private List<SimilarAnimeDTO> toDtos(List<Neighbour> list) {
+        List<SimilarAnimeDTO> dtos = new ArrayList<>(list.size());
+        for (Neighbour neighbour : list) {
+            Item item = items.get(neighbour.ordinal);
+            dtos.add(new SimilarAnimeDTO(item.imdbId, item.title, neighbour.score));
+        }
+        return List.copyOf(dtos);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        updateExecutor.shutdownNow();
+        forkJoinPool.shutdownNow();
+    }
+
+    record Item(String imdbId, String title, BitSet genres, Long releaseDay) {
+    }
+
+    //ties are broken by imdbId, so the order does not depend on ordinal reuse
+    private record Neighbour(int ordinal, String imdbId, double score) {
+        static final Comparator<Neighbour> WORST_FIRST = Comparator.comparingDouble(Neighbour::score)
+                .thenComparing(Neighbour::imdbId, Comparator.reverseOrder());
+    }
+
+    /**
+     * Computes the neighbour lists for a range of ordinals (or of the given ordinals), splitting
+     * until ranges are small. Results are collected per task and published by the caller thread.
+     */
+    private final class NeighbourTask extends RecursiveAction {
+        private final int[] ordinalsToDo; //null means every ordinal in [from, to)
+        private final int from;
+        private final int to;
+
+        NeighbourTask(int from, int to) {
+            this(null, from, to);
+        }
+
+        NeighbourTask(int[] ordinalsToDo, int from, int to) {
+            this.ordinalsToDo = ordinalsToDo;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new NeighbourTask(ordinalsToDo, from, mid), new NeighbourTask(ordinalsToDo, mid, to));
+                return;
+            }
+            Map<Integer, List<Neighbour>> computed = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                int ordinal = ordinalsToDo == null ? i : ordinalsToDo[i];
+                if (items.get(ordinal) != null) {
+                    computed.put(ordinal, computeNeighbours(ordinal));
+                }
+            }
+            synchronized (neighbours) {
+                neighbours.putAll(computed);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeSuggestionDTO;
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.events.CatalogReloadedEvent;
+import com.marko.anime.repositories.AnimeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typeahead over anime titles. Every title is indexed under its normalized form, its
+ * punctuation-free form and each word suffix ("attack on titan", "on titan", "titan"), so a
+ * prefix matches mid-title words too. Titles written in kana are also indexed in romaji. Keys
+ * live in one sorted, front-coded array: each key stores only the characters it does not share
+ * with its predecessor, with a full key every BLOCK_SIZE entries for binary search. The
+ * immutable snapshot is rebuilt off the request path whenever the catalog changes.
+ */
+@Slf4j
+@Service
+public class TitleSuggester {
+
+    static final int MAX_SUGGESTIONS = 20;
+    private static final int BLOCK_SIZE = 16;
+    private static final int MAX_SCANNED_KEYS = 1024;
+
+    private final AnimeRepository animeRepository;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "title-suggester-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+
+    public TitleSuggester(AnimeRepository animeRepository) {
+        this.animeRepository = animeRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        snapshot = Snapshot.build(animeRepository.findAllBy(AnimeSuggestionDTO.class));
+    }
+
+    @EventListener({AnimeChangedEvent.class, CatalogReloadedEvent.class})
+    public void onCatalogChanged() {
+        scheduleRebuild();
+    }
+
+    void scheduleRebuild() {
+        //writes arriving while a rebuild is queued are covered by that rebuild
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.set(false);
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.error("Title suggester rebuild failed, keeping the previous snapshot", e);
+                }
+            });
+        }
+    }
+
+    public List<AnimeSuggestionDTO> suggest(String prefix, int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SUGGESTIONS + ".");
+        }
+        String key = TextNormalizer.normalize(prefix).strip();
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        return snapshot.suggest(key, limit);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    static final class Snapshot {
+        private final String[] titles;
+        private final String[] imdbIds;
+        private final int size;
+        private final char[] chars; //key suffixes, back to back
+        private final int[] offsets; //start of key i's suffix in chars, size + 1 entries
+        private final short[] shared; //chars key i shares with key i - 1, 0 at block heads
+        private final int[] entries; //title index of key i
+        private final boolean[] wholeTitle; //key i starts at the beginning of the title
+
+        private Snapshot(String[] titles, String[] imdbIds, int size, char[] chars, int[] offsets,
+                         short[] shared, int[] entries, boolean[] wholeTitle) {
+            this.titles = titles;
+            this.imdbIds = imdbIds;
+            this.size = size;
+            this.chars = chars;
+            this.offsets = offsets;
+            this.shared = shared;
+            this.entries = entries;
+            this.wholeTitle = wholeTitle;
+        }
+
+        static Snapshot build(List<AnimeSuggestionDTO> anime) {
+            List<AnimeSuggestionDTO> usable = anime.stream()
+                    .filter(a -> a.getImdbId() != null && a.getTitle() != null && !a.getTitle().isBlank())
+                    .toList();
+            String[] titles = new String[usable.size()];
+            String[] imdbIds = new String[usable.size()];
+            List<Key> keys = new ArrayList<>();
+            for (int i = 0; i < usable.size(); i++) {
+                titles[i] = usable.get(i).getTitle();
+                imdbIds[i] = usable.get(i).getImdbId();
+                addKeys(keys, i, titles[i]);
+            }
+            keys.sort(Comparator.comparing(Key::text).thenComparingInt(Key::entry));
+
+            int size = keys.size();
+            StringBuilder chars = new StringBuilder();
+            int[] offsets = new int[size + 1];
+            short[] shared = new short[size];
+            int[] entries = new int[size];
+            boolean[] wholeTitle = new boolean[size];
+            String previous = "";
+            for (int i = 0; i < size; i++) {
+                Key key = keys.get(i);
+                int common = i % BLOCK_SIZE == 0 ? 0 : commonPrefix(previous, key.text());
+                offsets[i] = chars.length();
+                shared[i] = (short) common;
+                chars.append(key.text(), common, key.text().length());
+                entries[i] = key.entry();
+                wholeTitle[i] = key.wholeTitle();
+                previous = key.text();
+            }
+            offsets[size] = chars.length();
+            char[] packed = new char[chars.length()];
+            chars.getChars(0, chars.length(), packed, 0);
+            return new Snapshot(titles, imdbIds, size, packed, offsets, shared, entries, wholeTitle);
+        }
+
+        private static void addKeys(List<Key> keys, int entry, String title) {
+            Set<String> added = new HashSet<>();
+            addForms(keys, added, entry, title);
+            if (KanaRomanizer.containsKana(title)) {
+                addForms(keys, added, entry, KanaRomanizer.romanize(title));
+            }
+        }
+
+        private static void addForms(List<Key> keys, Set<String> added, int entry, String title) {
+            String normalized = TextNormalizer.normalize(title).strip();
+            List<String> words = TextNormalizer.tokenize(title);
+            List<String> whole = new ArrayList<>(3);
+            whole.add(normalized);
+            whole.add(String.join(" ", words));
+            if (words.size() > 1) {
+                whole.add(String.join("", words));
+            }
+            for (String text : whole) {
+                if (added.add(text)) {
+                    keys.add(new Key(text, entry, true));
+                }
+            }
+            for (int w = 1; w < words.size(); w++) {
+                String suffix = String.join(" ", words.subList(w, words.size()));
+                if (added.add(suffix)) {
+                    keys.add(new Key(suffix, entry, false));
+                }
+            }
+        }
+
+        private static int commonPrefix(String a, String b) {
+            int max = Math.min(Math.min(a.length(), b.length()), Short.MAX_VALUE);
+            int i = 0;
+            while (i < max && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        List<AnimeSuggestionDTO> suggest(String prefix, int limit) {
+            if (size == 0) {
+                return List.of();
+            }
+            //last block whose head sorts before the prefix: matches can only start there
+            int low = 0;
+            int high = (size - 1) / BLOCK_SIZE;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (compareHead(mid * BLOCK_SIZE, prefix) < 0) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            char[] current = new char[64];
+            int length = 0;
+            Set<Integer> seen = new HashSet<>(); //sized by the matches, at most MAX_SCANNED_KEYS
+            List<Integer> whole = new ArrayList<>();
+            List<Integer> partial = new ArrayList<>();
+            int scanned = 0;
+            for (int i = low * BLOCK_SIZE; i < size && scanned < MAX_SCANNED_KEYS; i++) {
+                int suffixLength = offsets[i + 1] - offsets[i];
+                length = shared[i] + suffixLength;
+                if (length > current.length) {
+                    current = Arrays.copyOf(current, Math.max(length, current.length * 2));
+                }
+                System.arraycopy(chars, offsets[i], current, shared[i], suffixLength);
+
+                int cmp = comparePrefix(current, length, prefix);
+                if (cmp > 0) {
+                    break;
+                }
+                if (cmp == 0) {
+                    scanned++;
+                    int entry = entries[i];
+                    if (seen.add(entry)) {
+                        (wholeTitle[i] ? whole : partial).add(entry);
+                    }
+                }
+            }
+
+            Comparator<Integer> byTitle = Comparator.<Integer>comparingInt(e -> titles[e].length())
+                    .thenComparing(e -> titles[e]);
+            whole.sort(byTitle);
+            partial.sort(byTitle);
+            List<AnimeSuggestionDTO> result = new ArrayList<>(limit);
+            for (List<Integer> group : List.of(whole, partial)) {
+                for (int entry : group) {
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                    result.add(new AnimeSuggestionDTO(imdbIds[entry], titles[entry]));
+                }
+            }
+            return result;
+        }
+
+        private int compareHead(int index, String prefix) {
+            int length = offsets[index + 1] - offsets[index];
+            int n = Math.min(length, prefix.length());
+            for (int i = 0; i < n; i++) {
+                int diff = chars[offsets[index] + i] - prefix.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - prefix.length();
+        }
+
+        //0 when key starts with prefix, otherwise the sort order of key relative to prefix
+        private static int comparePrefix(char[] key, int length, String prefix) {
+            int n = Math.min(length, prefix.length());
+            for (int i = 0; i < n; i++) {
+                int diff = key[i] - prefix.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length >= prefix.length() ? 0 : -1;
+        }
+    }
+
+    private record Key(String text, int entry, boolean wholeTitle) {
+    }
+}
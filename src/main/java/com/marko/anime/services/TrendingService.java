@@ -0,0 +1,327 @@
+package com.marko.anime.services;
+
+import com.marko.anime.events.AnimeChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-decayed popularity per anime using forward decay: an event at time t adds
+ * weight * e^(lambda * t), so old scores never need to be decayed, and ordering by the stored
+ * value is ordering by the decayed score. Values are kept as logarithms (log-sum-exp on every
+ * add) so they never overflow. Scores live in chunked AtomicLongArrays indexed by a per-anime
+ * slot and are updated with CAS. Because stored scores only grow, a top-K min-heap updated on
+ * each event stays exact without rescanning. Only removing a deleted or renamed-over anime
+ * frees a place, which is refilled with the best anime outside the heap by one scan of the
+ * score arrays.
+ */
+@Service
+public class TrendingService {
+
+    static final int MAX_TRENDING = 100;
+    static final double VIEW_WEIGHT = 1.0;
+    static final double REVIEW_WEIGHT = 5.0;
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << 12;
+    private static final long EMPTY = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+    private final double lambdaPerMilli;
+    private final LongSupplier clock;
+    private final KnownAnimeIds knownAnimeIds;
+    private final long landmark;
+
+    private final ConcurrentHashMap<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final TopHeap heap = new TopHeap(MAX_TRENDING);
+
+    @Autowired
+    public TrendingService(@Value("${anime.trending.half-life:24h}") Duration halfLife, KnownAnimeIds knownAnimeIds) {
+        this(halfLife, System::currentTimeMillis, knownAnimeIds);
+    }
+
+    TrendingService(Duration halfLife, LongSupplier clock, KnownAnimeIds knownAnimeIds) {
+        if (halfLife.isZero() || halfLife.isNegative()) {
+            throw new IllegalArgumentException("anime.trending.half-life must be positive.");
+        }
+        this.lambdaPerMilli = Math.log(2) / halfLife.toMillis();
+        this.clock = clock;
+        this.knownAnimeIds = knownAnimeIds;
+        this.landmark = clock.getAsLong();
+    }
+
+    public void recordView(String imdbId) {
+        record(imdbId, VIEW_WEIGHT);
+    }
+
+    public void recordReview(String imdbId) {
+        record(imdbId, REVIEW_WEIGHT);
+    }
+
+    /**
+     * Highest scoring anime first, scores decayed to the current time.
+     */
+    public List<TrendingScore> top(int limit) {
+        if (limit < 1 || limit > MAX_TRENDING) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_TRENDING + ".");
+        }
+        double now = lambdaPerMilli * (clock.getAsLong() - landmark);
+        List<TrendingScore> top = heap.snapshot();
+        top.sort(Comparator.comparingDouble(TrendingScore::score).reversed());
+        List<TrendingScore> result = new ArrayList<>(Math.min(limit, top.size()));
+        for (TrendingScore entry : top.subList(0, Math.min(limit, top.size()))) {
+            result.add(new TrendingScore(entry.imdbId(), Math.exp(entry.score() - now)));
+        }
+        return result;
+    }
+
+    @EventListener
+    public void onAnimeChanged(AnimeChangedEvent event) {
+        String oldId = event.getImdbId();
+        if (event.isDeletion()) {
+            Integer slot = slots.remove(oldId);
+            if (slot != null) {
+                chunk(slot).set(slot & (CHUNK_SIZE - 1), EMPTY);
+                removeFromHeap(slot);
+            }
+            return;
+        }
+        String newId = event.getAnime().getImdbId();
+        if (newId != null && !newId.equals(oldId)) {
+            Integer slot = slots.remove(oldId);
+            if (slot != null && slots.putIfAbsent(newId, slot) == null) {
+                heap.rename(slot, newId);
+            } else if (slot != null) {
+                chunk(slot).set(slot & (CHUNK_SIZE - 1), EMPTY);
+                removeFromHeap(slot);
+            }
+        }
+    }
+
+    //the anime that was K+1 before the removal is brought back, rare enough for a full scan
+    private void removeFromHeap(int slot) {
+        if (!heap.remove(slot)) {
+            return;
+        }
+        Set<Integer> members = heap.members();
+        String bestId = null;
+        int bestSlot = -1;
+        double best = Double.NEGATIVE_INFINITY;
+        for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+            int candidate = entry.getValue();
+            if (candidate >= MAX_CHUNKS * CHUNK_SIZE || members.contains(candidate)) {
+                continue;
+            }
+            double score = Double.longBitsToDouble(chunk(candidate).get(candidate & (CHUNK_SIZE - 1)));
+            if (score > best) {
+                best = score;
+                bestSlot = candidate;
+                bestId = entry.getKey();
+            }
+        }
+        if (bestId != null) {
+            heap.offer(bestSlot, bestId, best);
+        }
+    }
+
+    private void record(String imdbId, double weight) {
+        //slots are never reused, so ids that are not in the catalog must not get one
+        if (imdbId == null || knownAnimeIds.isUnknown(imdbId)) {
+            return;
+        }
+        int slot = slots.computeIfAbsent(imdbId, id -> nextSlot.getAndIncrement());
+        if (slot >= MAX_CHUNKS * CHUNK_SIZE) {
+            return; //beyond capacity, such anime simply never trend
+        }
+        double increment = Math.log(weight) + lambdaPerMilli * (clock.getAsLong() - landmark);
+        AtomicLongArray chunk = chunk(slot);
+        int index = slot & (CHUNK_SIZE - 1);
+        long current;
+        double updated;
+        do {
+            current = chunk.get(index);
+            updated = logAddExp(Double.longBitsToDouble(current), increment);
+        } while (!chunk.compareAndSet(index, current, Double.doubleToRawLongBits(updated)));
+        heap.offer(slot, imdbId, updated);
+    }
+
+    private AtomicLongArray chunk(int slot) {
+        int c = slot >>> CHUNK_BITS;
+        AtomicLongArray chunk = chunks.get(c);
+        if (chunk == null) {
+            AtomicLongArray fresh = new AtomicLongArray(CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                fresh.set(i, EMPTY);
+            }
+            chunk = chunks.compareAndSet(c, null, fresh) ? fresh : chunks.get(c);
+        }
+        return chunk;
+    }
+
+    static double logAddExp(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    public record TrendingScore(String imdbId, double score) {
+    }
+
+    /**
+     * Min-heap of the K best (log) scores with their slots. Offers that cannot enter are rejected
+     * against a volatile threshold without taking the lock.
+     */
+    static final class TopHeap {
+        private final int capacity;
+        private final int[] slots;
+        private final String[] ids;
+        private final double[] scores;
+        private int size;
+        private volatile double threshold = Double.NEGATIVE_INFINITY;
+
+        TopHeap(int capacity) {
+            this.capacity = capacity;
+            this.slots = new int[capacity];
+            this.ids = new String[capacity];
+            this.scores = new double[capacity];
+        }
+
+        void offer(int slot, String imdbId, double score) {
+            //a member's new score exceeds its old one, which is >= threshold, so this skips only outsiders
+            if (score <= threshold) {
+                return;
+            }
+            synchronized (this) {
+                int position = indexOf(slot);
+                if (position >= 0) {
+                    if (score > scores[position]) {
+                        scores[position] = score;
+                        siftDown(position);
+                    }
+                } else if (size < capacity) {
+                    slots[size] = slot;
+                    ids[size] = imdbId;
+                    scores[size] = score;
+                    siftUp(size++);
+                } else if (score > scores[0]) {
+                    slots[0] = slot;
+                    ids[0] = imdbId;
+                    scores[0] = score;
+                    siftDown(0);
+                }
+                threshold = size < capacity ? Double.NEGATIVE_INFINITY : scores[0];
+            }
+        }
+
+        //returns whether the slot was in the heap
+        synchronized boolean remove(int slot) {
+            int position = indexOf(slot);
+            if (position < 0) {
+                return false;
+            }
+            size--;
+            if (position != size) {
+                move(size, position);
+                siftDown(position);
+                siftUp(position);
+            }
+            threshold = Double.NEGATIVE_INFINITY; //a freed place can be taken by anyone
+            return true;
+        }
+
+        synchronized Set<Integer> members() {
+            Set<Integer> members = new HashSet<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                members.add(slots[i]);
+            }
+            return members;
+        }
+
+        synchronized void rename(int slot, String imdbId) {
+            int position = indexOf(slot);
+            if (position >= 0) {
+                ids[position] = imdbId;
+            }
+        }
+
+        synchronized List<TrendingScore> snapshot() {
+            List<TrendingScore> copy = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                copy.add(new TrendingScore(ids[i], scores[i]));
+            }
+            return copy;
+        }
+
+        private int indexOf(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int slot = slots[a];
+            String id = ids[a];
+            double score = scores[a];
+            move(b, a);
+            slots[b] = slot;
+            ids[b] = id;
+            scores[b] = score;
+        }
+
+        private void move(int from, int to) {
+            slots[to] = slots[from];
+            ids[to] = ids[from];
+            scores[to] = scores[from];
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.marko.anime.configuration;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -9,6 +10,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 
 import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
 
 @TestConfiguration
 @EnableWebSecurity
@@ -20,8 +22,20 @@ public class TestSecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        //the request was authorized before it went async, e.g. review status events
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/v1/anime", "/api/v1/auth/**").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/search").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/suggest").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/facets").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/trending").permitAll()
+                        .requestMatchers(GET, "/api/v1/anime/cache-stats").hasRole("ADMIN")
+                        .requestMatchers(GET, "/api/v1/anime/export", "/api/v1/anime-reviews/export").hasRole("ADMIN")
+                        .requestMatchers(GET, "/api/v1/anime-reviews/moderation-stats").hasRole("ADMIN")
+                        .requestMatchers(POST, "/api/v1/anime-reviews/profanity-words/reload").hasRole("ADMIN")
                         .requestMatchers(GET,"/api/v1/anime/*").authenticated()
+                        .requestMatchers(GET, "/api/v1/anime/*/similar", "/api/v1/anime/*/full").authenticated()
+                        .requestMatchers(POST, "/api/v1/anime/batch").authenticated()
                         .requestMatchers("/api/v1/anime/**").hasRole("ADMIN")
                         .requestMatchers("/api/v1/anime-reviews/**").authenticated()
                         .requestMatchers("/api/v1/users", "/api/v1/users/**").hasRole("ADMIN")
@@ -2,10 +2,33 @@ package com.marko.anime.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marko.anime.configuration.TestSecurityConfig;
+import com.marko.anime.dtos.AnimeBatchItemDTO;
+import com.marko.anime.dtos.AnimeDetailDTO;
+import com.marko.anime.dtos.AnimeFullDTO;
+import com.marko.anime.dtos.AnimeSuggestionDTO;
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.AnimeVersion;
+import com.marko.anime.dtos.CacheStatsDTO;
+import com.marko.anime.dtos.CatalogFilter;
+import com.marko.anime.dtos.CatalogSort;
+import com.marko.anime.dtos.CursorPageDTO;
+import com.marko.anime.dtos.GenreFacetsDTO;
+import com.marko.anime.dtos.ImportReportDTO;
+import com.marko.anime.dtos.ReviewStatsDTO;
+import com.marko.anime.dtos.SimilarAnimeDTO;
+import com.marko.anime.dtos.TrendingAnimeDTO;
+import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.exceptions.PreconditionFailedException;
 import com.marko.anime.models.Anime;
 import com.marko.anime.repositories.TokenRepository;
+import com.marko.anime.services.AnimeImportService;
+import com.marko.anime.services.AnimeSearchIndex;
 import com.marko.anime.services.AnimeService;
+import com.marko.anime.services.ExportService;
 import com.marko.anime.services.JwtService;
+import com.marko.anime.services.TitleSuggester;
+import com.marko.anime.services.SimilarAnimeIndex;
+import com.marko.anime.services.TrendingService;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,12 +42,19 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -36,6 +66,24 @@ class AnimeControllerTest {
     @MockBean
     private AnimeService animeService;
 
+    @MockBean
+    private AnimeSearchIndex searchIndex;
+
+    @MockBean
+    private TitleSuggester titleSuggester;
+
+    @MockBean
+    private AnimeImportService importService;
+
+    @MockBean
+    private ExportService exportService;
+
+    @MockBean
+    private TrendingService trendingService;
+
+    @MockBean
+    private SimilarAnimeIndex similarAnimeIndex;
+
     @MockBean
     private JwtService jwtService;
 
@@ -49,6 +97,7 @@ class AnimeControllerTest {
     private ObjectMapper objectMapper;
 
     private Anime anime;
+    private AnimeDetailDTO animeDetail;
 
     @BeforeEach
     void init() {
@@ -62,14 +111,23 @@ class AnimeControllerTest {
                 .poster("poster.img")
                 .genres(List.of("Genre"))
                 .backdrops(List.of("backdrop.img"))
-                .reviewIds(List.of())
+                .build();
+        animeDetail = AnimeDetailDTO.builder()
+                .id(id)
+                .imdbId("tt123123")
+                .title("Test Anime")
+                .releaseDate("05.05.2020")
+                .trailer("yt.com")
+                .poster("poster.img")
+                .genres(List.of("Genre"))
+                .backdrops(List.of("backdrop.img"))
                 .build();
     }
 
     @Test
     @WithMockUser
     void getAllAnime_shouldReturnListOfAnime() throws Exception {
-        List<Anime> animeList = List.of(anime);
+        List<AnimeDetailDTO> animeList = List.of(animeDetail);
         when(animeService.findAllAnime()).thenReturn(animeList);
 
         mockMvc.perform(get("/api/v1/anime"))
@@ -79,16 +137,357 @@ class AnimeControllerTest {
         verify(animeService, times(1)).findAllAnime();
     }
 
+    @Test
+    @WithMockUser
+    void getAllAnime_shouldReturnNotModified_whenETagMatches() throws Exception {
+        when(animeService.findAllAnime()).thenReturn(List.of(animeDetail));
+
+        String etag = mockMvc.perform(get("/api/v1/anime"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/anime").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeById_shouldReturnGzip_whenAccepted() throws Exception {
+        AnimeDetailDTO longAnime = AnimeDetailDTO.builder()
+                .id(new ObjectId())
+                .imdbId("tt123123")
+                .title("Test Anime")
+                .backdrops(Collections.nCopies(20, "https://image.tmdb.org/t/p/original/backdrop.jpg"))
+                .build();
+        when(animeService.findAnimeDetail("tt123123")).thenReturn(longAnime);
+
+        byte[] body = mockMvc.perform(get("/api/v1/anime/tt123123").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(json).isEqualTo(objectMapper.writeValueAsString(longAnime));
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeById_shouldTagGzipBodySeparately_andAcceptEitherTag() throws Exception {
+        AnimeDetailDTO longAnime = AnimeDetailDTO.builder()
+                .id(new ObjectId())
+                .imdbId("tt123123")
+                .title("Test Anime")
+                .backdrops(Collections.nCopies(20, "https://image.tmdb.org/t/p/original/backdrop.jpg"))
+                .build();
+        when(animeService.findAnimeDetail("tt123123")).thenReturn(longAnime);
+
+        String identityTag = mockMvc.perform(get("/api/v1/anime/tt123123"))
+                .andReturn().getResponse().getHeader("ETag");
+        String gzipTag = mockMvc.perform(get("/api/v1/anime/tt123123").header("Accept-Encoding", "gzip"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertThat(gzipTag).isNotEqualTo(identityTag).endsWith("-gz\"");
+        mockMvc.perform(get("/api/v1/anime/tt123123").header("If-None-Match", gzipTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", identityTag));
+        mockMvc.perform(get("/api/v1/anime/tt123123").header("If-None-Match", identityTag).header("Accept-Encoding", "gzip"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", gzipTag));
+    }
+
+    @Test
+    void searchAnime_shouldReturnMatches() throws Exception {
+        AnimeSummaryDTO summary = AnimeSummaryDTO.builder().imdbId("tt123123").title("Test Anime").build();
+        when(searchIndex.search("test", List.of("Action", "Drama"), true, 5)).thenReturn(List.of(summary));
+
+        mockMvc.perform(get("/api/v1/anime/search")
+                        .param("q", "test")
+                        .param("genre", "Action", "Drama")
+                        .param("match", "any")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(summary))));
+    }
+
+    @Test
+    void getGenreFacets_shouldReturnResultsAndCounts() throws Exception {
+        AnimeSummaryDTO summary = AnimeSummaryDTO.builder().imdbId("tt123123").title("Test Anime").build();
+        GenreFacetsDTO facets = new GenreFacetsDTO(List.of(summary), 1, Map.of("Drama", 1));
+        when(searchIndex.facets(List.of("Action"), 20)).thenReturn(facets);
+
+        mockMvc.perform(get("/api/v1/anime/facets").param("genre", "Action"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(facets)));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void importAnime_shouldStreamBodyToImportService() throws Exception {
+        ImportReportDTO report = ImportReportDTO.builder().processed(1).inserted(1).completed(true).errors(List.of()).build();
+        when(importService.importAnime(any())).thenReturn(report);
+
+        mockMvc.perform(post("/api/v1/anime/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"imdbId\": \"tt1\", \"title\": \"One\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(report)));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void importAnime_shouldBeForbiddenForUsers() throws Exception {
+        mockMvc.perform(post("/api/v1/anime/import").content("[]"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(importService);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void exportAnime_shouldStreamGzippedNdjson() throws Exception {
+        when(exportService.exportAnime(any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"imdbId\": \"tt1\"}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        byte[] body = mockMvc.perform(get("/api/v1/anime/export").header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"imdbId\": \"tt1\"}\n");
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void exportAnime_shouldBeForbiddenForUsers() throws Exception {
+        mockMvc.perform(get("/api/v1/anime/export"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeBatch_shouldReturnItemsForAuthenticatedUser() throws Exception {
+        List<AnimeBatchItemDTO> items = List.of(
+                new AnimeBatchItemDTO("tt123123", true, animeDetail),
+                new AnimeBatchItemDTO("tt000", false, null));
+        when(animeService.findAnimeBatch(List.of("tt123123", "tt000"))).thenReturn(items);
+
+        mockMvc.perform(post("/api/v1/anime/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"imdbIds\": [\"tt123123\", \"tt000\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(items)));
+    }
+
+    @Test
+    void getAnimeBatch_shouldRequireAuthentication() throws Exception {
+        mockMvc.perform(post("/api/v1/anime/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"imdbIds\": [\"tt123123\"]}"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(animeService);
+    }
+
+    @Test
+    void getTrendingAnime_shouldReturnTopAnimeWithScores() throws Exception {
+        when(trendingService.top(2)).thenReturn(List.of(
+                new TrendingService.TrendingScore("tt123123", 5.0),
+                new TrendingService.TrendingScore("tt-deleted", 1.0)));
+        when(animeService.findAnimeBatch(List.of("tt123123", "tt-deleted"))).thenReturn(List.of(
+                new AnimeBatchItemDTO("tt123123", true, animeDetail),
+                new AnimeBatchItemDTO("tt-deleted", false, null)));
+
+        mockMvc.perform(get("/api/v1/anime/trending").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(
+                        List.of(new TrendingAnimeDTO(animeDetail, 5.0)))));
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeFull_shouldReturnAnimeWithReviewsAndStats() throws Exception {
+        AnimeFullDTO full = AnimeFullDTO.builder()
+                .anime(animeDetail)
+                .reviews(List.of())
+                .reviewStats(new ReviewStatsDTO(0, null, null))
+                .build();
+        when(animeService.findAnimeFull("tt123123")).thenReturn(full);
+
+        mockMvc.perform(get("/api/v1/anime/tt123123/full"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(full)));
+    }
+
+    @Test
+    void getAnimeFull_shouldRequireAuthentication() throws Exception {
+        mockMvc.perform(get("/api/v1/anime/tt123123/full"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(animeService);
+    }
+
+    @Test
+    @WithMockUser
+    void getSimilarAnime_shouldReturnPrecomputedNeighbours() throws Exception {
+        List<SimilarAnimeDTO> similar = List.of(new SimilarAnimeDTO("tt999", "Other Anime", 0.9));
+        when(similarAnimeIndex.findSimilar("tt123123")).thenReturn(similar);
+
+        mockMvc.perform(get("/api/v1/anime/tt123123/similar"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(similar)));
+    }
+
+    @Test
+    @WithMockUser
+    void getSimilarAnime_shouldReturnNotFoundForUnknownAnime() throws Exception {
+        when(similarAnimeIndex.findSimilar("tt000")).thenThrow(new AnimeNotFoundException());
+
+        mockMvc.perform(get("/api/v1/anime/tt000/similar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void suggestTitles_shouldReturnSuggestionsWithoutAuthentication() throws Exception {
+        List<AnimeSuggestionDTO> suggestions = List.of(new AnimeSuggestionDTO("tt123123", "Test Anime"));
+        when(titleSuggester.suggest("tes", 10)).thenReturn(suggestions);
+
+        mockMvc.perform(get("/api/v1/anime/suggest").param("prefix", "tes"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(suggestions)));
+
+        verifyNoInteractions(animeService);
+    }
+
+    @Test
+    void getAnimePage_shouldReturnPageOfSummaries() throws Exception {
+        AnimeSummaryDTO summary = AnimeSummaryDTO.builder()
+                .id(anime.getId())
+                .imdbId(anime.getImdbId())
+                .title(anime.getTitle())
+                .build();
+        CursorPageDTO<AnimeSummaryDTO> page = new CursorPageDTO<>(List.of(summary), "next");
+        when(animeService.findAnimePage(new CatalogFilter(), "abc", 1)).thenReturn(page);
+
+        mockMvc.perform(get("/api/v1/anime").param("size", "1").param("cursor", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+
+        verify(animeService, times(1)).findAnimePage(new CatalogFilter(), "abc", 1);
+        verify(animeService, never()).findAllAnime();
+    }
+
+    @Test
+    void getAnimePage_shouldPassFiltersAndSort() throws Exception {
+        CatalogFilter filter = CatalogFilter.builder()
+                .genres(List.of("Action", "Drama"))
+                .releasedFrom("2010-01-01")
+                .releasedTo("2019-12-31")
+                .titlePrefix("At")
+                .sort(CatalogSort.REVIEW_COUNT)
+                .descending(false)
+                .build();
+        when(animeService.findAnimePage(filter, null, 20)).thenReturn(new CursorPageDTO<>(List.of(), null));
+
+        mockMvc.perform(get("/api/v1/anime").param("size", "20")
+                        .param("genre", "Action", "Drama")
+                        .param("releasedFrom", "2010-01-01")
+                        .param("releasedTo", "2019-12-31")
+                        .param("titlePrefix", "At")
+                        .param("sort", "reviewCount")
+                        .param("order", "asc"))
+                .andExpect(status().isOk());
+
+        verify(animeService, times(1)).findAnimePage(filter, null, 20);
+    }
+
+    @Test
+    void getAnimePage_shouldReturnBadRequest_forUnknownSortOrOrder() throws Exception {
+        mockMvc.perform(get("/api/v1/anime").param("size", "20").param("sort", "poster"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/anime").param("size", "20").param("order", "up"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(animeService);
+    }
+
     @Test
     @WithMockUser
     void getAnimeById_shouldReturnAnime() throws Exception {
-        when(animeService.findAnimeByImdbId("tt123123")).thenReturn(Optional.of(anime));
+        when(animeService.findAnimeDetail("tt123123")).thenReturn(animeDetail);
 
         mockMvc.perform(get("/api/v1/anime/tt123123"))
                 .andExpect(status().isOk())
-                .andExpect(content().json(objectMapper.writeValueAsString(Optional.of(anime))));
+                .andExpect(content().json(objectMapper.writeValueAsString(animeDetail)));
+
+        verify(animeService, times(1)).findAnimeDetail("tt123123");
+        verify(trendingService).recordView("tt123123");
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeById_shouldUseDocumentIdAndVersionAsETag() throws Exception {
+        animeDetail.setVersion(7L);
+        String etag = "\"" + animeDetail.getId().toHexString() + "-7\"";
+        when(animeService.findAnimeDetail("tt123123")).thenReturn(animeDetail);
+
+        mockMvc.perform(get("/api/v1/anime/tt123123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag));
+        mockMvc.perform(get("/api/v1/anime/tt123123").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/v1/anime/tt123123").header("If-None-Match", "\"" + new ObjectId().toHexString() + "-7\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeById_shouldAnswerRevalidation_withoutSerializingOrCountingView() throws Exception {
+        AnimeDetailDTO anime = mock(AnimeDetailDTO.class);
+        ObjectId id = new ObjectId();
+        when(anime.getId()).thenReturn(id);
+        when(anime.getVersion()).thenReturn(3L);
+        when(animeService.findAnimeDetail("tt123123")).thenReturn(anime);
+
+        mockMvc.perform(get("/api/v1/anime/tt123123").header("If-None-Match", "\"" + id.toHexString() + "-3\"")
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"" + id.toHexString() + "-3-gz\""));
+
+        //only the tag was read, the body was never rendered
+        verify(anime, never()).getTitle();
+        verifyNoInteractions(trendingService);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getCacheStats_shouldReturnStats() throws Exception {
+        CacheStatsDTO stats = CacheStatsDTO.builder().hits(3).misses(1).entries(1).build();
+        when(animeService.getCacheStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/api/v1/anime/cache-stats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(stats)));
+    }
+
+    @Test
+    @WithMockUser
+    void getCacheStats_shouldReturnForbidden_whenNotAdmin() throws Exception {
+        mockMvc.perform(get("/api/v1/anime/cache-stats"))
+                .andExpect(status().isForbidden());
 
-        verify(animeService, times(1)).findAnimeByImdbId("tt123123");
+        verify(animeService, never()).getCacheStats();
     }
 
     @Test
@@ -108,13 +507,14 @@ class AnimeControllerTest {
     @Test
     @WithMockUser(roles = "ADMIN")
     void updateAnime_shouldReturnStatusOk() throws Exception {
-        Anime updatedAnime = Anime.builder()
+        AnimeDetailDTO updatedAnime = AnimeDetailDTO.builder()
+                .id(new ObjectId())
                 .imdbId("tt123123")
                 .title("Updated Anime")
                 .releaseDate("06.06.2020")
                 .genres(List.of("Action"))
                 .build();
-        when(animeService.updateAnime(eq("tt123123"), any(Anime.class))).thenReturn(updatedAnime);
+        when(animeService.updateAnime(eq("tt123123"), any(Anime.class), isNull())).thenReturn(updatedAnime);
 
         mockMvc.perform(put("/api/v1/anime/tt123123")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -122,18 +522,109 @@ class AnimeControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(objectMapper.writeValueAsString(updatedAnime)));
 
-        verify(animeService, times(1)).updateAnime(eq("tt123123"), any(Anime.class));
+        verify(animeService, times(1)).updateAnime(eq("tt123123"), any(Anime.class), isNull());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void patchAnime_shouldReturnPatchedAnime() throws Exception {
+        AnimeDetailDTO patched = AnimeDetailDTO.builder().id(new ObjectId()).imdbId("tt123123").title("Renamed").build();
+        when(animeService.patchAnime("tt123123", Map.of("title", "Renamed"), null)).thenReturn(patched);
+
+        mockMvc.perform(patch("/api/v1/anime/tt123123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Renamed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(patched)));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void patchAnime_shouldReturnBadRequest_whenFieldNotPatchable() throws Exception {
+        when(animeService.patchAnime(eq("tt123123"), any(), any())).thenThrow(new IllegalArgumentException("Field 'reviewIds' cannot be updated."));
+
+        mockMvc.perform(patch("/api/v1/anime/tt123123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"reviewIds\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void patchAnime_shouldReturnForbidden_whenNotAdmin() throws Exception {
+        mockMvc.perform(patch("/api/v1/anime/tt123123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Renamed\"}"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(animeService);
     }
 
     @Test
     @WithMockUser(roles = "ADMIN")
     void deleteAnime_shouldReturnNoContent() throws Exception {
-        doNothing().when(animeService).deleteAnime("tt123123");
+        doNothing().when(animeService).deleteAnime("tt123123", null);
 
         mockMvc.perform(delete("/api/v1/anime/tt123123"))
                 .andExpect(status().isNoContent());
 
-        verify(animeService, times(1)).deleteAnime("tt123123");
+        verify(animeService, times(1)).deleteAnime("tt123123", null);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void updateAnime_shouldPassIfMatchVersionAndReturnNewETag() throws Exception {
+        ObjectId id = animeDetail.getId();
+        AnimeDetailDTO updatedAnime = AnimeDetailDTO.builder().id(id).imdbId("tt123123").title("Updated").version(4L).build();
+        when(animeService.updateAnime(eq("tt123123"), any(Anime.class), eq(new AnimeVersion(id, 3)))).thenReturn(updatedAnime);
+
+        mockMvc.perform(put("/api/v1/anime/tt123123")
+                        .header("If-Match", "\"" + id.toHexString() + "-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedAnime)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + id.toHexString() + "-4\""));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void patchAnime_shouldReturnPreconditionFailed_whenVersionIsStale() throws Exception {
+        ObjectId id = animeDetail.getId();
+        when(animeService.patchAnime("tt123123", Map.of("title", "Renamed"), new AnimeVersion(id, 3)))
+                .thenThrow(new PreconditionFailedException());
+
+        mockMvc.perform(patch("/api/v1/anime/tt123123")
+                        .header("If-Match", "\"" + id.toHexString() + "-3-gz\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Renamed\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void deleteAnime_shouldReturnPreconditionFailed_whenIfMatchIsNotAVersionTag() throws Exception {
+        doThrow(new PreconditionFailedException()).when(animeService).deleteAnime("tt123123", new AnimeVersion(null, -1));
+
+        mockMvc.perform(delete("/api/v1/anime/tt123123").header("If-Match", "W/\"3\""))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void deleteAnime_shouldReturnNotFound_whenIfMatchIsMalformedAndAnimeIsMissing() throws Exception {
+        doThrow(new AnimeNotFoundException()).when(animeService).deleteAnime("tt404", new AnimeVersion(null, -1));
+
+        mockMvc.perform(delete("/api/v1/anime/tt404").header("If-Match", "\"3\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void deleteAnime_shouldTreatWildcardAsUnconditional() throws Exception {
+        mockMvc.perform(delete("/api/v1/anime/tt123123").header("If-Match", "*"))
+                .andExpect(status().isNoContent());
+
+        verify(animeService).deleteAnime("tt123123", null);
     }
 
     @Test
@@ -155,7 +646,7 @@ class AnimeControllerTest {
                         .content(objectMapper.writeValueAsString(anime)))
                 .andExpect(status().isForbidden());
 
-        verify(animeService, never()).updateAnime(anyString(), any(Anime.class));
+        verify(animeService, never()).updateAnime(anyString(), any(Anime.class), any());
     }
 
     @Test
@@ -164,6 +655,6 @@ class AnimeControllerTest {
         mockMvc.perform(delete("/api/v1/anime/tt123123"))
                 .andExpect(status().isForbidden());
 
-        verify(animeService, never()).deleteAnime(anyString());
+        verify(animeService, never()).deleteAnime(anyString(), any());
     }
 }
@@ -3,15 +3,25 @@ package com.marko.anime.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marko.anime.configuration.TestSecurityConfig;
+import com.marko.anime.dtos.AnimeWithReviewsDTO;
+import com.marko.anime.dtos.CursorPageDTO;
+import com.marko.anime.dtos.ModerationStatsDTO;
+import com.marko.anime.dtos.ProfanityWordListDTO;
 import com.marko.anime.dtos.ReviewStatus;
+import com.marko.anime.dtos.ReviewStatusDTO;
 import com.marko.anime.dtos.ReviewSubmissionResult;
+import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.exceptions.ReviewNotFoundException;
 import com.marko.anime.models.Anime;
 import com.marko.anime.models.Review;
-import com.marko.anime.repositories.AnimeRepository;
-import com.marko.anime.repositories.ReviewRepository;
 import com.marko.anime.repositories.TokenRepository;
+import com.marko.anime.services.AnimeService;
+import com.marko.anime.services.ExportService;
 import com.marko.anime.services.JwtService;
+import com.marko.anime.services.ProfanityMatcher;
+import com.marko.anime.services.ReviewModerationService;
 import com.marko.anime.services.ReviewService;
+import com.marko.anime.services.ReviewStatusNotifier;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,16 +35,23 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -52,10 +69,16 @@ class ReviewControllerTest {
     private TokenRepository tokenRepository;
 
     @MockBean
-    private AnimeRepository animeRepository;
+    private AnimeService animeService;
 
     @MockBean
-    private ReviewRepository reviewRepository;
+    private ExportService exportService;
+
+    @MockBean
+    private ReviewModerationService moderationService;
+
+    @MockBean
+    private ProfanityMatcher profanityMatcher;
 
     @Autowired
     private MockMvc mockMvc;
@@ -84,7 +107,6 @@ class ReviewControllerTest {
                 .poster("poster.img")
                 .genres(List.of("Genre"))
                 .backdrops(List.of("backdrop.img"))
-                .reviewIds(List.of(review))
                 .build();
     }
     @Test
@@ -109,6 +131,99 @@ class ReviewControllerTest {
         verify(reviewService, times(1)).submitReview(review.getBody(), anime.getImdbId(), review.getUserId());
     }
 
+    @Test
+    @WithMockUser
+    void createReview_shouldReturnAcceptedWithStatusLocation_whenPending() throws Exception {
+        String reviewId = new ObjectId().toHexString();
+        when(reviewService.submitReview(anyString(), anyString(), anyString()))
+                .thenReturn(new ReviewSubmissionResult(ReviewStatus.PENDING, "Review submitted for moderation.", reviewId));
+
+        mockMvc.perform(post("/api/v1/anime-reviews")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"reviewBody\": \"Great anime!\", \"imdbId\": \"tt1234567\", \"userId\": \"user123\" }"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/anime-reviews/status/" + reviewId))
+                .andExpect(content().string("Review submitted for moderation."));
+    }
+
+    @Test
+    @WithMockUser
+    void getReviewStatus_shouldReturnStatusFromReviewService() throws Exception {
+        ReviewStatusDTO reviewStatus = new ReviewStatusDTO(review.getId().toHexString(), ReviewStatus.REJECTED, "Review rejected due to profanity!");
+        when(reviewService.findReviewStatus(review.getId().toHexString())).thenReturn(reviewStatus);
+
+        mockMvc.perform(get("/api/v1/anime-reviews/status/{reviewId}", review.getId().toHexString()))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(reviewStatus)));
+    }
+
+    @Test
+    @WithMockUser
+    void getReviewStatus_shouldReturnNotFound_whenReviewUnknown() throws Exception {
+        when(reviewService.findReviewStatus("missing")).thenThrow(new ReviewNotFoundException());
+
+        mockMvc.perform(get("/api/v1/anime-reviews/status/{reviewId}", "missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser
+    void watchReviewStatus_shouldStreamOutcomeAsServerSentEvent() throws Exception {
+        ReviewStatusDTO reviewStatus = new ReviewStatusDTO(review.getId().toHexString(), ReviewStatus.APPROVED, "Review published!");
+        when(reviewService.watchReviewStatus(review.getId().toHexString()))
+                .thenReturn(new ReviewStatusNotifier(Duration.ofSeconds(5)).completed(reviewStatus));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/anime-reviews/status/{reviewId}/events", review.getId().toHexString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:status")))
+                .andExpect(content().string(containsString("\"status\":\"APPROVED\"")));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getModerationStats_shouldReturnStats_forAdmin() throws Exception {
+        ModerationStatsDTO stats = ModerationStatsDTO.builder().queueDepth(3).queueCapacity(1000).workers(4).approved(7).build();
+        when(moderationService.stats()).thenReturn(stats);
+
+        mockMvc.perform(get("/api/v1/anime-reviews/moderation-stats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(stats)));
+    }
+
+    @Test
+    @WithMockUser
+    void getModerationStats_shouldBeForbidden_forUser() throws Exception {
+        mockMvc.perform(get("/api/v1/anime-reviews/moderation-stats"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(moderationService);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void reloadProfanityWords_shouldRebuildMatcher_forAdmin() throws Exception {
+        ProfanityWordListDTO reloaded = ProfanityWordListDTO.builder().words(52).states(260).build();
+        when(profanityMatcher.reload()).thenReturn(reloaded);
+
+        mockMvc.perform(post("/api/v1/anime-reviews/profanity-words/reload"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(reloaded)));
+    }
+
+    @Test
+    @WithMockUser
+    void reloadProfanityWords_shouldBeForbidden_forUser() throws Exception {
+        mockMvc.perform(post("/api/v1/anime-reviews/profanity-words/reload"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(profanityMatcher);
+    }
+
     @Test
     @WithMockUser
     void createReview_shouldReturnBadRequest_whenRejected() throws Exception {
@@ -147,44 +262,79 @@ class ReviewControllerTest {
     @WithMockUser
     void getAnimeReviews_shouldReturnStatusOk_whenSuccessful() throws Exception {
         List<Review> reviews = List.of(review);
-        when(animeRepository.findAnimeByImdbId(anime.getImdbId())).thenReturn(Optional.of(anime));
-        when(reviewRepository.getById(review.getId())).thenReturn(Optional.of(review));
+        AnimeWithReviewsDTO withReviews = AnimeWithReviewsDTO.builder()
+                .imdbId(anime.getImdbId())
+                .reviews(reviews)
+                .build();
+        when(animeService.findAnimeWithReviews(anime.getImdbId())).thenReturn(withReviews);
 
         mockMvc.perform(get("/api/v1/anime-reviews/{imdbId}", anime.getImdbId()))
                 .andExpect(status().isOk())
                 .andExpect(content().json(objectMapper.writeValueAsString(reviews)))
                 .andDo(print());
 
-        verify(animeRepository, times(1)).findAnimeByImdbId(anime.getImdbId());
-        verify(reviewRepository, times(1)).getById(review.getId());
+        verify(animeService, times(1)).findAnimeWithReviews(anime.getImdbId());
+    }
+
+    @Test
+    @WithMockUser
+    void getAnimeReviewPage_shouldReturnPageFromReviewService() throws Exception {
+        CursorPageDTO<Review> page = new CursorPageDTO<>(List.of(review), "next");
+        when(reviewService.findReviewPage(anime.getImdbId(), "abc", 1)).thenReturn(page);
+
+        mockMvc.perform(get("/api/v1/anime-reviews/{imdbId}", anime.getImdbId()).param("size", "1").param("cursor", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+
+        verify(animeService, never()).findAnimeWithReviews(anyString());
     }
 
     @Test
     @WithMockUser
     void getAnimeReviews_shouldReturnNotFound_whenAnimeNotFound() throws Exception {
-        when(animeRepository.findAnimeByImdbId(anime.getImdbId())).thenReturn(Optional.empty());
+        when(animeService.findAnimeWithReviews(anime.getImdbId())).thenThrow(new AnimeNotFoundException());
 
         mockMvc.perform(get("/api/v1/anime-reviews/{imdbId}", anime.getImdbId()))
                 .andExpect(status().isNotFound());
 
-        verify(animeRepository, times(1)).findAnimeByImdbId(anime.getImdbId());
+        verify(animeService, times(1)).findAnimeWithReviews(anime.getImdbId());
     }
 
     @Test
     @WithMockUser
     void getAnimeReviews_shouldReturnInternalServerError_whenExceptionOccurs() throws Exception {
-        when(animeRepository.findAnimeByImdbId(anime.getImdbId())).thenThrow(new DataAccessException("Database error") {
+        when(animeService.findAnimeWithReviews(anime.getImdbId())).thenThrow(new DataAccessException("Database error") {
         });
 
         mockMvc.perform(get("/api/v1/anime-reviews/{imdbId}", anime.getImdbId()))
                 .andExpect(status().isInternalServerError())
                 .andDo(print());
 
-        verify(animeRepository, times(1)).findAnimeByImdbId(anime.getImdbId());
-        verify(reviewRepository, times(0)).getById(any(ObjectId.class));
+        verify(animeService, times(1)).findAnimeWithReviews(anime.getImdbId());
     }
 
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void exportReviews_shouldStreamNdjson() throws Exception {
+        when(exportService.exportReviews(any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"body\": \"Great\"}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
 
+        mockMvc.perform(get("/api/v1/anime-reviews/export"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"reviews.ndjson\""))
+                .andExpect(content().string("{\"body\": \"Great\"}\n"));
 
-}
+        verify(animeService, never()).findAnimeWithReviews(any());
+    }
+
+    @Test
+    @WithMockUser
+    void exportReviews_shouldBeForbiddenForUsers() throws Exception {
+        mockMvc.perform(get("/api/v1/anime-reviews/export"))
+                .andExpect(status().isForbidden());
 
+        verifyNoInteractions(exportService);
+    }
+}
@@ -0,0 +1,81 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeDetailDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnimeCatalogCacheTest {
+
+    private AnimeDetailDTO anime(String imdbId) {
+        return AnimeDetailDTO.builder()
+                .imdbId(imdbId)
+                .title("Title " + imdbId)
+                .genres(List.of("Action"))
+                .build();
+    }
+
+    @Test
+    void getDetail_shouldNotCacheMissingAnime() {
+        AnimeCatalogCache cache = new AnimeCatalogCache(1 << 20, Duration.ofMinutes(10));
+
+        assertThat(cache.getDetail("tt1", () -> null)).isNull();
+        assertThat(cache.getDetail("tt1", () -> anime("tt1"))).isNotNull();
+        assertThat(cache.stats().getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void getDetails_shouldLoadOnlyMissesInOneCall() {
+        AnimeCatalogCache cache = new AnimeCatalogCache(1 << 20, Duration.ofMinutes(10));
+        AnimeDetailDTO cached = anime("tt1");
+        cache.getDetail("tt1", () -> cached);
+        List<Set<String>> loads = new ArrayList<>();
+
+        Map<String, AnimeDetailDTO> found = cache.getDetails(List.of("tt1", "tt2", "tt3"), missing -> {
+            loads.add(Set.copyOf(missing));
+            return Map.of("tt2", anime("tt2"));
+        });
+
+        assertThat(loads).containsExactly(Set.of("tt2", "tt3"));
+        assertThat(found).containsOnlyKeys("tt1", "tt2");
+        assertThat(found.get("tt1")).isSameAs(cached);
+        assertThat(cache.getDetail("tt2", () -> null)).isNotNull();
+        assertThat(cache.getDetail("tt3", () -> null)).isNull();
+    }
+
+    @Test
+    void invalidate_shouldForceReload() {
+        AnimeCatalogCache cache = new AnimeCatalogCache(1 << 20, Duration.ofMinutes(10));
+        cache.getDetail("tt1", () -> anime("tt1"));
+        cache.getCatalog(() -> List.of(anime("tt1")));
+
+        cache.invalidate("tt1");
+        cache.invalidateCatalog();
+
+        AnimeDetailDTO reloaded = anime("tt1");
+        assertThat(cache.getDetail("tt1", () -> reloaded)).isSameAs(reloaded);
+        assertThat(cache.getCatalog(List::of)).isEmpty();
+    }
+
+    @Test
+    void stats_shouldStayWithinByteBudget() {
+        long budget = 4 * AnimeCatalogCache.estimateBytes(anime("tt0"));
+        AnimeCatalogCache cache = new AnimeCatalogCache(budget, Duration.ofMinutes(10));
+
+        for (int i = 0; i < 50; i++) {
+            String imdbId = "tt" + i;
+            cache.getDetail(imdbId, () -> anime(imdbId));
+        }
+        cache.getDetail("tt49", () -> anime("tt49"));
+
+        assertThat(cache.stats().getWeightBytes()).isLessThanOrEqualTo(budget);
+        assertThat(cache.stats().getEvictions()).isPositive();
+        assertThat(cache.stats().getMaxWeightBytes()).isEqualTo(budget);
+    }
+}
@@ -0,0 +1,161 @@
+package com.marko.anime.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marko.anime.dtos.ImportReportDTO;
+import com.marko.anime.models.Anime;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnimeImportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private AnimeService animeService;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private AnimeImportService importService;
+
+    @BeforeEach
+    void init() {
+        importService = new AnimeImportService(mongoTemplate, animeService, new ObjectMapper(), 2);
+    }
+
+    private InputStream json(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static BulkWriteResult result(int inserted, int matched) {
+        List<BulkWriteUpsert> upserts = IntStream.range(0, inserted)
+                .mapToObj(i -> new BulkWriteUpsert(i, new BsonObjectId()))
+                .toList();
+        return BulkWriteResult.acknowledged(0, matched, 0, matched, upserts, List.of());
+    }
+
+    @Test
+    void importAnime_shouldUpsertJsonArrayInBatches() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Anime.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(result(1, 1), result(1, 0));
+
+        ImportReportDTO report = importService.importAnime(json("""
+                [{"imdbId": "tt1", "title": "One", "genres": ["Action"], "reviewIds": []},
+                 {"imdbId": "tt2", "title": "Two"},
+                 {"imdbId": "tt3", "title": "Three", "unknown": true}]
+                """));
+
+        assertThat(report.isCompleted()).isTrue();
+        assertThat(report.getProcessed()).isEqualTo(3);
+        assertThat(report.getInserted()).isEqualTo(2);
+        assertThat(report.getUpdated()).isEqualTo(1);
+        assertThat(report.getFailed()).isZero();
+        verify(bulkOperations, times(3)).upsert(any(Query.class), any(Update.class));
+        verify(bulkOperations, times(2)).execute();
+        verify(animeService).catalogReloaded();
+    }
+
+    @Test
+    void importAnime_shouldReadNdjsonAndReportInvalidRecords() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Anime.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(result(1, 0));
+
+        ImportReportDTO report = importService.importAnime(json("""
+                {"imdbId": "tt1", "title": "One"}
+                {"title": "No id"}
+                {"imdbId": "tt3", "title": "Bad genres", "genres": {"a": 1}}
+                """));
+
+        assertThat(report.getProcessed()).isEqualTo(3);
+        assertThat(report.getInserted()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(2);
+        assertThat(report.getErrors()).extracting("record").containsExactly(2L, 3L);
+        assertThat(report.getErrors().get(1).getImdbId()).isEqualTo("tt3");
+    }
+
+    @Test
+    void importAnime_shouldKeepLastRecord_whenImdbIdRepeatsWithinBatch() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Anime.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(result(1, 0));
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+
+        importService.importAnime(json("""
+                {"imdbId": "tt1", "title": "Old"}
+                {"imdbId": "tt1", "title": "New"}
+                """));
+
+        verify(bulkOperations).upsert(any(Query.class), update.capture());
+        assertThat(update.getValue().getUpdateObject().get("$set", org.bson.Document.class).get("title")).isEqualTo("New");
+        assertThat(update.getValue().getUpdateObject().get("$setOnInsert", org.bson.Document.class)).containsOnlyKeys("reviewCount");
+    }
+
+    @Test
+    void importAnime_shouldReportWriteErrorsPerRecord() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Anime.class)).thenReturn(bulkOperations);
+        BulkWriteError error = new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1);
+        when(bulkOperations.execute()).thenThrow(
+                new BulkOperationException("write failed", new MongoBulkWriteException(
+                        result(1, 0), List.of(error), null, new ServerAddress(), Set.of())));
+
+        ImportReportDTO report = importService.importAnime(json("""
+                [{"imdbId": "tt1", "title": "One"}, {"imdbId": "tt2", "title": "Two"}]
+                """));
+
+        assertThat(report.getInserted()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getErrors().get(0).getRecord()).isEqualTo(2);
+        assertThat(report.getErrors().get(0).getImdbId()).isEqualTo("tt2");
+    }
+
+    @Test
+    void importAnime_shouldStopAndKeepWrittenRecords_whenInputIsMalformed() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Anime.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(result(1, 0));
+
+        ImportReportDTO report = importService.importAnime(json("""
+                [{"imdbId": "tt1", "title": "One"}, {"imdbId": "tt2", "title": """));
+
+        assertThat(report.isCompleted()).isFalse();
+        assertThat(report.getInserted()).isEqualTo(1);
+        assertThat(report.getErrors()).extracting("record").containsExactly(2L);
+        verify(animeService).catalogReloaded();
+    }
+
+    @Test
+    void importAnime_shouldNotTouchCatalog_whenNothingWasWritten() throws Exception {
+        ImportReportDTO report = importService.importAnime(json("[]"));
+
+        assertThat(report.getProcessed()).isZero();
+        verifyNoInteractions(mongoTemplate);
+        verify(animeService, never()).catalogReloaded();
+    }
+}
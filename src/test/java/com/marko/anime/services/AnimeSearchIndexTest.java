@@ -0,0 +1,150 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.GenreFacetsDTO;
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.models.Anime;
+import com.marko.anime.repositories.AnimeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnimeSearchIndexTest {
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    @InjectMocks
+    private AnimeSearchIndex searchIndex;
+
+    @BeforeEach
+    void init() {
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(List.of(
+                summary("tt1", "Attack on Titan", "Action", "Drama"),
+                summary("tt2", "Jujutsu Kaisen", "Action", "Fantasy"),
+                summary("tt3", "Pokémon", "Adventure", "Fantasy")));
+        searchIndex.rebuild();
+    }
+
+    private AnimeSummaryDTO summary(String imdbId, String title, String... genres) {
+        return AnimeSummaryDTO.builder().imdbId(imdbId).title(title).genres(List.of(genres)).build();
+    }
+
+    private List<String> ids(List<AnimeSummaryDTO> results) {
+        return results.stream().map(AnimeSummaryDTO::getImdbId).toList();
+    }
+
+    @Test
+    void search_shouldMatchTitleTokensAndPrefix() {
+        assertThat(ids(searchIndex.search("titan", null, false, 10))).containsExactly("tt1");
+        assertThat(ids(searchIndex.search("attack ti", null, false, 10))).containsExactly("tt1");
+        assertThat(ids(searchIndex.search("pokemon", null, false, 10))).containsExactly("tt3");
+    }
+
+    @Test
+    void search_shouldCombineGenresWithAndOrOr() {
+        assertThat(ids(searchIndex.search(null, List.of("Action", "Fantasy"), false, 10))).containsExactly("tt2");
+        assertThat(ids(searchIndex.search(null, List.of("drama", "adventure"), true, 10))).containsExactly("tt1", "tt3");
+        assertThat(ids(searchIndex.search("kaisen", List.of("Drama"), false, 10))).isEmpty();
+    }
+
+    @Test
+    void search_shouldOrderByTitleAndApplyLimit() {
+        assertThat(ids(searchIndex.search(null, List.of("Action", "Fantasy"), true, 2))).containsExactly("tt1", "tt2");
+    }
+
+    @Test
+    void search_shouldThrowException_whenNoCriteria() {
+        assertThrows(IllegalArgumentException.class, () -> searchIndex.search(" ", List.of(), false, 10));
+    }
+
+    @Test
+    void onAnimeChanged_shouldUpdateIndexIncrementally() {
+        Anime renamed = Anime.builder().imdbId("tt1").title("Shingeki no Kyojin").genres(List.of("Action")).build();
+        searchIndex.onAnimeChanged(new AnimeChangedEvent("tt1", renamed));
+
+        assertThat(searchIndex.search("titan", null, false, 10)).isEmpty();
+        assertThat(ids(searchIndex.search("kyojin", List.of("Action"), false, 10))).containsExactly("tt1");
+
+        searchIndex.onAnimeChanged(new AnimeChangedEvent("tt2", null));
+
+        assertThat(ids(searchIndex.search(null, List.of("Action"), false, 10))).containsExactly("tt1");
+        assertThat(searchIndex.size()).isEqualTo(2);
+
+        Anime created = Anime.builder().imdbId("tt4").title("Chainsaw Man").genres(List.of("Action")).build();
+        searchIndex.onAnimeChanged(new AnimeChangedEvent("tt4", created));
+
+        assertThat(ids(searchIndex.search(null, List.of("Action"), false, 10))).containsExactly("tt4", "tt1");
+    }
+
+    @Test
+    void facets_shouldReturnMatchesAndCountsForRemainingGenres() {
+        GenreFacetsDTO facets = searchIndex.facets(List.of("fantasy"), 10);
+
+        assertThat(ids(facets.getResults())).containsExactly("tt2", "tt3");
+        assertThat(facets.getTotal()).isEqualTo(2);
+        assertThat(facets.getFacets()).containsExactly(Map.entry("Action", 1), Map.entry("Adventure", 1));
+    }
+
+    @Test
+    void facets_shouldCoverWholeCatalog_whenNoGenreSelected() {
+        GenreFacetsDTO facets = searchIndex.facets(null, 1);
+
+        assertThat(ids(facets.getResults())).containsExactly("tt1");
+        assertThat(facets.getTotal()).isEqualTo(3);
+        assertThat(facets.getFacets()).containsExactly(
+                Map.entry("Action", 2), Map.entry("Fantasy", 2), Map.entry("Adventure", 1), Map.entry("Drama", 1));
+    }
+
+    @Test
+    void facets_shouldDropGenre_whenLastAnimeWithItIsDeleted() {
+        searchIndex.onAnimeChanged(new AnimeChangedEvent("tt1", null));
+
+        assertThat(searchIndex.facets(List.of("Drama"), 10).getTotal()).isZero();
+        assertThat(searchIndex.facets(null, 10).getFacets()).doesNotContainKey("Drama");
+    }
+
+    @Test
+    void search_shouldUnionEveryTokenUnderLastPrefix() {
+        searchIndex.onAnimeChanged(new AnimeChangedEvent("tt4", Anime.builder().imdbId("tt4").title("Tokyo Ghoul").build()));
+        searchIndex.onAnimeChanged(new AnimeChangedEvent("tt5", Anime.builder().imdbId("tt5").title("Toradora").build()));
+
+        assertThat(ids(searchIndex.search("to", null, false, 10))).containsExactly("tt4", "tt5");
+        assertThat(ids(searchIndex.search("t", null, false, 10))).containsExactly("tt1", "tt4", "tt5");
+    }
+
+    @Test
+    void rebuild_shouldKeepServingSearches_andReplayChangesMadeDuringLoad() {
+        Anime added = Anime.builder().imdbId("tt4").title("Tokyo Ghoul").genres(List.of("Horror")).build();
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenAnswer(invocation -> {
+            //the old index still answers while the catalog is loading
+            assertThat(ids(searchIndex.search("titan", null, false, 10))).containsExactly("tt1");
+            searchIndex.onAnimeChanged(new AnimeChangedEvent("tt4", added));
+            searchIndex.onAnimeChanged(new AnimeChangedEvent("tt2", null));
+            return List.of(summary("tt1", "Attack on Titan", "Action"), summary("tt2", "Jujutsu Kaisen", "Action"));
+        });
+
+        searchIndex.rebuild();
+
+        assertThat(ids(searchIndex.search("tokyo", List.of("Horror"), false, 10))).containsExactly("tt4");
+        assertThat(searchIndex.search("kaisen", null, false, 10)).isEmpty();
+        assertThat(searchIndex.size()).isEqualTo(2);
+    }
+
+    @Test
+    void union_andIntersect_shouldMergeSortedPostings() {
+        assertThat(AnimeSearchIndex.union(new int[]{1, 3, 5}, new int[]{2, 3, 6})).containsExactly(1, 2, 3, 5, 6);
+        assertThat(AnimeSearchIndex.intersect(new int[]{1, 3, 5}, new int[]{2, 3, 5})).containsExactly(3, 5);
+    }
+}
@@ -1,71 +1,454 @@
 package com.marko.anime.services;
 
+import com.marko.anime.dtos.AnimeBatchItemDTO;
+import com.marko.anime.dtos.AnimeDetailDTO;
+import com.marko.anime.dtos.AnimeFullDTO;
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.AnimeVersion;
+import com.marko.anime.dtos.AnimeWithReviewsDTO;
+import com.marko.anime.dtos.CatalogFilter;
+import com.marko.anime.dtos.CatalogSort;
+import com.marko.anime.dtos.CursorPageDTO;
+import com.marko.anime.events.AnimeChangedEvent;
 import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.exceptions.PreconditionFailedException;
 import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
 import com.marko.anime.repositories.AnimeRepository;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
-
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
 import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class AnimeServiceTest {
 
+    private static final ObjectId ANIME_ID = new ObjectId();
+
     @Mock
     private AnimeRepository animeRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TrendingService trendingService;
+
+    @Mock
+    private KnownAnimeIds knownAnimeIds;
+
+    @Mock
+    private ReviewCleanupService reviewCleanupService;
+
+    @Spy
+    private AnimeCatalogCache catalogCache = new AnimeCatalogCache(1 << 20, Duration.ofMinutes(10));
+
     @InjectMocks
     private AnimeService animeService;
 
     @Test
     void findAllAnime_shouldReturnListOfAnime() {
-        List<Anime> animeList = Collections.singletonList(Anime.builder().build());
-        when(animeRepository.findAll()).thenReturn(animeList);
+        List<AnimeDetailDTO> animeList = Collections.singletonList(AnimeDetailDTO.builder().build());
+        when(animeRepository.findAllBy(AnimeDetailDTO.class)).thenReturn(animeList);
 
         assertThat(animeList).isEqualTo(animeService.findAllAnime());
-        verify(animeRepository, times(1)).findAll();
+        verify(animeRepository, times(1)).findAllBy(AnimeDetailDTO.class);
+        verify(animeRepository, never()).findAll();
     }
 
     @Test
     void findAllAnime_shouldThrowException_whenDatabaseError() {
-        when(animeRepository.findAll()).thenThrow(new DataAccessException("Database error") {});
+        when(animeRepository.findAllBy(AnimeDetailDTO.class)).thenThrow(new DataAccessException("Database error") {});
 
         assertThrows(DataAccessException.class, () -> animeService.findAllAnime());
 
-        verify(animeRepository, times(1)).findAll();
+        verify(animeRepository, times(1)).findAllBy(AnimeDetailDTO.class);
+    }
+
+    @Test
+    void findAnimePage_shouldReturnNextCursor_whenMoreResultsExist() {
+        AnimeSummaryDTO first = AnimeSummaryDTO.builder().id(new ObjectId()).title("A").build();
+        AnimeSummaryDTO second = AnimeSummaryDTO.builder().id(new ObjectId()).title("B").build();
+        when(mongoTemplate.find(any(Query.class), eq(AnimeSummaryDTO.class), eq("anime")))
+                .thenReturn(List.of(first, second));
+
+        CursorPageDTO<AnimeSummaryDTO> page = animeService.findAnimePage(null, 1);
+
+        assertThat(page.getContent()).containsExactly(first);
+        KeysetCursor next = KeysetCursor.decode(page.getNextCursor());
+        assertThat(next.getId()).isEqualTo(first.getId());
+        assertThat(next.getValue()).isEqualTo("A");
+    }
+
+    @Test
+    void findAnimePage_shouldReturnNoCursor_onLastPage() {
+        AnimeSummaryDTO only = AnimeSummaryDTO.builder().id(new ObjectId()).title("A").build();
+        when(mongoTemplate.find(any(Query.class), eq(AnimeSummaryDTO.class), eq("anime")))
+                .thenReturn(List.of(only));
+        String cursor = new KeysetCursor(new ObjectId(), "0").encode();
+
+        CursorPageDTO<AnimeSummaryDTO> page = animeService.findAnimePage(cursor, 10);
+
+        assertThat(page.getContent()).containsExactly(only);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void findAnimePage_shouldKeepTitleOrderedQuery_withoutFilters() {
+        ObjectId lastId = new ObjectId();
+        Query query = AnimeService.pageQuery(new CatalogFilter(), new KeysetCursor(lastId, "Naruto"), 11);
+
+        assertThat(query.getQueryObject()).isEqualTo(Document.parse("{$or: [{title: {$gt: 'Naruto'}}, {title: 'Naruto', _id: {$gt: {$oid: '" + lastId.toHexString() + "'}}}]}"));
+        assertThat(query.getSortObject()).isEqualTo(new Document("title", 1).append("_id", 1));
+        assertThat(query.getLimit()).isEqualTo(11);
+    }
+
+    @Test
+    void findAnimePage_shouldCombineFiltersAndFollowSortDirection() {
+        ObjectId lastId = new ObjectId();
+        CatalogFilter filter = CatalogFilter.builder()
+                .genres(List.of("Action"))
+                .titlePrefix("At")
+                .releasedFrom("2010-01-01")
+                .sort(CatalogSort.REVIEW_COUNT)
+                .build();
+
+        Query query = AnimeService.pageQuery(filter, new KeysetCursor(lastId, "7"), 5);
+
+        assertThat(query.getQueryObject()).isEqualTo(Document.parse("""
+                {$and: [
+                  {genres: {$all: ['Action']}},
+                  {title: {$gte: 'At', $lt: 'At\uffff'}},
+                  {releaseDate: {$gte: '2010-01-01'}},
+                  {$or: [{reviewCount: {$lt: 7}}, {reviewCount: 7, _id: {$lt: {$oid: '%s'}}}, {reviewCount: null}]}
+                ]}""".formatted(lastId.toHexString())));
+        assertThat(query.getSortObject()).isEqualTo(new Document("reviewCount", -1).append("_id", -1));
+    }
+
+    @Test
+    void findAnimePage_shouldContinuePastRowsWithoutSortValue() {
+        AnimeSummaryDTO untitled = AnimeSummaryDTO.builder().id(new ObjectId()).build();
+        AnimeSummaryDTO titled = AnimeSummaryDTO.builder().id(new ObjectId()).title("A").build();
+        when(mongoTemplate.find(any(Query.class), eq(AnimeSummaryDTO.class), eq("anime"))).thenReturn(List.of(untitled, titled));
+
+        KeysetCursor next = KeysetCursor.decode(animeService.findAnimePage(null, 1).getNextCursor());
+        Query ascending = AnimeService.pageQuery(new CatalogFilter(), next, 2);
+        Query descending = AnimeService.pageQuery(CatalogFilter.builder().sort(CatalogSort.REVIEW_COUNT).build(), next, 2);
+
+        assertThat(next.getValue()).isNull();
+        String lastId = untitled.getId().toHexString();
+        assertThat(ascending.getQueryObject()).isEqualTo(Document.parse(
+                "{$or: [{title: null, _id: {$gt: {$oid: '" + lastId + "'}}}, {title: {$ne: null}}]}"));
+        assertThat(descending.getQueryObject()).isEqualTo(Document.parse(
+                "{reviewCount: null, _id: {$lt: {$oid: '" + lastId + "'}}}"));
+    }
+
+    @Test
+    void keysetCursor_shouldKeepNullApartFromEmptyValue() {
+        ObjectId id = new ObjectId();
+
+        assertThat(KeysetCursor.decode(new KeysetCursor(id, null).encode()).getValue()).isNull();
+        assertThat(KeysetCursor.decode(new KeysetCursor(id, "").encode()).getValue()).isEmpty();
+        assertThat(KeysetCursor.decode(new KeysetCursor(id, "Naruto").encode()).getValue()).isEqualTo("Naruto");
+        assertThat(KeysetCursor.decode(new KeysetCursor(id, "Naruto").encode()).getId()).isEqualTo(id);
+    }
+
+    @Test
+    void findAnimePage_shouldOnlyListDatedAnime_whenSortedByReleaseDate() {
+        Query query = AnimeService.pageQuery(CatalogFilter.builder().sort(CatalogSort.RELEASE_DATE).descending(false).build(), null, 5);
+
+        assertThat(query.getQueryObject()).isEqualTo(Document.parse("{releaseDate: {$gte: ''}}"));
+        assertThat(query.getSortObject()).isEqualTo(new Document("releaseDate", 1).append("_id", 1));
+    }
+
+    @Test
+    void findAnimePage_shouldEncodeSortValueInNextCursor() {
+        AnimeSummaryDTO first = AnimeSummaryDTO.builder().id(new ObjectId()).title("A").reviewCount(3).build();
+        AnimeSummaryDTO second = AnimeSummaryDTO.builder().id(new ObjectId()).title("B").reviewCount(2).build();
+        when(mongoTemplate.find(any(Query.class), eq(AnimeSummaryDTO.class), eq("anime"))).thenReturn(List.of(first, second));
+
+        CursorPageDTO<AnimeSummaryDTO> page = animeService.findAnimePage(
+                CatalogFilter.builder().sort(CatalogSort.REVIEW_COUNT).build(), null, 1);
+
+        assertThat(KeysetCursor.decode(page.getNextCursor()).getValue()).isEqualTo("3");
+    }
+
+    @Test
+    void findAnimePage_shouldRejectInvalidDatesAndCursorValues() {
+        CatalogFilter badDate = CatalogFilter.builder().releasedTo("31.12.2020").build();
+        String titleCursor = new KeysetCursor(new ObjectId(), "Naruto").encode();
+
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimePage(badDate, null, 10));
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimePage(
+                CatalogFilter.builder().sort(CatalogSort.REVIEW_COUNT).build(), titleCursor, 10));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void findAnimePage_shouldThrowException_whenCursorInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimePage("not-a-cursor", 10));
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void findAnimePage_shouldThrowException_whenSizeOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimePage(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimePage(null, AnimeService.MAX_PAGE_SIZE + 1));
     }
 
     @Test
     void findAnimeByImdbId_shouldReturnAnime_whenFound() {
         String imdbId = "tt1234567";
-        Anime anime = Anime.builder().imdbId(imdbId).build();
-        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.of(anime));
+        AnimeDetailDTO anime = AnimeDetailDTO.builder().imdbId(imdbId).build();
+        when(animeRepository.findAnimeByImdbId(imdbId, AnimeDetailDTO.class)).thenReturn(Optional.of(anime));
+
+        AnimeDetailDTO returned = animeService.findAnimeByImdbId(imdbId);
+
+        assertThat(returned).isEqualTo(anime);
+
+        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId, AnimeDetailDTO.class);
+        verify(animeRepository, never()).findAnimeByImdbId(imdbId);
+        verify(trendingService, times(1)).recordView(imdbId);
+    }
 
-        Optional<Anime> returned = animeService.findAnimeByImdbId(imdbId);
+    @Test
+    void findAnimeDetail_shouldNotCountView() {
+        AnimeDetailDTO anime = AnimeDetailDTO.builder().imdbId("tt1").title("Title").build();
+        when(animeRepository.findAnimeByImdbId("tt1", AnimeDetailDTO.class)).thenReturn(Optional.of(anime));
 
-        assertThat(returned).isNotEmpty().contains(anime);
+        assertThat(animeService.findAnimeDetail("tt1")).isEqualTo(anime);
 
-        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId);
+        verifyNoInteractions(trendingService);
     }
 
     @Test
     void findAnimeByImdbId_shouldThrowException_whenNotFound() {
         String imdbId = "tt1234567";
-        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.empty());
+        when(animeRepository.findAnimeByImdbId(imdbId, AnimeDetailDTO.class)).thenReturn(Optional.empty());
 
         assertThrows(AnimeNotFoundException.class, () -> animeService.findAnimeByImdbId(imdbId));
 
-        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId);
+        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId, AnimeDetailDTO.class);
+        verify(trendingService, never()).recordView(anyString());
+    }
+
+    @Test
+    void findAnimeByImdbId_shouldServeRepeatedReadsFromCache() {
+        String imdbId = "tt1234567";
+        AnimeDetailDTO anime = AnimeDetailDTO.builder().imdbId(imdbId).build();
+        when(animeRepository.findAnimeByImdbId(imdbId, AnimeDetailDTO.class)).thenReturn(Optional.of(anime));
+
+        animeService.findAnimeByImdbId(imdbId);
+        animeService.findAnimeByImdbId(imdbId);
+
+        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId, AnimeDetailDTO.class);
+        assertThat(animeService.getCacheStats().getHits()).isEqualTo(1);
+        assertThat(animeService.getCacheStats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void findAllAnime_shouldServeRepeatedReadsFromCache() {
+        when(animeRepository.findAllBy(AnimeDetailDTO.class)).thenReturn(List.of(AnimeDetailDTO.builder().build()));
+
+        animeService.findAllAnime();
+        animeService.findAllAnime();
+
+        verify(animeRepository, times(1)).findAllBy(AnimeDetailDTO.class);
+    }
+
+    @Test
+    void findAnimeBatch_shouldServeCachedAndLoadRestWithOneQuery() {
+        AnimeDetailDTO cached = AnimeDetailDTO.builder().imdbId("tt1").title("One").build();
+        AnimeDetailDTO loaded = AnimeDetailDTO.builder().imdbId("tt2").title("Two").build();
+        when(animeRepository.findAnimeByImdbId("tt1", AnimeDetailDTO.class)).thenReturn(Optional.of(cached));
+        animeService.findAnimeByImdbId("tt1");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(List.of(loaded));
+
+        List<AnimeBatchItemDTO> items = animeService.findAnimeBatch(List.of("tt3", "tt2", "tt1", "tt2"));
+
+        assertThat(items).extracting(AnimeBatchItemDTO::getImdbId).containsExactly("tt3", "tt2", "tt1", "tt2");
+        assertThat(items).extracting(AnimeBatchItemDTO::isFound).containsExactly(false, true, true, true);
+        assertThat(items.get(0).getAnime()).isNull();
+        assertThat(items.get(2).getAnime()).isSameAs(cached);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(AnimeDetailDTO.class), eq("anime"));
+        assertThat(query.getValue().getQueryObject().get("imdbId", Document.class).get("$in"))
+                .asInstanceOf(InstanceOfAssertFactories.collection(String.class))
+                .containsExactlyInAnyOrder("tt3", "tt2");
+    }
+
+    @Test
+    void findAnimeByImdbId_shouldRejectUnknownIdWithoutQuery() {
+        when(knownAnimeIds.isUnknown("tt404")).thenReturn(true);
+
+        AnimeNotFoundException first = assertThrows(AnimeNotFoundException.class, () -> animeService.findAnimeByImdbId("tt404"));
+        AnimeNotFoundException second = assertThrows(AnimeNotFoundException.class, () -> animeService.findAnimeWithReviews("tt404"));
+
+        assertThat(first).isSameAs(second);
+        assertThat(first.getStackTrace()).isEmpty();
+        verifyNoInteractions(animeRepository, mongoTemplate, trendingService);
+    }
+
+    @Test
+    void findAnimeBatch_shouldSkipUnknownIds() {
+        when(knownAnimeIds.isUnknown("tt404")).thenReturn(true);
+        AnimeDetailDTO loaded = AnimeDetailDTO.builder().imdbId("tt1").title("One").build();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(List.of(loaded));
+
+        assertThat(animeService.findAnimeBatch(List.of("tt404", "tt1")))
+                .extracting(AnimeBatchItemDTO::isFound).containsExactly(false, true);
+        assertThat(query.getValue().getQueryObject().get("imdbId", Document.class).get("$in"))
+                .asInstanceOf(InstanceOfAssertFactories.collection(String.class))
+                .containsExactly("tt1");
+
+        assertThat(animeService.findAnimeBatch(List.of("tt404")))
+                .extracting(AnimeBatchItemDTO::isFound).containsExactly(false);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(AnimeDetailDTO.class), eq("anime"));
+    }
+
+    @Test
+    void fullAggregation_shouldJoinAndFacetReviewsInOnePipeline() {
+        List<Document> pipeline = AnimeService.fullAggregation("tt1").toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        assertThat(pipeline).extracting(stage -> stage.keySet().iterator().next())
+                .containsExactly("$match", "$limit", "$lookup", "$unset");
+        Document lookup = pipeline.get(2).get("$lookup", Document.class);
+        assertThat(lookup.getString("from")).isEqualTo("reviews");
+        assertThat(lookup.getString("localField")).isEqualTo("imdbId");
+        assertThat(lookup.getString("foreignField")).isEqualTo("imdbId");
+        List<Document> reviewPipeline = lookup.getList("pipeline", Document.class);
+        assertThat(reviewPipeline.get(0)).isEqualTo(new Document("$match",
+                new Document("status", new Document("$in", ReviewService.LISTED_STATUSES))));
+        Document facet = reviewPipeline.get(1).get("$facet", Document.class);
+        assertThat(facet.getList("page", Document.class)).containsExactly(
+                new Document("$sort", new Document("createdAt", -1).append("_id", -1)),
+                new Document("$limit", (long) AnimeService.FULL_REVIEW_PAGE_SIZE));
+        assertThat(facet.getList("stats", Document.class).get(0)).containsKey("$group");
+    }
+
+    @Test
+    void findAnimeFull_shouldMapAnimeReviewsAndStats() {
+        ObjectId reviewId = new ObjectId();
+        Date created = new Date();
+        Document result = new Document("_id", new ObjectId()).append("imdbId", "tt1").append("title", "One")
+                .append("reviewData", List.of(new Document("page",
+                        List.of(new Document("_id", reviewId).append("body", "Great").append("userId", "user").append("createdAt", created)))
+                        .append("stats", List.of(new Document("_id", null).append("count", 1)
+                                .append("firstReviewAt", created).append("lastReviewAt", created)))));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("anime"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(result), new Document()));
+        when(mongoTemplate.getConverter()).thenReturn(converter());
+
+        AnimeFullDTO full = animeService.findAnimeFull("tt1");
+
+        assertThat(full.getAnime().getTitle()).isEqualTo("One");
+        assertThat(full.getReviews()).extracting(Review::getId).containsExactly(reviewId);
+        assertThat(full.getReviewStats().getCount()).isEqualTo(1);
+        assertThat(full.getReviewStats().getLastReviewAt()).isNotNull();
+        verify(trendingService).recordView("tt1");
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    @Test
+    void findAnimeFull_shouldThrowNotFound_whenAggregationIsEmpty() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("anime"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        assertThrows(AnimeNotFoundException.class, () -> animeService.findAnimeFull("tt1"));
+        verifyNoInteractions(trendingService);
+    }
+
+    @Test
+    void findAnimeBatch_shouldNotQuery_whenAllCached() {
+        AnimeDetailDTO cached = AnimeDetailDTO.builder().imdbId("tt1").title("One").build();
+        when(animeRepository.findAnimeByImdbId("tt1", AnimeDetailDTO.class)).thenReturn(Optional.of(cached));
+        animeService.findAnimeByImdbId("tt1");
+
+        assertThat(animeService.findAnimeBatch(List.of("tt1"))).extracting(AnimeBatchItemDTO::isFound).containsExactly(true);
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void findAnimeBatch_shouldThrowException_whenBatchEmptyOrTooLarge() {
+        List<String> tooMany = IntStream.rangeClosed(0, AnimeService.MAX_BATCH_SIZE)
+                .mapToObj(i -> "tt" + i).toList();
+
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimeBatch(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimeBatch(tooMany));
+        assertThrows(IllegalArgumentException.class, () -> animeService.findAnimeBatch(Collections.singletonList(null)));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void findAnimeWithReviews_shouldReturnAnimeWithReviews_whenFound() {
+        String imdbId = "tt1234567";
+        Review review = new Review("A review body", "user123", imdbId);
+        Anime anime = Anime.builder().imdbId(imdbId).title("Title").build();
+        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.of(anime));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(Review.class))).thenReturn(List.of(review));
+
+        AnimeWithReviewsDTO returned = animeService.findAnimeWithReviews(imdbId);
+
+        assertThat(returned.getTitle()).isEqualTo("Title");
+        assertThat(returned.getReviews()).containsExactly(review);
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("imdbId", imdbId)
+                .append("status", new Document("$in", ReviewService.LISTED_STATUSES)));
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("createdAt", 1).append("_id", 1));
+    }
+
+    @Test
+    void findAnimeWithReviews_shouldThrowException_whenNotFound() {
+        String imdbId = "tt1234567";
+        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.empty());
+
+        assertThrows(AnimeNotFoundException.class, () -> animeService.findAnimeWithReviews(imdbId));
     }
 
     @Test
@@ -92,55 +475,237 @@ public class AnimeServiceTest {
     @Test
     void updateAnime_shouldUpdateAnime_whenFound() {
         String imdbId = "tt1234567";
-        Anime anime = Anime.builder().imdbId(imdbId).build();
+        Anime anime = Anime.builder().imdbId(imdbId).title("Title").build();
+        AnimeDetailDTO detail = AnimeDetailDTO.builder().imdbId(imdbId).title("Title").build();
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
 
-        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.of(anime));
-        when(animeRepository.save(anime)).thenReturn(anime);
+        when(mongoTemplate.findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(detail);
 
-        Anime updated = animeService.updateAnime(imdbId, anime);
-        assertThat(anime).isEqualTo(updated);
+        AnimeDetailDTO updated = animeService.updateAnime(imdbId, anime);
+        assertThat(updated.getImdbId()).isEqualTo(imdbId);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+                .containsOnlyKeys("title", "imdbId", "releaseDate", "trailer", "poster", "genres", "backdrops");
 
-        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId);
-        verify(animeRepository, times(1)).save(any(Anime.class));
+        verify(catalogCache, times(2)).invalidate(imdbId);
+        verify(catalogCache, times(1)).invalidateCatalog();
+        verify(eventPublisher, times(1)).publishEvent(any(AnimeChangedEvent.class));
+
+        verify(animeRepository, never()).findAnimeByImdbId(imdbId);
+        verify(animeRepository, never()).save(any(Anime.class));
     }
 
     @Test
     void updateAnime_shouldThrowException_whenNotFound() {
         String imdbId = "tt1234567";
-        Anime anime = Anime.builder().imdbId(imdbId).build();
-        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.empty());
+        Anime anime = Anime.builder().imdbId(imdbId).title("Title").build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(null);
 
         assertThrows(AnimeNotFoundException.class, () -> animeService.updateAnime(imdbId, anime));
-        verify(animeRepository, times(1)).findAnimeByImdbId(imdbId);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void updateAnime_shouldRejectMissingImdbIdOrTitle() {
+        Anime withoutImdbId = Anime.builder().title("Naruto").build();
+        Anime withoutTitle = Anime.builder().imdbId("tt1").title(" ").build();
+
+        assertThrows(IllegalArgumentException.class, () -> animeService.updateAnime("tt1", withoutImdbId));
+        assertThrows(IllegalArgumentException.class, () -> animeService.updateAnime("tt1", withoutTitle));
+
+        verifyNoInteractions(mongoTemplate, reviewCleanupService, eventPublisher);
+    }
+
+    @Test
+    void patchAnime_shouldSetOnlySuppliedFields() {
+        String imdbId = "tt1234567";
+        AnimeDetailDTO detail = AnimeDetailDTO.builder().imdbId("tt7654321").title("Title").genres(List.of("Drama")).build();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        when(mongoTemplate.findAndModify(query.capture(), update.capture(), options.capture(),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(detail);
+
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("imdbId", "tt7654321");
+        fields.put("genres", List.of("Drama"));
+        fields.put("trailer", null);
+        AnimeDetailDTO patched = animeService.patchAnime(imdbId, fields);
+
+        assertThat(patched).isEqualTo(detail);
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("imdbId", imdbId));
+        assertThat(query.getValue().getFieldsObject()).isEqualTo(new Document("reviewIds", 0).append("countedReviewIds", 0));
+        assertThat(options.getValue().isReturnNew()).isTrue();
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertThat(set).containsOnlyKeys("imdbId", "genres", "trailer");
+        assertThat(set.get("trailer")).isNull();
+
+        verify(catalogCache).invalidate(imdbId);
+        verify(catalogCache).invalidate("tt7654321");
+        verify(catalogCache).invalidateCatalog();
+        verify(eventPublisher).publishEvent(any(AnimeChangedEvent.class));
+        verify(reviewCleanupService).scheduleMove(imdbId, "tt7654321");
+    }
+
+    @Test
+    void patchAnime_shouldRejectRenameOntoExistingAnime() {
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.exists(target.capture(), eq(Anime.class))).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> animeService.patchAnime("tt1", Map.of("imdbId", "tt2")));
+
+        assertThat(target.getValue().getQueryObject()).isEqualTo(new Document("imdbId", "tt2"));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(AnimeDetailDTO.class), eq("anime"));
+        verifyNoInteractions(reviewCleanupService, eventPublisher);
+    }
+
+    @Test
+    void patchAnime_shouldRejectRename_whileReviewsAreStillBeingMoved() {
+        when(reviewCleanupService.hasPendingTask(List.of("tt1", "tt2"))).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> animeService.patchAnime("tt1", Map.of("imdbId", "tt2")));
+
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(AnimeDetailDTO.class), eq("anime"));
+        verify(reviewCleanupService, never()).scheduleMove(anyString(), anyString());
+    }
+
+    @Test
+    void patchAnime_shouldMatchExpectedVersionAndIncrementIt() {
+        AnimeDetailDTO detail = AnimeDetailDTO.builder().imdbId("tt1").title("New").version(4L).build();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(detail);
+
+        assertThat(animeService.patchAnime("tt1", Map.of("title", "New"), new AnimeVersion(ANIME_ID, 3)).getVersion()).isEqualTo(4L);
+        assertThat(query.getValue().getQueryObject())
+                .isEqualTo(new Document("imdbId", "tt1").append("_id", ANIME_ID).append("version", 3L));
+        assertThat(update.getValue().getUpdateObject().get("$inc", Document.class)).isEqualTo(new Document("version", 1));
+    }
+
+    @Test
+    void updateAnime_shouldAcceptUnversionedDocuments_whenExpectingVersionZero() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(AnimeDetailDTO.builder().imdbId("tt1").version(1L).build());
+
+        animeService.updateAnime("tt1", Anime.builder().imdbId("tt1").title("T").build(), new AnimeVersion(ANIME_ID, 0));
+
+        assertThat(query.getValue().getQueryObject().getList("$or", Document.class)).containsExactly(
+                new Document("version", 0L), new Document("version", new Document("$exists", false)));
+    }
+
+    @Test
+    void patchAnime_shouldThrowPreconditionFailed_whenVersionIsStale() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Anime.class))).thenReturn(true);
+
+        assertThrows(PreconditionFailedException.class, () -> animeService.patchAnime("tt1", Map.of("title", "New"), new AnimeVersion(ANIME_ID, 3)));
+        verify(catalogCache, never()).invalidate("tt1");
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
+    @Test
+    void deleteAnime_shouldDeleteOnlyExpectedVersion() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Document.class), eq("anime"))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Anime.class))).thenReturn(true);
+
+        assertThrows(PreconditionFailedException.class, () -> animeService.deleteAnime("tt1", new AnimeVersion(ANIME_ID, 2)));
+        verifyNoInteractions(reviewCleanupService);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndRemove(query.capture(), eq(Document.class), eq("anime"))).thenReturn(new Document());
+        animeService.deleteAnime("tt1", new AnimeVersion(ANIME_ID, 2));
+        assertThat(query.getValue().getQueryObject())
+                .isEqualTo(new Document("imdbId", "tt1").append("_id", ANIME_ID).append("version", 2L));
+        verify(eventPublisher).publishEvent(any(AnimeChangedEvent.class));
+    }
 
     @Test
-    void deleteAnime_shouldDeleteAnime_whenFound() {
+    void deleteAnime_shouldThrowNotFound_whenVersionedDeleteMissesAbsentAnime() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Document.class), eq("anime"))).thenReturn(null);
+        when(mongoTemplate.exists(any(Query.class), eq(Anime.class))).thenReturn(false);
+
+        assertThrows(AnimeNotFoundException.class, () -> animeService.deleteAnime("tt1", new AnimeVersion(ANIME_ID, 2)));
+    }
+
+    @Test
+    void patchAnime_shouldRejectUnknownOrInvalidFields() {
+        assertThrows(IllegalArgumentException.class, () -> animeService.patchAnime("tt1", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> animeService.patchAnime("tt1", Map.of("reviewIds", List.of())));
+        assertThrows(IllegalArgumentException.class, () -> animeService.patchAnime("tt1", Map.of("title", " ")));
+        assertThrows(IllegalArgumentException.class, () -> animeService.patchAnime("tt1", Map.of("genres", "Drama")));
+        assertThrows(IllegalArgumentException.class, () -> animeService.patchAnime("tt1", Map.of("poster", 5)));
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void patchAnime_shouldThrowException_whenNotFound() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(AnimeDetailDTO.class), eq("anime"))).thenReturn(null);
+
+        assertThrows(AnimeNotFoundException.class, () -> animeService.patchAnime("tt1", Map.of("title", "New")));
+        verify(catalogCache, never()).invalidateCatalog();
+    }
+
+
+    @Test
+    void deleteAnime_shouldDeleteAnimeAndScheduleReviewCleanup_whenFound() {
         String imdbId = "tt1234567";
-        Anime anime = Anime.builder().imdbId(imdbId).build();
-        when(animeRepository.deleteAnimeByImdbId(imdbId)).thenReturn(Optional.of(anime));
+        List<ObjectId> reviewIds = List.of(new ObjectId(), new ObjectId());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndRemove(query.capture(), eq(Document.class), eq("anime")))
+                .thenReturn(new Document("imdbId", imdbId).append("reviewIds", reviewIds));
 
         animeService.deleteAnime(imdbId);
-        verify(animeRepository, times(1)).deleteAnimeByImdbId(imdbId);
+
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("imdbId", imdbId));
+        assertThat(query.getValue().getFieldsObject()).isEqualTo(new Document("reviewIds", 1));
+        verify(reviewCleanupService, times(1)).schedule(imdbId, reviewIds);
+        verify(catalogCache, times(1)).invalidate(imdbId);
+        verify(catalogCache, times(1)).invalidateCatalog();
+        verify(eventPublisher, times(1)).publishEvent(argThat((Object event) ->
+                event instanceof AnimeChangedEvent changed && changed.isDeletion()));
+        verify(animeRepository, never()).deleteAnimeByImdbId(anyString());
+    }
+
+    @Test
+    void deleteAnime_shouldScheduleReviewCleanup_evenWithoutCountedReviews() {
+        //reviewCount leaves out pending reviews, which have to go too
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Document.class), eq("anime")))
+                .thenReturn(new Document("imdbId", "tt1"));
+
+        animeService.deleteAnime("tt1");
+
+        verify(reviewCleanupService).schedule("tt1", List.of());
+        verify(eventPublisher).publishEvent(any(AnimeChangedEvent.class));
     }
 
     @Test
     void deleteAnime_shouldThrowException_whenNotFound() {
         String imdbId = "tt1234567";
-        when(animeRepository.deleteAnimeByImdbId(imdbId)).thenReturn(Optional.empty());
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Document.class), eq("anime"))).thenReturn(null);
 
         assertThrows(AnimeNotFoundException.class, () -> animeService.deleteAnime(imdbId));
-        verify(animeRepository, times(1)).deleteAnimeByImdbId(imdbId);
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(Anime.class));
+        verifyNoInteractions(reviewCleanupService, eventPublisher);
     }
 
     @Test
     void deleteAnime_shouldThrowException_whenDatabaseError() {
         String imdbId = "tt1234567";
-        when(animeRepository.deleteAnimeByImdbId(imdbId)).thenThrow(new DataAccessException("Database error") {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Document.class), eq("anime")))
+                .thenThrow(new DataAccessException("Database error") {
         });
 
         assertThrows(DataAccessException.class, () -> animeService.deleteAnime(imdbId));
-        verify(animeRepository, times(1)).deleteAnimeByImdbId(imdbId);
+        verifyNoInteractions(reviewCleanupService);
     }
 }
@@ -0,0 +1,78 @@
+package com.marko.anime.services;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogQueryPlanCheckTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @Mock
+    private FindIterable<Document> find;
+
+    @InjectMocks
+    private CatalogQueryPlanCheck planCheck;
+
+    private void stubFind() {
+        when(mongoTemplate.getCollection("anime")).thenReturn(collection);
+        when(collection.find(any(Bson.class))).thenReturn(find);
+        when(find.projection(any())).thenReturn(find);
+        when(find.sort(any())).thenReturn(find);
+        when(find.limit(anyInt())).thenReturn(find);
+    }
+
+    private static Document plan(String stage) {
+        return new Document("queryPlanner", new Document("winningPlan",
+                new Document("stage", "LIMIT").append("inputStage",
+                        new Document("stage", "FETCH").append("inputStage", new Document("stage", stage)))));
+    }
+
+    @Test
+    void verify_shouldExplainEveryShapeAndPass_whenAllUseIndexes() {
+        stubFind();
+        when(find.explain()).thenReturn(plan("IXSCAN"));
+
+        assertDoesNotThrow(() -> planCheck.verify());
+
+        verify(find, times(CatalogQueryPlanCheck.shapes().size() * 2)).explain();
+    }
+
+    @Test
+    void verify_shouldFail_whenAShapeScansTheCollection() {
+        stubFind();
+        when(find.explain()).thenReturn(plan("IXSCAN"), plan("COLLSCAN"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> planCheck.verify());
+        assertThat(e.getMessage()).contains("title");
+    }
+
+    @Test
+    void containsStage_shouldSearchNestedPlans() {
+        Document or = new Document("stage", "OR").append("inputStages",
+                List.of(new Document("stage", "IXSCAN"), new Document("stage", "COLLSCAN")));
+
+        assertThat(CatalogQueryPlanCheck.containsStage(or, "COLLSCAN")).isTrue();
+        assertThat(CatalogQueryPlanCheck.containsStage(plan("IXSCAN"), "COLLSCAN")).isFalse();
+    }
+}
@@ -0,0 +1,70 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ExportService exportService;
+
+    @Test
+    void exportAnime_shouldWriteOneJsonDocumentPerLineAndCloseCursor() throws Exception {
+        ObjectId id = new ObjectId();
+        AtomicBoolean closed = new AtomicBoolean();
+        when(mongoTemplate.getCollectionName(Anime.class)).thenReturn("anime");
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("anime"))).thenReturn(Stream.of(
+                new Document("_id", id).append("imdbId", "tt1").append("title", "Pokémon"),
+                new Document("imdbId", "tt2").append("genres", List.of("Action"))).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = exportService.exportAnime(out);
+
+        assertThat(written).isEqualTo(2);
+        assertThat(closed).isTrue();
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(Document.parse(lines[0])).isEqualTo(
+                new Document("_id", id).append("imdbId", "tt1").append("title", "Pokémon"));
+        assertThat(lines[1]).isEqualTo("{\"imdbId\": \"tt2\", \"genres\": [\"Action\"]}");
+    }
+
+    @Test
+    void exportReviews_shouldStreamReviewsCollectionInBatches() throws Exception {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.getCollectionName(Review.class)).thenReturn("reviews");
+        when(mongoTemplate.stream(query.capture(), eq(Document.class), eq("reviews"))).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(exportService.exportReviews(out)).isZero();
+        assertThat(out.size()).isZero();
+        verify(mongoTemplate).stream(any(Query.class), eq(Document.class), eq("reviews"));
+        assertThat(query.getValue().getMeta().getCursorBatchSize()).isEqualTo(ExportService.CURSOR_BATCH_SIZE);
+    }
+}
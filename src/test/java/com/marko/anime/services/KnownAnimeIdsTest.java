@@ -0,0 +1,73 @@
+package com.marko.anime.services;
+
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.models.Anime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KnownAnimeIdsTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private KnownAnimeIds knownAnimeIds;
+
+    @Test
+    void isUnknown_shouldAllowEverythingUntilLoaded() {
+        knownAnimeIds.onAnimeChanged(new AnimeChangedEvent("tt1", null));
+
+        assertThat(knownAnimeIds.isUnknown("tt1")).isFalse();
+        assertThat(knownAnimeIds.isUnknown("tt404")).isFalse();
+    }
+
+    @Test
+    void isUnknown_shouldFollowLoadedIdsAndWrites() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("imdbId"), eq("anime"), eq(String.class)))
+                .thenReturn(List.of("tt1", "tt2"));
+        knownAnimeIds.reload();
+
+        assertThat(knownAnimeIds.isUnknown("tt1")).isFalse();
+        assertThat(knownAnimeIds.isUnknown("tt404")).isTrue();
+        assertThat(knownAnimeIds.isUnknown(null)).isTrue();
+
+        knownAnimeIds.onAnimeChanged(new AnimeChangedEvent("tt3", Anime.builder().imdbId("tt3").build()));
+        knownAnimeIds.onAnimeChanged(new AnimeChangedEvent("tt1", Anime.builder().imdbId("tt1b").build()));
+        knownAnimeIds.onAnimeChanged(new AnimeChangedEvent("tt2", null));
+
+        assertThat(knownAnimeIds.isUnknown("tt3")).isFalse();
+        assertThat(knownAnimeIds.isUnknown("tt1b")).isFalse();
+        assertThat(knownAnimeIds.isUnknown("tt1")).isTrue();
+        assertThat(knownAnimeIds.isUnknown("tt2")).isTrue();
+    }
+
+    @Test
+    void refresh_shouldPickUpIdsWrittenElsewhere_andKeepSetWhenLoadFails() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("imdbId"), eq("anime"), eq(String.class)))
+                .thenReturn(List.of("tt1"))
+                .thenReturn(List.of("tt1", "tt2"))
+                .thenThrow(new DataAccessResourceFailureException("timed out"));
+        knownAnimeIds.reload();
+        assertThat(knownAnimeIds.isUnknown("tt2")).isTrue();
+
+        knownAnimeIds.refresh();
+        assertThat(knownAnimeIds.isUnknown("tt2")).isFalse();
+
+        assertThrows(DataAccessResourceFailureException.class, knownAnimeIds::refresh);
+        assertThat(knownAnimeIds.isUnknown("tt2")).isFalse();
+    }
+}
@@ -0,0 +1,111 @@
+package com.marko.anime.services;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.marko.anime.models.ModerationVerdict;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ModerationVerdictCacheTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void key_shouldIgnoreCaseDiacriticsAndSpacing() {
+        assertThat(ModerationVerdictCache.key("  Café   ending\n", 0.5, 0.5))
+                .isEqualTo(ModerationVerdictCache.key("cafe ending", 0.5, 0.5));
+        assertThat(ModerationVerdictCache.key("cafe ending", 0.5, 0.5))
+                .isNotEqualTo(ModerationVerdictCache.key("cafe endings", 0.5, 0.5));
+    }
+
+    @Test
+    void key_shouldChange_whenThresholdsAreTuned() {
+        assertThat(ModerationVerdictCache.key("cafe ending", 0.5, 0.5))
+                .isNotEqualTo(ModerationVerdictCache.key("cafe ending", 0.6, 0.5))
+                .isNotEqualTo(ModerationVerdictCache.key("cafe ending", 0.5, 0.6));
+    }
+
+    @Test
+    void verdict_shouldRunCheckOnce_andNotCacheFailures() {
+        ModerationVerdictCache cache = new ModerationVerdictCache(mongoTemplate, 10, Duration.ofHours(1), false);
+        AtomicInteger checks = new AtomicInteger();
+
+        assertThrows(CompletionException.class, () -> cache.verdict("k",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("API unavailable"))).join());
+        assertThat(cache.verdict("k", () -> completedFuture(checks.incrementAndGet() > 0)).join()).isTrue();
+        assertThat(cache.verdict("k", () -> completedFuture(checks.incrementAndGet() > 5)).join()).isTrue();
+
+        assertThat(checks.get()).isEqualTo(1);
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void verdict_shouldStoreNewVerdict_whenPersisted() {
+        ModerationVerdictCache cache = new ModerationVerdictCache(mongoTemplate, 10, Duration.ofHours(1), true);
+
+        assertThat(cache.verdict("k", () -> completedFuture(true)).join()).isTrue();
+
+        ArgumentCaptor<ModerationVerdict> stored = ArgumentCaptor.forClass(ModerationVerdict.class);
+        verify(mongoTemplate).save(stored.capture());
+        assertThat(stored.getValue().getId()).isEqualTo("k");
+        assertThat(stored.getValue().isProfane()).isTrue();
+        assertThat(stored.getValue().getExpiresAt()).isAfter(Instant.now().plus(Duration.ofMinutes(59)));
+    }
+
+    @Test
+    void verdict_shouldUseStoredVerdict_fromAnotherNode() {
+        ModerationVerdictCache cache = new ModerationVerdictCache(mongoTemplate, 10, Duration.ofHours(1), true);
+        when(mongoTemplate.findById("k", ModerationVerdict.class))
+                .thenReturn(new ModerationVerdict("k", true, Instant.now().plusSeconds(60)));
+
+        assertThat(cache.verdict("k", () -> completedFuture(false)).join()).isTrue();
+        assertThat(cache.verdict("k", () -> completedFuture(false)).join()).isTrue();
+
+        verify(mongoTemplate, times(1)).findById("k", ModerationVerdict.class);
+        verify(mongoTemplate, never()).save(any());
+    }
+
+    @Test
+    void verdict_shouldExpireStoredVerdict_atItsStoredTime() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = nanos::get;
+        ModerationVerdictCache cache = new ModerationVerdictCache(mongoTemplate, 10, Duration.ofHours(1), true, ticker);
+        when(mongoTemplate.findById("k", ModerationVerdict.class))
+                .thenReturn(new ModerationVerdict("k", true, Instant.now().plusSeconds(60)), (ModerationVerdict) null);
+
+        assertThat(cache.verdict("k", () -> completedFuture(false)).join()).isTrue();
+        nanos.addAndGet(Duration.ofSeconds(61).toNanos());
+
+        assertThat(cache.verdict("k", () -> completedFuture(false)).join()).isFalse();
+        verify(mongoTemplate, times(2)).findById("k", ModerationVerdict.class);
+    }
+
+    @Test
+    void verdict_shouldStillCheck_whenCollectionIsUnavailable() {
+        ModerationVerdictCache cache = new ModerationVerdictCache(mongoTemplate, 10, Duration.ofHours(1), true);
+        when(mongoTemplate.findById("k", ModerationVerdict.class))
+                .thenThrow(new DataAccessResourceFailureException("timed out"));
+        when(mongoTemplate.save(any(ModerationVerdict.class)))
+                .thenThrow(new DataAccessResourceFailureException("timed out"));
+
+        assertThat(cache.verdict("k", () -> completedFuture(false)).join()).isFalse();
+    }
+}
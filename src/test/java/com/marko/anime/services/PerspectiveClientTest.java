@@ -0,0 +1,178 @@
+package com.marko.anime.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+class PerspectiveClientTest {
+
+    private static final int MAX_CONCURRENCY = 4;
+
+    static {
+        //otherwise the stub's small writes wait on delayed ACKs and dominate the timings
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Queue<JsonNode> bodies = new ConcurrentLinkedQueue<>();
+    private volatile int status = 200;
+    private volatile long latencyMillis = 5;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private PerspectiveClient client;
+
+    //stands in for the Perspective analyze endpoint, comments containing "bad" score high
+    @BeforeEach
+    void init() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/analyze", this::analyze);
+        server.start();
+        client = new PerspectiveClient(objectMapper, "test-key",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/analyze",
+                Duration.ofSeconds(5), Duration.ofMillis(5), 16, MAX_CONCURRENCY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void analyze(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            bodies.add(body);
+            Thread.sleep(latencyMillis);
+            double score = body.path("comment").path("text").asText().contains("bad") ? 0.9 : 0.1;
+            byte[] response = ("""
+                    {"attributeScores": {
+                      "PROFANITY": {"spanScores": [], "summaryScore": {"value": %s, "type": "PROBABILITY"}},
+                      "TOXICITY": {"summaryScore": {"value": %s, "type": "PROBABILITY"}}},
+                     "languages": ["en"], "detectedLanguages": ["en"]}
+                    """).formatted(score, score / 2).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            exchange.getResponseBody().write(response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Test
+    void analyze_shouldSendTypedRequestAndDecodeScores() {
+        PerspectiveClient.Scores scores = client.analyze("a bad review").join();
+
+        assertThat(scores).isEqualTo(new PerspectiveClient.Scores(0.9, 0.45));
+        JsonNode body = bodies.peek();
+        assertThat(body.path("comment").path("text").asText()).isEqualTo("a bad review");
+        assertThat(body.path("languages").get(0).asText()).isEqualTo("en");
+        assertThat(body.path("requestedAttributes").has("PROFANITY")).isTrue();
+        assertThat(body.path("requestedAttributes").has("TOXICITY")).isTrue();
+    }
+
+    @Test
+    void analyze_shouldShareOneCall_whenSameTextArrivesInOneWindow() {
+        latencyMillis = 50;
+        List<CompletableFuture<PerspectiveClient.Scores>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(client.analyze("the same pasted review"));
+        }
+
+        results.forEach(CompletableFuture::join);
+
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(results).allSatisfy(result -> assertThat(result.join().profanity()).isEqualTo(0.1));
+    }
+
+    @Test
+    void analyze_shouldFailOnlyThatCall_whenApiReturnsError() {
+        status = 429;
+        CompletableFuture<PerspectiveClient.Scores> failed = client.analyze("rate limited");
+
+        CompletionException error = assertThrows(CompletionException.class, failed::join);
+        assertThat(error.getCause()).isInstanceOf(IllegalStateException.class).hasMessageContaining("429");
+
+        status = 200;
+        assertThat(client.analyze("next review").join().profanity()).isEqualTo(0.1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void analyze_shouldCompleteEachCallerWithinConcurrencyCap(int submitters) throws Exception {
+        int callsPerSubmitter = 5;
+        ExecutorService pool = Executors.newFixedThreadPool(submitters);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> mismatches = new ArrayList<>();
+        for (int s = 0; s < submitters; s++) {
+            int submitter = s;
+            mismatches.add(pool.submit(() -> {
+                start.await();
+                int wrong = 0;
+                for (int i = 0; i < callsPerSubmitter; i++) {
+                    boolean bad = (submitter + i) % 3 == 0;
+                    String text = "review " + submitter + "-" + i + (bad ? " bad" : "");
+                    double expected = bad ? 0.9 : 0.1;
+                    if (client.analyze(text).join().profanity() != expected) {
+                        wrong++;
+                    }
+                }
+                return wrong;
+            }));
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        int wrong = 0;
+        for (Future<Integer> mismatch : mismatches) {
+            wrong += mismatch.get();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        pool.shutdown();
+
+        int calls = submitters * callsPerSubmitter;
+        log.info("Perspective client: {} submitters, {} calls in {}s, {} calls/s, max {} in flight",
+                submitters, calls, String.format("%.3f", seconds), Math.round(calls / seconds), maxInFlight.get());
+        assertThat(wrong).isZero();
+        assertThat(requests.get()).isEqualTo(calls);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(MAX_CONCURRENCY);
+    }
+}
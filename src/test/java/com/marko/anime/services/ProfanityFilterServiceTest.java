@@ -0,0 +1,90 @@
+package com.marko.anime.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfanityFilterServiceTest {
+
+    @Mock
+    private ProfanityMatcher profanityMatcher;
+
+    @Mock
+    private PerspectiveClient perspectiveClient;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private ProfanityFilterService profanityFilterService;
+
+    @BeforeEach
+    void init() {
+        ModerationVerdictCache verdictCache = new ModerationVerdictCache(mongoTemplate, 100, Duration.ofDays(7), false);
+        profanityFilterService = new ProfanityFilterService(profanityMatcher, perspectiveClient, verdictCache, 0.5, 0.5, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void hasProfanity_shouldRejectListedWordWithoutCallingApi() {
+        when(profanityMatcher.matches("this is shit")).thenReturn(true);
+
+        assertThat(profanityFilterService.hasProfanity("this is shit").join()).isTrue();
+
+        verifyNoInteractions(perspectiveClient);
+    }
+
+    @Test
+    void hasProfanity_shouldAskApi_whenNoListedWord() {
+        when(perspectiveClient.analyze("subtly rude")).thenReturn(
+                CompletableFuture.completedFuture(new PerspectiveClient.Scores(0.2, 0.7)));
+        when(perspectiveClient.analyze("kind words")).thenReturn(
+                CompletableFuture.completedFuture(new PerspectiveClient.Scores(0.1, 0.1)));
+
+        assertThat(profanityFilterService.hasProfanity("subtly rude").join()).isTrue();
+        assertThat(profanityFilterService.hasProfanity("kind words").join()).isFalse();
+    }
+
+    @Test
+    void hasProfanity_shouldReuseVerdict_whenSameBodyIsResubmitted() {
+        when(perspectiveClient.analyze("Kind words,  really.")).thenReturn(
+                CompletableFuture.completedFuture(new PerspectiveClient.Scores(0.1, 0.1)));
+
+        assertThat(profanityFilterService.hasProfanity("Kind words,  really.").join()).isFalse();
+        assertThat(profanityFilterService.hasProfanity("kind words, really.").join()).isFalse();
+
+        verify(perspectiveClient, times(1)).analyze(anyString());
+    }
+
+    @Test
+    void hasProfanity_shouldFail_whenApiCallFails() {
+        when(perspectiveClient.analyze("kind words")).thenReturn(CompletableFuture.failedFuture(new IOException("reset")));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> profanityFilterService.hasProfanity("kind words").join());
+        assertThat(error.getCause()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void hasProfanity_shouldTimeOut_whenApiNeverAnswers() {
+        ProfanityFilterService impatient = new ProfanityFilterService(profanityMatcher, perspectiveClient,
+                new ModerationVerdictCache(mongoTemplate, 100, Duration.ofDays(7), false), 0.5, 0.5, Duration.ofMillis(20));
+        when(perspectiveClient.analyze("kind words")).thenReturn(new CompletableFuture<>());
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> impatient.hasProfanity("kind words").join());
+        assertThat(error.getCause()).isInstanceOf(TimeoutException.class);
+    }
+}
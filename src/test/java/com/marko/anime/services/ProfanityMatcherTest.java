@@ -0,0 +1,100 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.ProfanityWordListDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProfanityMatcherTest {
+
+    private final ProfanityMatcher matcher = matcher("""
+            # comment
+            shit
+            ass
+            son of a bitch
+            """);
+
+    @Test
+    void matches_shouldFindWholeWordsAndPhrases() {
+        assertThat(matcher.matches("This anime is shit.")).isTrue();
+        assertThat(matcher.matches("shit")).isTrue();
+        assertThat(matcher.matches("Great show, but the villain is a son   of a-bitch!")).isTrue();
+        assertThat(matcher.matches("Watched it twice, loved every episode")).isFalse();
+        assertThat(matcher.matches(null)).isFalse();
+    }
+
+    @Test
+    void matches_shouldNotFlagWordsThatOnlyContainListedWord() {
+        assertThat(matcher.matches("A classic that surpasses its source, an assassin story.")).isFalse();
+        assertThat(matcher.matches("Shitake mushrooms")).isFalse();
+    }
+
+    @Test
+    void matches_shouldFoldCaseDiacriticsAndLeetspeak() {
+        assertThat(matcher.matches("SHIT")).isTrue();
+        assertThat(matcher.matches("what a shït ending")).isTrue();
+        assertThat(matcher.matches("what a sh!t ending")).isTrue();
+        assertThat(matcher.matches("what a 5hit ending")).isTrue();
+        assertThat(matcher.matches("kick @ss fights")).isTrue();
+        assertThat(matcher.matches("a$$ kicking")).isTrue();
+        assertThat(matcher.matches("Episode 55 was great!")).isFalse();
+        assertThat(matcher.matches("Wow! 10/10")).isFalse();
+    }
+
+    @Test
+    void matches_shouldFindOverlappingPatterns() {
+        ProfanityMatcher overlapping = matcher("he\nshe\nhers\nhis\n");
+
+        assertThat(overlapping.matches("ushers")).isFalse();
+        assertThat(overlapping.matches("it is hers now")).isTrue();
+        assertThat(overlapping.matches("u she")).isTrue();
+    }
+
+    @Test
+    void bundledWordList_shouldLoad() {
+        ProfanityMatcher bundled = new ProfanityMatcher(new ClassPathResource("profanity-words.txt"));
+
+        assertThat(bundled.wordListInfo().getWords()).isPositive();
+        assertThat(bundled.matches("What a load of bullsh1t")).isTrue();
+        assertThat(bundled.matches("Peaceful slice of life about a bakery")).isFalse();
+    }
+
+    @Test
+    void reload_shouldSwapInEditedWordList(@TempDir Path dir) throws IOException {
+        Path words = Files.writeString(dir.resolve("words.txt"), "shit\n");
+        ProfanityMatcher reloadable = new ProfanityMatcher(new FileSystemResource(words));
+        assertThat(reloadable.matches("what a dud")).isFalse();
+
+        Files.writeString(words, "shit\ndud\n");
+        ProfanityWordListDTO reloaded = reloadable.reload();
+
+        assertThat(reloaded.getWords()).isEqualTo(2);
+        assertThat(reloadable.matches("what a dud")).isTrue();
+    }
+
+    @Test
+    void reload_shouldKeepCurrentWords_whenListCannotBeRead(@TempDir Path dir) throws IOException {
+        Path words = Files.writeString(dir.resolve("words.txt"), "shit\n");
+        ProfanityMatcher reloadable = new ProfanityMatcher(new FileSystemResource(words));
+        Files.delete(words);
+
+        assertThrows(UncheckedIOException.class, reloadable::reload);
+
+        assertThat(reloadable.matches("shit")).isTrue();
+    }
+
+    private static ProfanityMatcher matcher(String words) {
+        return new ProfanityMatcher(new ByteArrayResource(words.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,233 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
+import com.marko.anime.models.ReviewCleanupTask;
+import com.marko.anime.repositories.ReviewCleanupTaskRepository;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewCleanupServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ReviewCleanupTaskRepository taskRepository;
+
+    @Mock
+    private ReviewImdbIdMigration migration;
+
+    private ReviewCleanupService cleanupService;
+
+    @BeforeEach
+    void init() {
+        cleanupService = new ReviewCleanupService(mongoTemplate, taskRepository, migration, 2, Duration.ZERO);
+    }
+
+    private static List<ObjectId> ids(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new ObjectId()).toList();
+    }
+
+    private static Collection<ObjectId> inIds(Query query) {
+        return idsAt(query.getQueryObject().get("_id", Document.class), "$in");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<ObjectId> idsAt(Document document, String key) {
+        return document.get(key, Collection.class);
+    }
+
+    @Test
+    void schedule_shouldPersistTaskWithDistinctLegacyReferences() {
+        ObjectId review = new ObjectId();
+        cleanupService.schedule("tt1", List.of(review, review));
+        cleanupService.schedule("tt2", List.of());
+
+        ArgumentCaptor<ReviewCleanupTask> task = ArgumentCaptor.forClass(ReviewCleanupTask.class);
+        verify(taskRepository, times(2)).save(task.capture());
+        assertThat(task.getAllValues().get(0).getImdbId()).isEqualTo("tt1");
+        assertThat(task.getAllValues().get(0).getPendingReviewIds()).containsExactly(review);
+        assertThat(task.getAllValues().get(1).getPendingReviewIds()).isEmpty();
+        assertThat(task.getAllValues().get(1).getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    void processPendingTasks_shouldDeleteInBatchesAndRecordProgress() {
+        List<ObjectId> reviews = ids(5);
+        List<ObjectId> byImdbId = ids(1);
+        LocalDateTime deletedAt = LocalDateTime.now();
+        ReviewCleanupTask task = ReviewCleanupTask.builder().id(new ObjectId()).imdbId("tt1")
+                .pendingReviewIds(reviews).createdAt(deletedAt).build();
+        when(taskRepository.findAllByOrderByCreatedAtAsc()).thenReturn(List.of(task));
+        ArgumentCaptor<Query> lookups = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(lookups.capture(), eq(Document.class), eq("reviews")))
+                .thenReturn(List.of(new Document("_id", byImdbId.get(0))));
+        ArgumentCaptor<Query> deletes = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.remove(deletes.capture(), eq(Review.class))).thenReturn(DeleteResult.acknowledged(2));
+
+        cleanupService.processPendingTasks();
+
+        assertThat(deletes.getAllValues()).hasSize(4);
+        assertThat(inIds(deletes.getAllValues().get(0))).containsExactly(reviews.get(0), reviews.get(1));
+        assertThat(inIds(deletes.getAllValues().get(2))).containsExactly(reviews.get(4));
+        assertThat(inIds(deletes.getAllValues().get(3))).containsExactly(byImdbId.get(0));
+        assertThat(lookups.getValue().getQueryObject()).isEqualTo(new Document("imdbId", "tt1")
+                .append("createdAt", new Document("$lte", deletedAt)));
+        ArgumentCaptor<Update> progress = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(4)).updateFirst(any(Query.class), progress.capture(), eq(ReviewCleanupTask.class));
+        Document first = progress.getAllValues().get(0).getUpdateObject();
+        assertThat(idsAt(first.get("$pullAll", Document.class), "pendingReviewIds"))
+                .containsExactly(reviews.get(0), reviews.get(1));
+        assertThat(first.get("$inc", Document.class).get("deletedReviews")).isEqualTo(2L);
+        verify(taskRepository).deleteById(task.getId());
+    }
+
+    @Test
+    void scheduleMove_shouldMoveReviewsAndDropTask() {
+        ObjectId taskId = new ObjectId();
+        when(taskRepository.save(any(ReviewCleanupTask.class))).thenAnswer(invocation -> {
+            ReviewCleanupTask task = invocation.getArgument(0);
+            task.setId(taskId);
+            return task;
+        });
+        ArgumentCaptor<Query> moved = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> move = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateMulti(moved.capture(), move.capture(), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(3, 3L, null));
+
+        cleanupService.scheduleMove("tt1", "tt2");
+
+        assertThat(moved.getValue().getQueryObject().get("imdbId")).isEqualTo("tt1");
+        assertThat(move.getValue().getUpdateObject()).isEqualTo(new Document("$set", new Document("imdbId", "tt2")));
+        verify(taskRepository).deleteById(taskId);
+    }
+
+    @Test
+    void scheduleMove_shouldKeepTaskForRetry_whenMoveFails() {
+        when(taskRepository.save(any(ReviewCleanupTask.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenThrow(new DataAccessResourceFailureException("timed out"));
+
+        cleanupService.scheduleMove("tt1", "tt2");
+
+        verify(taskRepository, never()).deleteById(any());
+        ArgumentCaptor<ReviewCleanupTask> task = ArgumentCaptor.forClass(ReviewCleanupTask.class);
+        verify(taskRepository).save(task.capture());
+        assertThat(task.getValue().getMoveToImdbId()).isEqualTo("tt2");
+
+        //the scheduled run picks it up again
+        reset(mongoTemplate);
+        when(taskRepository.findAllByOrderByCreatedAtAsc()).thenReturn(List.of(task.getValue()));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        cleanupService.processPendingTasks();
+        verify(taskRepository).deleteById(task.getValue().getId());
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Review.class));
+    }
+
+    @Test
+    void scheduleMove_shouldDropReviewOfUserWhoReviewedTargetAlready() {
+        ObjectId movable = new ObjectId();
+        ObjectId duplicate = new ObjectId();
+        when(taskRepository.save(any(ReviewCleanupTask.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reviews")))
+                .thenReturn(List.of(new Document("_id", movable), new Document("_id", duplicate)))
+                .thenReturn(List.of());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.remove(removed.capture(), eq(Review.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        cleanupService.scheduleMove("tt1", "tt2");
+
+        assertThat(removed.getValue().getQueryObject()).isEqualTo(new Document("_id", duplicate)
+                .append("status", new Document("$in", ReviewService.LISTED_STATUSES)));
+        ArgumentCaptor<Update> count = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), count.capture(), eq(Anime.class));
+        assertThat(count.getValue().getUpdateObject()).isEqualTo(new Document("$inc", new Document("reviewCount", -1L)));
+    }
+
+    @Test
+    void scheduleMove_shouldNotLowerReviewCount_whenDroppedReviewWasPending() {
+        ObjectId duplicate = new ObjectId();
+        when(taskRepository.save(any(ReviewCleanupTask.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reviews")))
+                .thenReturn(List.of(new Document("_id", duplicate)))
+                .thenReturn(List.of());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.remove(removed.capture(), eq(Review.class)))
+                .thenReturn(DeleteResult.acknowledged(0), DeleteResult.acknowledged(1));
+
+        cleanupService.scheduleMove("tt1", "tt2");
+
+        assertThat(removed.getAllValues().get(1).getQueryObject()).isEqualTo(new Document("_id", duplicate));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Anime.class));
+    }
+
+    @Test
+    void sweepOrphans_shouldPageThroughReviewsAndDeleteThoseOfMissingAnime() {
+        List<ObjectId> reviews = ids(3);
+        ArgumentCaptor<Query> pages = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(pages.capture(), eq(Document.class), eq("reviews")))
+                .thenReturn(List.of(new Document("_id", reviews.get(0)).append("imdbId", "tt1"),
+                        new Document("_id", reviews.get(1)).append("imdbId", "tt404")))
+                .thenReturn(List.of(new Document("_id", reviews.get(2))));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("imdbId"), eq("anime"), eq(String.class)))
+                .thenReturn(List.of("tt1"));
+        when(migration.isCompleted()).thenReturn(true);
+        ArgumentCaptor<Query> deletes = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.remove(deletes.capture(), eq(Review.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        assertThat(cleanupService.sweepOrphans()).isEqualTo(2);
+
+        assertThat(inIds(deletes.getAllValues().get(0))).containsExactly(reviews.get(1));
+        assertThat(inIds(deletes.getAllValues().get(1))).containsExactly(reviews.get(2));
+        Document secondPage = pages.getAllValues().get(1).getQueryObject().get("_id", Document.class);
+        assertThat(secondPage.get("$gt")).isEqualTo(reviews.get(1));
+        assertThat((ObjectId) secondPage.get("$lt"))
+                .isLessThan(ReviewCleanupService.minObjectId(Instant.now().minus(Duration.ofMinutes(59))));
+    }
+
+    @Test
+    void sweepOrphans_shouldKeepReviewsWithoutImdbIdUntilMigrationCompleted() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reviews")))
+                .thenReturn(List.of(new Document("_id", new ObjectId())));
+
+        assertThat(cleanupService.sweepOrphans()).isZero();
+
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Review.class));
+    }
+}
@@ -0,0 +1,47 @@
+package com.marko.anime.services;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewCountBackfillTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ReviewCountBackfill backfill;
+
+    @Test
+    void backfill_shouldOnlyTouchAnimeWithoutCount() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(mongoTemplate.updateMulti(query.capture(), update.capture(), eq("anime")))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+
+        assertThat(backfill.backfill()).isEqualTo(2);
+
+        assertThat(query.getValue().getQueryObject())
+                .isEqualTo(new Document("reviewCount", new Document("$exists", false)));
+        List<Document> pipeline = ((AggregationUpdate) update.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(pipeline.get(0).toJson()).isEqualTo(Document.parse(
+                "{$set: {reviewCount: {$size: {$ifNull: ['$reviewIds', []]}}}}").toJson());
+    }
+}
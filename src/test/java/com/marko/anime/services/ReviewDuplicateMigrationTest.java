@@ -0,0 +1,124 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.Review;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewDuplicateMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    private ReviewDuplicateMigration migration;
+
+    @BeforeEach
+    void init() {
+        migration = new ReviewDuplicateMigration(mongoTemplate, 2);
+    }
+
+    @Test
+    void uniqueIndex_shouldCoverImdbIdAndUserIdOfMigratedReviews() {
+        Document options = ReviewDuplicateMigration.uniqueIndex().getIndexOptions();
+
+        assertThat(ReviewDuplicateMigration.uniqueIndex().getIndexKeys())
+                .isEqualTo(new Document("imdbId", 1).append("userId", 1));
+        assertThat(options.get("unique")).isEqualTo(true);
+        assertThat(options.get("partialFilterExpression"))
+                .isEqualTo(new Document("imdbId", new Document("$exists", true)));
+    }
+
+    @Test
+    void duplicatesAggregation_shouldGroupOldestFirst() {
+        List<Document> pipeline = ReviewDuplicateMigration.duplicatesAggregation().toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        assertThat(pipeline).extracting(stage -> stage.keySet().iterator().next())
+                .containsExactly("$match", "$sort", "$group", "$match");
+        assertThat(pipeline.get(1)).isEqualTo(new Document("$sort", new Document("createdAt", 1).append("_id", 1)));
+    }
+
+    @Test
+    void migrate_shouldKeepOldestReviewAndLowerReviewCountBeforeBuildingIndex() {
+        List<ObjectId> reviews = List.of(new ObjectId(), new ObjectId(), new ObjectId(), new ObjectId());
+        Document group = new Document("_id", new Document("imdbId", "tt1").append("userId", "u1"))
+                .append("reviewIds", reviews).append("count", 4);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("reviews"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(group), new Document()));
+        ArgumentCaptor<Query> deletes = ArgumentCaptor.forClass(Query.class);
+        //per batch the listed duplicates go first, then the pending ones that reviewCount never included
+        when(mongoTemplate.remove(deletes.capture(), eq(Review.class))).thenReturn(
+                DeleteResult.acknowledged(1), DeleteResult.acknowledged(1),
+                DeleteResult.acknowledged(1), DeleteResult.acknowledged(0));
+        when(mongoTemplate.indexOps(Review.class)).thenReturn(indexOperations);
+
+        migration.migrate();
+
+        assertThat(deletes.getAllValues()).extracting(query -> query.getQueryObject()
+                        .get("_id", Document.class).get("$in", Collection.class))
+                .containsExactly(List.of(reviews.get(1), reviews.get(2)), List.of(reviews.get(1), reviews.get(2)),
+                        List.of(reviews.get(3)), List.of(reviews.get(3)));
+        assertThat(deletes.getAllValues().get(0).getQueryObject().get("status"))
+                .isEqualTo(new Document("$in", ReviewService.LISTED_STATUSES));
+        assertThat(deletes.getAllValues().get(1).getQueryObject()).doesNotContainKey("status");
+        ArgumentCaptor<Update> count = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), count.capture(), eq(Anime.class));
+        assertThat(count.getValue().getUpdateObject()).isEqualTo(new Document("$inc", new Document("reviewCount", -2L)));
+        var order = inOrder(mongoTemplate, indexOperations);
+        order.verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(Anime.class));
+        order.verify(indexOperations).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    void migrate_shouldCleanUpAgain_whenIndexBuildHitsNewDuplicate() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("reviews"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+        when(mongoTemplate.indexOps(Review.class)).thenReturn(indexOperations);
+        when(indexOperations.ensureIndex(any(IndexDefinition.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"))
+                .thenReturn(ReviewDuplicateMigration.INDEX_NAME);
+
+        migration.migrate();
+
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq("reviews"), eq(Document.class));
+        verify(indexOperations, times(2)).ensureIndex(any(IndexDefinition.class));
+    }
+
+    @Test
+    void migrate_shouldSkipCleanup_whenIndexAlreadyExists() {
+        when(mongoTemplate.indexOps(Review.class)).thenReturn(indexOperations);
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(), ReviewDuplicateMigration.INDEX_NAME, true, false, null)));
+
+        migration.migrate();
+
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), anyString(), any());
+        verify(indexOperations, never()).ensureIndex(any(IndexDefinition.class));
+    }
+}
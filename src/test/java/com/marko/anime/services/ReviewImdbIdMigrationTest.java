@@ -0,0 +1,145 @@
+package com.marko.anime.services;
+
+import com.marko.anime.models.Review;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewImdbIdMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    private ReviewImdbIdMigration migration;
+
+    @BeforeEach
+    void init() {
+        migration = new ReviewImdbIdMigration(mongoTemplate, 2, Duration.ZERO);
+    }
+
+    @Test
+    void migrate_shouldAssignImdbIdInBatchesThenDropArrayAndIndex() {
+        ObjectId animeId = new ObjectId();
+        List<ObjectId> reviews = IntStream.range(0, 3).mapToObj(i -> new ObjectId()).toList();
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("anime")))
+                .thenReturn(List.of(new Document("_id", animeId).append("imdbId", "tt1").append("reviewIds", reviews)))
+                .thenReturn(List.of());
+        ArgumentCaptor<Query> anime = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> unset = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(mongoTemplate.updateFirst(anime.capture(), unset.capture(), eq("anime")))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.indexOps("anime")).thenReturn(indexOperations);
+        when(indexOperations.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(IndexField.create("_id", Sort.Direction.ASC)), "_id_", false, false, null),
+                new IndexInfo(List.of(IndexField.create("reviewIds", Sort.Direction.ASC)), "reviewIds", false, false, null)));
+
+        migration.migrate();
+
+        ArgumentCaptor<Query> assigned = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> assignment = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateMulti(assigned.capture(), assignment.capture(), eq(Review.class));
+        Document firstChunk = assigned.getAllValues().get(0).getQueryObject();
+        assertThat(firstChunk.get("_id", Document.class).getList("$in", ObjectId.class))
+                .containsExactly(reviews.get(0), reviews.get(1));
+        assertThat(firstChunk.get("imdbId")).isEqualTo(new Document("$exists", false));
+        assertThat(assignment.getValue().getUpdateObject()).isEqualTo(new Document("$set", new Document("imdbId", "tt1")));
+
+        assertThat(anime.getValue().getQueryObject()).isEqualTo(new Document("_id", animeId)
+                .append("$and", List.of(new Document("reviewIds", new Document("$size", 3)))));
+        List<Document> pipeline = ((AggregationUpdate) unset.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(pipeline.get(pipeline.size() - 1)).isEqualTo(new Document("$unset", "reviewIds"));
+        verify(indexOperations).dropIndex("reviewIds");
+        verify(indexOperations, never()).dropIndex("_id_");
+        assertThat(migration.isCompleted()).isTrue();
+    }
+
+    @Test
+    void migrate_shouldRetryLater_whenArrayChangedMeanwhile() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("anime"))).thenReturn(
+                List.of(new Document("_id", new ObjectId()).append("imdbId", "tt1").append("reviewIds", List.of())));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq("anime")))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        migration.migrate();
+
+        assertThat(migration.isCompleted()).isFalse();
+        verify(mongoTemplate, never()).indexOps(anyString());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Review.class));
+    }
+
+    @Test
+    void migrate_shouldDoNothing_onceCompleted() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("anime"))).thenReturn(List.of());
+        when(mongoTemplate.indexOps("anime")).thenReturn(indexOperations);
+
+        migration.migrate();
+        migration.migrate();
+
+        assertThat(migration.isCompleted()).isTrue();
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Document.class), eq("anime"));
+    }
+
+    @Test
+    void migrate_shouldDropUsersNewerReview_whenUniqueIndexRefusesLegacyOne() {
+        ObjectId kept = new ObjectId();
+        ObjectId legacy = new ObjectId();
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("anime")))
+                .thenReturn(List.of(new Document("_id", new ObjectId()).append("imdbId", "tt1").append("reviewIds", List.of(kept, legacy))))
+                .thenReturn(List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+        ArgumentCaptor<Query> assigned = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.updateFirst(assigned.capture(), any(Update.class), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.findOne(any(Query.class), eq(Review.class)))
+                .thenReturn(Review.builder().id(legacy).userId("u1").build());
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.remove(removed.capture(), eq(Review.class))).thenReturn(DeleteResult.acknowledged(1));
+        ArgumentCaptor<UpdateDefinition> unset = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(mongoTemplate.updateFirst(any(Query.class), unset.capture(), eq("anime")))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.indexOps("anime")).thenReturn(indexOperations);
+
+        migration.migrate();
+
+        assertThat(removed.getValue().getQueryObject()).isEqualTo(new Document("imdbId", "tt1")
+                .append("userId", "u1").append("_id", new Document("$ne", legacy)));
+        assertThat(assigned.getAllValues()).extracting(query -> query.getQueryObject().get("_id"))
+                .containsExactly(kept, legacy, legacy);
+        Document count = ((AggregationUpdate) unset.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT).get(0)
+                .get("$set", Document.class).get("reviewCount", Document.class);
+        assertThat(count.getList("$subtract", Object.class).get(1)).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,328 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.ModerationStatsDTO;
+import com.marko.anime.dtos.ReviewStatus;
+import com.marko.anime.dtos.ReviewStatusDTO;
+import com.marko.anime.models.Anime;
+import com.marko.anime.models.RejectedReview;
+import com.marko.anime.models.Review;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ExecutableUpdateOperation.ExecutableUpdate;
+import org.springframework.data.mongodb.core.ExecutableUpdateOperation.TerminatingUpdate;
+import org.springframework.data.mongodb.core.ExecutableUpdateOperation.UpdateWithUpdate;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReviewModerationServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProfanityFilterService profanityFilterService;
+
+    @Mock
+    private TrendingService trendingService;
+
+    @Mock
+    private ReviewStatusNotifier notifier;
+
+    private ReviewModerationService moderationService;
+
+    private final String body = "This anime review is long enough to pass the minimum length check.";
+
+    //workers are not started, tests drive moderate() directly
+    @BeforeEach
+    void init() {
+        moderationService = new ReviewModerationService(mongoTemplate, profanityFilterService, trendingService,
+                notifier, 2, 1, 4, Duration.ofMinutes(2), 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        moderationService.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void moderate_shouldApproveCountAndPublish_whenCleanReview() {
+        ObjectId reviewId = new ObjectId();
+        when(profanityFilterService.hasProfanity(body)).thenReturn(CompletableFuture.completedFuture(false));
+        ArgumentCaptor<Update> approval = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateFirst(any(Query.class), approval.capture(), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        ExecutableUpdate<Anime> executableUpdate = mock(ExecutableUpdate.class);
+        UpdateWithUpdate<Anime> updateWithUpdate = mock(UpdateWithUpdate.class);
+        TerminatingUpdate<Anime> terminatingUpdate = mock(TerminatingUpdate.class);
+        ArgumentCaptor<Criteria> counted = ArgumentCaptor.forClass(Criteria.class);
+        ArgumentCaptor<Update> increment = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.update(Anime.class)).thenReturn(executableUpdate);
+        when(executableUpdate.matching(counted.capture())).thenReturn(updateWithUpdate);
+        when(updateWithUpdate.apply(increment.capture())).thenReturn(terminatingUpdate);
+
+        moderationService.moderate(List.of(pending(reviewId)));
+
+        assertThat(approval.getAllValues().get(0).getUpdateObject())
+                .isEqualTo(new Document("$set", new Document("status", ReviewStatus.APPROVED).append("uncounted", true)));
+        assertThat(counted.getValue().getCriteriaObject())
+                .isEqualTo(new Document("imdbId", "tt1").append("countedReviewIds", new Document("$ne", reviewId)));
+        assertThat(increment.getValue().getUpdateObject().get("$inc")).isEqualTo(new Document("reviewCount", 1));
+        assertThat(increment.getValue().getUpdateObject().get("$push", Document.class)).containsKey("countedReviewIds");
+        verify(terminatingUpdate).first();
+        assertThat(approval.getAllValues().get(1).getUpdateObject())
+                .isEqualTo(new Document("$unset", new Document("uncounted", 1)));
+        verify(trendingService).recordReview("tt1");
+        ArgumentCaptor<ReviewStatusDTO> published = ArgumentCaptor.forClass(ReviewStatusDTO.class);
+        verify(notifier).publish(published.capture());
+        assertThat(published.getValue().getReviewId()).isEqualTo(reviewId.toHexString());
+        assertThat(published.getValue().getStatus()).isEqualTo(ReviewStatus.APPROVED);
+        assertThat(moderationService.stats().getApproved()).isEqualTo(1);
+    }
+
+    @Test
+    void moderate_shouldNotCountTwice_whenReviewNoLongerPending() {
+        when(profanityFilterService.hasProfanity(body)).thenReturn(CompletableFuture.completedFuture(false));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        moderationService.moderate(List.of(pending(new ObjectId())));
+
+        verify(mongoTemplate, never()).update(Anime.class);
+        verifyNoInteractions(trendingService, notifier);
+    }
+
+    @Test
+    void moderate_shouldMoveReviewToRejected_whenReviewHasProfanity() {
+        ObjectId reviewId = new ObjectId();
+        when(profanityFilterService.hasProfanity(body)).thenReturn(CompletableFuture.completedFuture(true));
+        Review review = Review.builder().id(reviewId).body(body).userId("u1").imdbId("tt1")
+                .status(ReviewStatus.PENDING).build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Review.class))).thenReturn(review);
+        ArgumentCaptor<RejectedReview> rejected = ArgumentCaptor.forClass(RejectedReview.class);
+        when(mongoTemplate.save(rejected.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.remove(any(Query.class), eq(Review.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        moderationService.moderate(List.of(pending(reviewId)));
+
+        var order = inOrder(mongoTemplate);
+        order.verify(mongoTemplate).save(any(RejectedReview.class));
+        order.verify(mongoTemplate).remove(any(Query.class), eq(Review.class));
+        assertThat(rejected.getValue().getId()).isEqualTo(reviewId);
+        assertThat(rejected.getValue().getUserId()).isEqualTo("u1");
+        assertThat(rejected.getValue().getReason()).isEqualTo(ReviewModerationService.REJECTED_MESSAGE);
+        assertThat(rejected.getValue().getRejectedAt()).isNotNull();
+        verify(mongoTemplate, never()).update(Anime.class);
+        verifyNoInteractions(trendingService);
+        verify(notifier).publish(new ReviewStatusDTO(reviewId.toHexString(), ReviewStatus.REJECTED,
+                ReviewModerationService.REJECTED_MESSAGE));
+        assertThat(moderationService.stats().getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void moderate_shouldLeaveReviewPending_whenFilterFails() {
+        ObjectId reviewId = new ObjectId();
+        when(profanityFilterService.hasProfanity(body)).thenThrow(new IllegalStateException("API unavailable"));
+
+        moderationService.moderate(List.of(pending(reviewId)));
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Review.class));
+        verifyNoInteractions(notifier);
+        assertThat(moderationService.stats().getFailed()).isEqualTo(1);
+        //no longer in flight, so it can be queued again
+        assertThat(moderationService.submit(review(reviewId))).isTrue();
+        assertThat(moderationService.stats().getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    void moderate_shouldCountFailureAndBackOff_beforeMaxAttempts() {
+        ObjectId reviewId = new ObjectId();
+        when(profanityFilterService.hasProfanity(body))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("API unavailable")));
+        ArgumentCaptor<Update> attempt = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(any(Query.class), attempt.capture(), any(FindAndModifyOptions.class), eq(Review.class)))
+                .thenReturn(Review.builder().id(reviewId).moderationAttempts(2).build());
+        ArgumentCaptor<Update> backoff = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateFirst(any(Query.class), backoff.capture(), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        LocalDateTime before = LocalDateTime.now();
+        moderationService.moderate(List.of(pending(reviewId)));
+
+        assertThat(attempt.getValue().getUpdateObject())
+                .isEqualTo(new Document("$inc", new Document("moderationAttempts", 1)));
+        LocalDateTime next = (LocalDateTime) backoff.getValue().getUpdateObject()
+                .get("$set", Document.class).get("nextAttemptAt");
+        //second failure waits twice requeue-after
+        assertThat(next).isAfterOrEqualTo(before.plusMinutes(4)).isBefore(before.plusMinutes(5));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Review.class));
+        verifyNoInteractions(notifier);
+    }
+
+    @Test
+    void moderate_shouldMoveReviewToRejectedWithError_afterMaxAttempts() {
+        ObjectId reviewId = new ObjectId();
+        when(profanityFilterService.hasProfanity(body))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("API unavailable")));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Review.class)))
+                .thenReturn(Review.builder().id(reviewId).moderationAttempts(3).build());
+        Review review = Review.builder().id(reviewId).body(body).userId("u1").imdbId("tt1")
+                .status(ReviewStatus.PENDING).moderationAttempts(3).build();
+        when(mongoTemplate.findOne(any(Query.class), eq(Review.class))).thenReturn(review);
+        ArgumentCaptor<RejectedReview> settled = ArgumentCaptor.forClass(RejectedReview.class);
+        when(mongoTemplate.save(settled.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.remove(any(Query.class), eq(Review.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        moderationService.moderate(List.of(pending(reviewId)));
+
+        assertThat(settled.getValue().getId()).isEqualTo(reviewId);
+        assertThat(settled.getValue().getStatus()).isEqualTo(ReviewStatus.ERROR);
+        assertThat(settled.getValue().getReason()).isEqualTo(ReviewModerationService.FAILED_MESSAGE);
+        verify(notifier).publish(new ReviewStatusDTO(reviewId.toHexString(), ReviewStatus.ERROR,
+                ReviewModerationService.FAILED_MESSAGE));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Review.class));
+    }
+
+    @Test
+    void moderate_shouldStartEveryCheckOfBatch_beforeWaitingOnAny() {
+        String otherBody = "Another review that is long enough to pass the minimum length check.";
+        when(profanityFilterService.hasProfanity(body)).thenReturn(CompletableFuture.supplyAsync(() -> false,
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)));
+        when(profanityFilterService.hasProfanity(otherBody)).thenReturn(CompletableFuture.completedFuture(true));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Review.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        moderationService.moderate(List.of(pending(new ObjectId()),
+                new ReviewModerationService.PendingReview(new ObjectId(), otherBody, "tt1", System.nanoTime())));
+
+        var order = inOrder(profanityFilterService, mongoTemplate);
+        order.verify(profanityFilterService).hasProfanity(body);
+        order.verify(profanityFilterService).hasProfanity(otherBody);
+        order.verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(Review.class));
+        order.verify(mongoTemplate).findOne(any(Query.class), eq(Review.class));
+    }
+
+    @Test
+    void moderate_shouldDropRejectedCopy_whenReviewWasSettledMeanwhile() {
+        ObjectId reviewId = new ObjectId();
+        when(profanityFilterService.hasProfanity(body)).thenReturn(CompletableFuture.completedFuture(true));
+        when(mongoTemplate.findOne(any(Query.class), eq(Review.class))).thenReturn(review(reviewId));
+        when(mongoTemplate.save(any(RejectedReview.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mongoTemplate.remove(any(Query.class), eq(Review.class))).thenReturn(DeleteResult.acknowledged(0));
+
+        moderationService.moderate(List.of(pending(reviewId)));
+
+        ArgumentCaptor<RejectedReview> dropped = ArgumentCaptor.forClass(RejectedReview.class);
+        verify(mongoTemplate).remove(dropped.capture());
+        assertThat(dropped.getValue().getId()).isEqualTo(reviewId);
+        verifyNoInteractions(notifier);
+        assertThat(moderationService.stats().getRejected()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countApproved_shouldFinishIncrementsOfUncountedReviews() {
+        ObjectId reviewId = new ObjectId();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(Review.class)))
+                .thenReturn(List.of(Review.builder().id(reviewId).imdbId("tt1").build()));
+        ExecutableUpdate<Anime> executableUpdate = mock(ExecutableUpdate.class);
+        UpdateWithUpdate<Anime> updateWithUpdate = mock(UpdateWithUpdate.class);
+        TerminatingUpdate<Anime> terminatingUpdate = mock(TerminatingUpdate.class);
+        ArgumentCaptor<Criteria> counted = ArgumentCaptor.forClass(Criteria.class);
+        when(mongoTemplate.update(Anime.class)).thenReturn(executableUpdate);
+        when(executableUpdate.matching(counted.capture())).thenReturn(updateWithUpdate);
+        when(updateWithUpdate.apply(any(Update.class))).thenReturn(terminatingUpdate);
+
+        assertThat(moderationService.countApproved()).isEqualTo(1);
+
+        assertThat(query.getValue().getQueryObject())
+                .isEqualTo(new Document("uncounted", true).append("status", ReviewStatus.APPROVED));
+        assertThat(counted.getValue().getCriteriaObject().get("countedReviewIds"))
+                .isEqualTo(new Document("$ne", reviewId));
+        verify(terminatingUpdate).first();
+        verify(mongoTemplate).updateFirst(any(Query.class), eq(new Update().unset("uncounted")), eq(Review.class));
+    }
+
+    @Test
+    void submit_shouldDropReview_whenQueueIsFull() {
+        assertThat(moderationService.submit(review(new ObjectId()))).isTrue();
+        assertThat(moderationService.submit(review(new ObjectId()))).isTrue();
+
+        assertThat(moderationService.submit(review(new ObjectId()))).isFalse();
+
+        ModerationStatsDTO stats = moderationService.stats();
+        assertThat(stats.getQueueDepth()).isEqualTo(2);
+        assertThat(stats.getQueueCapacity()).isEqualTo(2);
+        assertThat(stats.getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_shouldNotQueueSameReviewTwice() {
+        Review review = review(new ObjectId());
+
+        moderationService.submit(review);
+        moderationService.submit(review);
+
+        assertThat(moderationService.stats().getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    void requeuePending_shouldQueueOldestStalePendingReviewsThatFit() {
+        Review queued = review(new ObjectId());
+        moderationService.submit(queued);
+        Review stale = review(new ObjectId());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(Review.class))).thenReturn(List.of(queued, stale));
+
+        int requeued = moderationService.requeuePending();
+
+        assertThat(requeued).isEqualTo(1);
+        assertThat(query.getValue().getLimit()).isEqualTo(1);
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("createdAt", 1));
+        assertThat(query.getValue().getQueryObject().get("status")).isEqualTo(ReviewStatus.PENDING);
+        assertThat(query.getValue().getQueryObject().getList("$or", Document.class)).hasSize(2);
+        assertThat(moderationService.stats().getQueueDepth()).isEqualTo(2);
+    }
+
+    @Test
+    void requeuePending_shouldSkipQuery_whenQueueIsFull() {
+        moderationService.submit(review(new ObjectId()));
+        moderationService.submit(review(new ObjectId()));
+
+        assertThat(moderationService.requeuePending()).isZero();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private ReviewModerationService.PendingReview pending(ObjectId reviewId) {
+        return new ReviewModerationService.PendingReview(reviewId, body, "tt1", System.nanoTime());
+    }
+
+    private Review review(ObjectId reviewId) {
+        return Review.builder().id(reviewId).body(body).imdbId("tt1").status(ReviewStatus.PENDING).build();
+    }
+}
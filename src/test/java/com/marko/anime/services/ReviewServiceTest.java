@@ -1,32 +1,40 @@
 package com.marko.anime.services;
 
+import com.marko.anime.dtos.CursorPageDTO;
 import com.marko.anime.dtos.ReviewStatus;
+import com.marko.anime.dtos.ReviewStatusDTO;
 import com.marko.anime.dtos.ReviewSubmissionResult;
+import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.exceptions.ReviewNotFoundException;
 import com.marko.anime.models.Anime;
+import com.marko.anime.models.RejectedReview;
 import com.marko.anime.models.Review;
 import com.marko.anime.models.User;
-import com.marko.anime.repositories.AnimeRepository;
 import com.marko.anime.repositories.ReviewRepository;
 import com.marko.anime.repositories.UserRepository;
-import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.mongodb.core.ExecutableUpdateOperation.ExecutableUpdate;
-import org.springframework.data.mongodb.core.ExecutableUpdateOperation.TerminatingUpdate;
-import org.springframework.data.mongodb.core.ExecutableUpdateOperation.UpdateWithUpdate;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.Query;
 
-import java.util.ArrayList;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -36,9 +44,6 @@ class ReviewServiceTest {
     @Mock
     private ReviewRepository reviewRepository;
 
-    @Mock
-    private AnimeRepository animeRepository;
-
     @Mock
     private MongoTemplate mongoTemplate;
 
@@ -46,7 +51,13 @@ class ReviewServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private ProfanityFilterService profanityFilterService;
+    private KnownAnimeIds knownAnimeIds;
+
+    @Mock
+    private ReviewModerationService moderationService;
+
+    @Mock
+    private ReviewStatusNotifier statusNotifier;
 
     @InjectMocks
     private ReviewService reviewService;
@@ -69,34 +80,32 @@ class ReviewServiceTest {
     }
 
     @Test
-    void submitReview_ShouldReturnApproved_WhenSuccessful() {
+    void submitReview_ShouldStorePendingReviewAndQueueIt() {
         when(userRepository.findByUserId(userId)).thenReturn(Optional.of(user));
-        Anime anime = new Anime();
-        anime.setReviewIds(new ArrayList<>());
-        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.of(anime));
-        when(profanityFilterService.hasProfanity(body)).thenReturn(false);
-        when(reviewRepository.save(any(Review.class))).thenReturn(review);
-
-        ExecutableUpdate executableUpdate = mock(ExecutableUpdate.class);
-        TerminatingUpdate terminatingUpdate = mock(TerminatingUpdate.class);
-        UpdateWithUpdate updateWithUpdate = mock(UpdateWithUpdate.class);
-
-        when(mongoTemplate.update(Anime.class)).thenReturn(executableUpdate);
-        when(executableUpdate.matching(any(Criteria.class))).thenReturn(updateWithUpdate);
-        when(updateWithUpdate.apply(any(Update.class))).thenReturn(terminatingUpdate);
-        when(terminatingUpdate.first()).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        review.setId(new ObjectId());
+        ArgumentCaptor<Review> saved = ArgumentCaptor.forClass(Review.class);
+        when(reviewRepository.insert(saved.capture())).thenReturn(review);
 
         ReviewSubmissionResult result = reviewService.submitReview(body, imdbId, userId);
 
-        assertThat(result.getStatus()).isEqualTo(ReviewStatus.APPROVED);
-        assertThat(result.getMessage()).isEqualTo("Review published!");
+        assertThat(result.getStatus()).isEqualTo(ReviewStatus.PENDING);
+        assertThat(result.getMessage()).isEqualTo("Review submitted for moderation.");
+        assertThat(result.getReviewId()).isEqualTo(review.getId().toHexString());
+        assertThat(saved.getValue().getImdbId()).isEqualTo(imdbId);
+        assertThat(saved.getValue().getStatus()).isEqualTo(ReviewStatus.PENDING);
+        verify(moderationService, times(1)).submit(review);
+        verify(mongoTemplate, never()).update(Anime.class);
+    }
+    @Test
+    void submitReview_ShouldThrowNotFound_WhenAnimeUnknownOrMissing() {
+        when(userRepository.findByUserId(userId)).thenReturn(Optional.of(user));
+        when(knownAnimeIds.isUnknown("tt404")).thenReturn(true);
+
+        assertThrows(AnimeNotFoundException.class, () -> reviewService.submitReview(body, "tt404", userId));
+        assertThrows(AnimeNotFoundException.class, () -> reviewService.submitReview(body, null, userId));
+        assertThrows(AnimeNotFoundException.class, () -> reviewService.submitReview(body, " ", userId));
 
-        verify(userRepository, times(1)).findByUserId(userId);
-        verify(reviewRepository, times(1)).save(any(Review.class));
-        verify(mongoTemplate, times(1)).update(Anime.class);
-        verify(executableUpdate, times(1)).matching(any(Criteria.class));
-        verify(updateWithUpdate, times(1)).apply(any(Update.class));
-        verify(terminatingUpdate, times(1)).first();
+        verifyNoInteractions(reviewRepository, moderationService);
     }
     @Test
     void submitReview_ShouldReturnError_WhenUserNotFound() {
@@ -119,24 +128,124 @@ class ReviewServiceTest {
     @Test
     void submitReview_ShouldReturnRejected_WhenReviewAlreadyExists() {
         when(userRepository.findByUserId(userId)).thenReturn(Optional.of(user));
-        Anime anime = new Anime();
-        anime.setReviewIds(List.of(review));
-        when(animeRepository.findAnimeByImdbId(imdbId)).thenReturn(Optional.of(anime));
-        when(reviewRepository.getById(any())).thenReturn(Optional.of(review));
+        when(reviewRepository.insert(any(Review.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
 
         ReviewSubmissionResult result = reviewService.submitReview(body, imdbId, userId);
 
         assertThat(result.getStatus()).isEqualTo(ReviewStatus.REJECTED);
         assertThat(result.getMessage()).isEqualTo("Review for this anime has already been posted by user.");
+        verifyNoInteractions(moderationService);
     }
     @Test
-    void submitReview_ShouldReturnRejected_WhenReviewHasProfanity() {
-        when(userRepository.findByUserId(userId)).thenReturn(Optional.of(user));
-        when(profanityFilterService.hasProfanity(body)).thenReturn(true);
+    void findReviewStatus_shouldReportPendingAndLegacyReviews() {
+        String reviewId = new ObjectId().toHexString();
+        when(mongoTemplate.findOne(any(Query.class), eq(Review.class)))
+                .thenReturn(Review.builder().status(ReviewStatus.PENDING).build(), Review.builder().build());
+
+        assertThat(reviewService.findReviewStatus(reviewId).getStatus()).isEqualTo(ReviewStatus.PENDING);
+        ReviewStatusDTO legacy = reviewService.findReviewStatus(reviewId);
+        assertThat(legacy.getStatus()).isEqualTo(ReviewStatus.APPROVED);
+        assertThat(legacy.getReviewId()).isEqualTo(reviewId);
+    }
 
-        ReviewSubmissionResult result = reviewService.submitReview(body, imdbId, userId);
+    @Test
+    void findReviewStatus_shouldFallBackToRejectedReviews() {
+        ObjectId reviewId = new ObjectId();
+        when(mongoTemplate.findById(reviewId, RejectedReview.class))
+                .thenReturn(RejectedReview.builder().id(reviewId).reason("Review rejected due to profanity!").build());
 
-        assertThat(result.getStatus()).isEqualTo(ReviewStatus.REJECTED);
-        assertThat(result.getMessage()).isEqualTo("Review rejected due to profanity!");
+        ReviewStatusDTO status = reviewService.findReviewStatus(reviewId.toHexString());
+
+        assertThat(status.getStatus()).isEqualTo(ReviewStatus.REJECTED);
+        assertThat(status.getMessage()).isEqualTo("Review rejected due to profanity!");
+    }
+
+    @Test
+    void findReviewStatus_shouldRejectInvalidAndUnknownIds() {
+        assertThrows(IllegalArgumentException.class, () -> reviewService.findReviewStatus("not-an-id"));
+        assertThrows(ReviewNotFoundException.class, () -> reviewService.findReviewStatus(new ObjectId().toHexString()));
+    }
+
+    @Test
+    void watchReviewStatus_shouldPublishOutcomeThatArrivedWhileSubscribing() {
+        String reviewId = new ObjectId().toHexString();
+        when(mongoTemplate.findOne(any(Query.class), eq(Review.class)))
+                .thenReturn(Review.builder().status(ReviewStatus.PENDING).build(),
+                        Review.builder().status(ReviewStatus.APPROVED).build());
+        SseEmitter emitter = new SseEmitter();
+        when(statusNotifier.subscribe(reviewId)).thenReturn(emitter);
+
+        assertThat(reviewService.watchReviewStatus(reviewId)).isSameAs(emitter);
+
+        ArgumentCaptor<ReviewStatusDTO> published = ArgumentCaptor.forClass(ReviewStatusDTO.class);
+        verify(statusNotifier).publish(published.capture());
+        assertThat(published.getValue().getStatus()).isEqualTo(ReviewStatus.APPROVED);
+    }
+
+    @Test
+    void reviewPageQuery_shouldSeekPastCursorOnReviewsIndex() {
+        ObjectId lastId = new ObjectId();
+        KeysetCursor after = new KeysetCursor(lastId, "1700000000000");
+
+        Query query = ReviewService.reviewPageQuery(imdbId, after, 6);
+
+        assertThat(query.getQueryObject()).isEqualTo(new Document("imdbId", imdbId)
+                .append("status", new Document("$in", ReviewService.LISTED_STATUSES))
+                .append("$or", List.of(
+                        new Document("createdAt", new Document("$lt", new Date(1700000000000L))),
+                        new Document("createdAt", new Date(1700000000000L)).append("_id", new Document("$lt", lastId)),
+                        new Document("createdAt", null))));
+        assertThat(query.getSortObject()).isEqualTo(new Document("createdAt", -1).append("_id", -1));
+        assertThat(query.getLimit()).isEqualTo(6);
+    }
+
+    @Test
+    void findReviewPage_shouldReturnPageAndCursorOfLastReview() {
+        LocalDateTime older = LocalDateTime.of(2024, 1, 1, 12, 0);
+        ObjectId olderId = new ObjectId();
+        List<Review> rows = List.of(
+                Review.builder().id(new ObjectId()).body("first").createdAt(older.plusSeconds(1)).build(),
+                Review.builder().id(olderId).body("second").createdAt(older).build(),
+                Review.builder().id(new ObjectId()).body("third").createdAt(older).build());
+        when(mongoTemplate.find(any(Query.class), eq(Review.class))).thenReturn(rows);
+
+        CursorPageDTO<Review> page = reviewService.findReviewPage(imdbId, null, 2);
+
+        assertThat(page.getContent()).extracting(Review::getBody).containsExactly("first", "second");
+        KeysetCursor next = KeysetCursor.decode(page.getNextCursor());
+        assertThat(next.getId()).isEqualTo(olderId);
+        assertThat(next.getValue())
+                .isEqualTo(String.valueOf(older.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(Anime.class));
+    }
+
+    @Test
+    void findReviewPage_shouldReturnEmptyPage_whenAnimeHasNoReviews() {
+        when(mongoTemplate.find(any(Query.class), eq(Review.class))).thenReturn(List.of());
+        when(mongoTemplate.exists(any(Query.class), eq(Anime.class))).thenReturn(true);
+
+        CursorPageDTO<Review> page = reviewService.findReviewPage(imdbId, null, 10);
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void findReviewPage_shouldRejectUnknownAnimeAndInvalidArguments() {
+        when(knownAnimeIds.isUnknown("tt404")).thenReturn(true);
+
+        assertThrows(AnimeNotFoundException.class, () -> reviewService.findReviewPage("tt404", null, 10));
+        assertThrows(IllegalArgumentException.class, () -> reviewService.findReviewPage(imdbId, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> reviewService.findReviewPage(imdbId,
+                new KeysetCursor(new ObjectId(), "yesterday").encode(), 10));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void findReviewPage_shouldThrowNotFound_whenAnimeMissing() {
+        when(mongoTemplate.find(any(Query.class), eq(Review.class))).thenReturn(List.of());
+        when(mongoTemplate.exists(any(Query.class), eq(Anime.class))).thenReturn(false);
+
+        assertThrows(AnimeNotFoundException.class, () -> reviewService.findReviewPage(imdbId, null, 10));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeSummaryDTO;
+import com.marko.anime.dtos.SimilarAnimeDTO;
+import com.marko.anime.exceptions.AnimeNotFoundException;
+import com.marko.anime.repositories.AnimeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SimilarAnimeIndexTest {
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    private SimilarAnimeIndex similarAnimeIndex;
+
+    @BeforeEach
+    void init() {
+        similarAnimeIndex = new SimilarAnimeIndex(animeRepository, 2000);
+    }
+
+    @AfterEach
+    void shutdown() {
+        similarAnimeIndex.shutdown();
+    }
+
+    private static AnimeSummaryDTO anime(String imdbId, String releaseDate, String... genres) {
+        return AnimeSummaryDTO.builder()
+                .imdbId(imdbId)
+                .title("Title " + imdbId)
+                .releaseDate(releaseDate)
+                .genres(List.of(genres))
+                .build();
+    }
+
+    private List<String> ids(String imdbId) {
+        return similarAnimeIndex.findSimilar(imdbId).stream().map(SimilarAnimeDTO::getImdbId).toList();
+    }
+
+    @Test
+    void findSimilar_shouldRankByGenreOverlapThenReleaseDate() {
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(List.of(
+                anime("tt1", "2013-04-07", "Action", "Drama", "Fantasy"),
+                anime("tt2", "2014-01-01", "Action", "Drama", "Fantasy"),
+                anime("tt3", "1990-01-01", "action", "Drama", "Fantasy"),
+                anime("tt4", "2013-05-01", "Action", "Comedy"),
+                anime("tt5", "2013-04-07", "Romance")));
+        similarAnimeIndex.rebuild();
+
+        assertThat(ids("tt1")).containsExactly("tt2", "tt3", "tt4");
+        assertThat(ids("tt5")).isEmpty();
+        SimilarAnimeDTO best = similarAnimeIndex.findSimilar("tt1").get(0);
+        assertThat(best.getTitle()).isEqualTo("Title tt2");
+        assertThat(best.getScore()).isCloseTo(SimilarAnimeIndex.GENRE_WEIGHT
+                + SimilarAnimeIndex.DATE_WEIGHT * Math.exp(-269 / (5 * 365.0)), within(1e-9));
+        assertThrows(AnimeNotFoundException.class, () -> similarAnimeIndex.findSimilar("tt0"));
+    }
+
+    @Test
+    void findSimilar_shouldKeepOnlyTheClosestNeighbours() {
+        List<AnimeSummaryDTO> catalog = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            catalog.add(anime("tt" + i, (2000 + i) + "-01-01", "Action"));
+        }
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(catalog);
+        similarAnimeIndex.rebuild();
+
+        assertThat(ids("tt0")).hasSize(SimilarAnimeIndex.NEIGHBOURS).startsWith("tt1", "tt2").endsWith("tt10");
+    }
+
+    @Test
+    void rebuild_shouldCompareOnlyMaxCandidates_whenGenreIsCommon() {
+        List<AnimeSummaryDTO> catalog = new ArrayList<>();
+        catalog.add(anime("tt0", "2000-01-01", "Action"));
+        for (int i = 1; i <= 40; i++) {
+            catalog.add(anime("tt" + i, (2041 - i) + "-01-01", "Action")); //tt40 is released closest to tt0
+        }
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(catalog);
+        SimilarAnimeIndex capped = new SimilarAnimeIndex(animeRepository, SimilarAnimeIndex.NEIGHBOURS);
+        try {
+            capped.rebuild();
+            similarAnimeIndex.rebuild();
+
+            assertThat(capped.findSimilar("tt0")).extracting(SimilarAnimeDTO::getImdbId)
+                    .hasSize(SimilarAnimeIndex.NEIGHBOURS).doesNotContain("tt40");
+            assertThat(ids("tt0")).startsWith("tt40");
+        } finally {
+            capped.shutdown();
+        }
+    }
+
+    @Test
+    void apply_shouldUpdateNeighboursOfChangedAndDeletedAnime() {
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(List.of(
+                anime("tt1", "2013-04-07", "Action", "Drama"),
+                anime("tt2", "2013-04-07", "Action", "Drama"),
+                anime("tt3", "2013-04-07", "Comedy")));
+        similarAnimeIndex.rebuild();
+
+        //tt2 moves from action/drama to comedy under a new imdbId
+        similarAnimeIndex.apply("tt2", anime("tt2b", "2013-04-07", "Comedy"));
+        assertThat(ids("tt1")).isEmpty();
+        assertThat(ids("tt3")).containsExactly("tt2b");
+        assertThat(ids("tt2b")).containsExactly("tt3");
+        assertThrows(AnimeNotFoundException.class, () -> similarAnimeIndex.findSimilar("tt2"));
+
+        similarAnimeIndex.apply("tt3", null);
+        assertThat(ids("tt2b")).isEmpty();
+        assertThrows(AnimeNotFoundException.class, () -> similarAnimeIndex.findSimilar("tt3"));
+    }
+
+    @Test
+    void apply_shouldMatchAFullRebuildAfterManyChanges() {
+        Random random = new Random(42);
+        String[] genres = {"Action", "Drama", "Fantasy", "Comedy", "Romance", "Horror", "Mecha", "Sports"};
+        List<AnimeSummaryDTO> initial = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            initial.add(randomAnime("tt" + i, random, genres));
+        }
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(initial);
+        similarAnimeIndex.rebuild();
+
+        List<AnimeSummaryDTO> current = new ArrayList<>(initial);
+        for (int step = 0; step < 100; step++) {
+            int index = random.nextInt(current.size());
+            String imdbId = current.get(index).getImdbId();
+            if (random.nextInt(4) == 0) {
+                current.remove(index);
+                similarAnimeIndex.apply(imdbId, null);
+            } else {
+                AnimeSummaryDTO changed = randomAnime(imdbId, random, genres);
+                current.set(index, changed);
+                similarAnimeIndex.apply(imdbId, changed);
+            }
+        }
+
+        SimilarAnimeIndex rebuilt = new SimilarAnimeIndex(animeRepository, 2000);
+        when(animeRepository.findAllBy(AnimeSummaryDTO.class)).thenReturn(current);
+        rebuilt.rebuild();
+        try {
+            for (AnimeSummaryDTO anime : current) {
+                assertThat(similarAnimeIndex.findSimilar(anime.getImdbId()))
+                        .isEqualTo(rebuilt.findSimilar(anime.getImdbId()));
+            }
+        } finally {
+            rebuilt.shutdown();
+        }
+    }
+
+    private static AnimeSummaryDTO randomAnime(String imdbId, Random random, String[] genres) {
+        List<String> picked = new ArrayList<>();
+        for (String genre : genres) {
+            if (random.nextInt(3) == 0) {
+                picked.add(genre);
+            }
+        }
+        String releaseDate = (1990 + random.nextInt(30)) + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10);
+        return anime(imdbId, releaseDate, picked.toArray(String[]::new));
+    }
+}
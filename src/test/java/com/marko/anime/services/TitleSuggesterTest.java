@@ -0,0 +1,100 @@
+package com.marko.anime.services;
+
+import com.marko.anime.dtos.AnimeSuggestionDTO;
+import com.marko.anime.repositories.AnimeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TitleSuggesterTest {
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    @InjectMocks
+    private TitleSuggester titleSuggester;
+
+    @BeforeEach
+    void init() {
+        when(animeRepository.findAllBy(AnimeSuggestionDTO.class)).thenReturn(List.of(
+                new AnimeSuggestionDTO("tt1", "Attack on Titan"),
+                new AnimeSuggestionDTO("tt2", "Attack on Titan: Junior High"),
+                new AnimeSuggestionDTO("tt3", "Pokémon"),
+                new AnimeSuggestionDTO("tt4", "Re:Zero"),
+                new AnimeSuggestionDTO("tt5", "Titan Academy"),
+                new AnimeSuggestionDTO("tt6", "ポケットモンスター"),
+                new AnimeSuggestionDTO("tt7", "けいおん！"),
+                new AnimeSuggestionDTO("tt8", "ちゃお・ティーチャー")));
+        titleSuggester.rebuild();
+    }
+
+    private List<String> ids(List<AnimeSuggestionDTO> suggestions) {
+        return suggestions.stream().map(AnimeSuggestionDTO::getImdbId).toList();
+    }
+
+    @Test
+    void suggest_shouldPreferWholeTitleMatchesThenShorterTitles() {
+        assertThat(ids(titleSuggester.suggest("att", 10))).containsExactly("tt1", "tt2");
+        assertThat(ids(titleSuggester.suggest("Titan", 10))).containsExactly("tt5", "tt1", "tt2");
+    }
+
+    @Test
+    void suggest_shouldMatchNormalizedAndCompactForms() {
+        assertThat(ids(titleSuggester.suggest("POKEM", 10))).containsExactly("tt3");
+        assertThat(ids(titleSuggester.suggest("re ze", 10))).containsExactly("tt4");
+        assertThat(ids(titleSuggester.suggest("rezero", 10))).containsExactly("tt4");
+        assertThat(ids(titleSuggester.suggest("junior h", 10))).containsExactly("tt2");
+    }
+
+    @Test
+    void suggest_shouldMatchKanaTitlesInRomaji() {
+        assertThat(ids(titleSuggester.suggest("poketto", 10))).containsExactly("tt6");
+        assertThat(ids(titleSuggester.suggest("pokettomonsuta", 10))).containsExactly("tt6");
+        assertThat(ids(titleSuggester.suggest("ポケット", 10))).containsExactly("tt6");
+        assertThat(ids(titleSuggester.suggest("keion", 10))).containsExactly("tt7");
+        assertThat(ids(titleSuggester.suggest("chao", 10))).containsExactly("tt8");
+        assertThat(ids(titleSuggester.suggest("ticha", 10))).containsExactly("tt8");
+    }
+
+    @Test
+    void suggest_shouldRespectLimitAndIgnoreBlankPrefix() {
+        assertThat(titleSuggester.suggest("attack", 1)).hasSize(1);
+        assertThat(titleSuggester.suggest("  ", 10)).isEmpty();
+        assertThat(titleSuggester.suggest("zzz", 10)).isEmpty();
+        assertThrows(IllegalArgumentException.class, () -> titleSuggester.suggest("a", 0));
+        assertThrows(IllegalArgumentException.class, () -> titleSuggester.suggest("a", TitleSuggester.MAX_SUGGESTIONS + 1));
+    }
+
+    @Test
+    void suggest_shouldFindMatchesAcrossManyBlocks() {
+        List<AnimeSuggestionDTO> anime = new ArrayList<>();
+        IntStream.range(0, 500).forEach(i -> anime.add(new AnimeSuggestionDTO("tt" + i, "Show " + i)));
+        when(animeRepository.findAllBy(AnimeSuggestionDTO.class)).thenReturn(anime);
+        titleSuggester.rebuild();
+
+        assertThat(ids(titleSuggester.suggest("show 42", 20))).containsExactly("tt42", "tt420", "tt421", "tt422",
+                "tt423", "tt424", "tt425", "tt426", "tt427", "tt428", "tt429");
+        assertThat(ids(titleSuggester.suggest("499", 5))).containsExactly("tt499");
+    }
+
+    @Test
+    void suggest_shouldNotQueryRepository() {
+        clearInvocations(animeRepository);
+
+        titleSuggester.suggest("attack", 10);
+
+        verifyNoInteractions(animeRepository);
+    }
+}
@@ -0,0 +1,146 @@
+package com.marko.anime.services;
+
+import com.marko.anime.events.AnimeChangedEvent;
+import com.marko.anime.models.Anime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrendingServiceTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final KnownAnimeIds knownAnimeIds = mock(KnownAnimeIds.class);
+    private TrendingService trendingService;
+
+    @BeforeEach
+    void init() {
+        trendingService = new TrendingService(Duration.ofHours(1), now::get, knownAnimeIds);
+    }
+
+    private List<String> ids(int limit) {
+        return trendingService.top(limit).stream().map(TrendingService.TrendingScore::imdbId).toList();
+    }
+
+    @Test
+    void top_shouldRankReviewsAboveViewsAndDecayScores() {
+        trendingService.recordView("tt1");
+        trendingService.recordView("tt1");
+        trendingService.recordReview("tt2");
+
+        assertThat(ids(10)).containsExactly("tt2", "tt1");
+        assertThat(trendingService.top(1).get(0).score()).isCloseTo(TrendingService.REVIEW_WEIGHT, within(1e-9));
+
+        now.addAndGet(Duration.ofHours(1).toMillis());
+
+        assertThat(trendingService.top(10).get(1).score()).isCloseTo(1.0, within(1e-9));
+    }
+
+    @Test
+    void top_shouldLetRecentActivityOvertakeOlderActivity() {
+        for (int i = 0; i < 3; i++) {
+            trendingService.recordView("old");
+        }
+        now.addAndGet(Duration.ofHours(2).toMillis()); //old is now worth 0.75
+        trendingService.recordView("new");
+
+        assertThat(ids(10)).containsExactly("new", "old");
+    }
+
+    @Test
+    void top_shouldKeepOnlyBestWhenMoreAnimeThanCapacity() {
+        for (int i = 0; i < TrendingService.MAX_TRENDING + 50; i++) {
+            for (int v = 0; v <= i % 7; v++) {
+                trendingService.recordView("tt" + i);
+            }
+        }
+        trendingService.recordReview("late");
+        trendingService.recordReview("late");
+
+        List<TrendingService.TrendingScore> top = trendingService.top(TrendingService.MAX_TRENDING);
+        assertThat(top).hasSize(TrendingService.MAX_TRENDING);
+        assertThat(top.get(0).imdbId()).isEqualTo("late");
+        //7, 6, 5 and 4 views: 21 anime each, so the last places go to anime with 3 views
+        assertThat(top.get(TrendingService.MAX_TRENDING - 1).score()).isCloseTo(3.0, within(1e-9));
+        assertThat(top.get(85).score()).isCloseTo(3.0, within(1e-9));
+        assertThat(top.get(84).score()).isCloseTo(4.0, within(1e-9));
+    }
+
+    @Test
+    void onAnimeChanged_shouldDropDeletedAndFollowRenamedAnime() {
+        trendingService.recordReview("tt1");
+        trendingService.recordView("tt2");
+
+        trendingService.onAnimeChanged(new AnimeChangedEvent("tt1", Anime.builder().imdbId("tt9").build()));
+        assertThat(ids(10)).containsExactly("tt9", "tt2");
+
+        trendingService.onAnimeChanged(new AnimeChangedEvent("tt9", null));
+        assertThat(ids(10)).containsExactly("tt2");
+    }
+
+    @Test
+    void onAnimeChanged_shouldBringBackNextBest_whenTopAnimeIsDeleted() {
+        for (int i = 0; i <= TrendingService.MAX_TRENDING; i++) {
+            for (int v = 0; v <= i; v++) {
+                trendingService.recordView("tt" + i);
+            }
+        }
+        assertThat(ids(TrendingService.MAX_TRENDING)).doesNotContain("tt0");
+
+        trendingService.onAnimeChanged(new AnimeChangedEvent("tt" + TrendingService.MAX_TRENDING, null));
+
+        List<String> top = ids(TrendingService.MAX_TRENDING);
+        assertThat(top).hasSize(TrendingService.MAX_TRENDING).contains("tt0");
+        assertThat(top.get(TrendingService.MAX_TRENDING - 1)).isEqualTo("tt0");
+    }
+
+    @Test
+    void recordView_shouldNotLoseConcurrentUpdates() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    trendingService.recordView("tt" + (i % 3));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        double total = trendingService.top(3).stream().mapToDouble(TrendingService.TrendingScore::score).sum();
+        assertThat(total).isCloseTo(8000, within(1e-6));
+    }
+
+    @Test
+    void recordReview_shouldIgnoreIdsNotInCatalog() {
+        when(knownAnimeIds.isUnknown("tt-deleted")).thenReturn(true);
+
+        trendingService.recordReview("tt-deleted");
+        trendingService.recordView("tt1");
+
+        assertThat(ids(10)).containsExactly("tt1");
+    }
+
+    @Test
+    void top_shouldRejectInvalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> trendingService.top(0));
+        assertThrows(IllegalArgumentException.class, () -> trendingService.top(TrendingService.MAX_TRENDING + 1));
+    }
+}